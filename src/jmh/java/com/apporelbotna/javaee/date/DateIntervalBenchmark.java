@@ -0,0 +1,49 @@
+package com.apporelbotna.javaee.date;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DateIntervalBenchmark
+{
+	private final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+	private final LocalDateTime start = LocalDateTime.of(2018, 9, 26, 18, 6, 3);
+	private final DateInterval interval = DateInterval.of(start, start.plusHours(8));
+	private final DateInterval overlapping = DateInterval.of(start.plusHours(4), start.plusHours(12));
+	private final DateInterval disjoint = DateInterval.of(start.plusDays(1), start.plusDays(2));
+	private final String text = interval.format(formatter);
+
+	@Benchmark
+	public DateInterval parse()
+	{
+		return DateInterval.parse(text, formatter);
+	}
+
+	@Benchmark
+	public String format()
+	{
+		return interval.format(formatter);
+	}
+
+	@Benchmark
+	public boolean overlaps()
+	{
+		return interval.overlaps(overlapping);
+	}
+
+	@Benchmark
+	public boolean overlapsDisjoint()
+	{
+		return interval.overlaps(disjoint);
+	}
+}
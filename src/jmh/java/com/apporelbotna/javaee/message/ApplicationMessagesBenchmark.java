@@ -0,0 +1,46 @@
+package com.apporelbotna.javaee.message;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ApplicationMessagesBenchmark
+{
+	private static class BenchmarkMessages extends ApplicationMessages
+	{
+		@Override
+		public String getBundleName()
+		{
+			return "benchmarkMessages";
+		}
+	}
+
+	private final ApplicationMessages messages = new BenchmarkMessages();
+
+	@Benchmark
+	public String get()
+	{
+		return messages.get("benchmark.plain");
+	}
+
+	@Benchmark
+	public String getParameterized()
+	{
+		return messages.get("benchmark.parameterized", "jendoliver", 42, "yesterday");
+	}
+
+	@Benchmark
+	public String getLocalized()
+	{
+		return messages.get(Locale.ENGLISH, "benchmark.parameterized", "jendoliver", 42, "yesterday");
+	}
+}
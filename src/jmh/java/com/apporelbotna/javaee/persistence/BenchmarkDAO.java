@@ -0,0 +1,12 @@
+package com.apporelbotna.javaee.persistence;
+
+public class BenchmarkDAO extends JhenJpaDAO
+{
+	public static final String PERSISTENCE_UNIT = "com.apporelbotna.javaee.benchmark";
+
+	@Override
+	protected String getPersistenceUnitName()
+	{
+		return PERSISTENCE_UNIT;
+	}
+}
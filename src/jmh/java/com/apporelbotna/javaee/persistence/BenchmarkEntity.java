@@ -0,0 +1,43 @@
+package com.apporelbotna.javaee.persistence;
+
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+@Entity
+@Table(name = "benchmark_entity")
+public class BenchmarkEntity extends IdentifiableSequence
+{
+	private String name;
+	private long amount;
+
+	public BenchmarkEntity()
+	{
+		// JPA Constructor
+	}
+
+	public BenchmarkEntity(String name, long amount)
+	{
+		this.name = name;
+		this.amount = amount;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public void setName(String name)
+	{
+		this.name = name;
+	}
+
+	public long getAmount()
+	{
+		return amount;
+	}
+
+	public void setAmount(long amount)
+	{
+		this.amount = amount;
+	}
+}
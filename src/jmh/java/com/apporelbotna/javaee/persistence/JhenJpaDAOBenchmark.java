@@ -0,0 +1,95 @@
+package com.apporelbotna.javaee.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Hot paths of {@link JhenJpaDAO} against an embedded H2 database, at several table sizes.<br>
+ * <br>
+ * Every benchmark clears the persistence context of the DAO first, within the measured method, so
+ * reads hit the database instead of the entities loaded by the previous invocations. Clearing it
+ * costs little next to a query, whereas a <code>Level.Invocation</code> fixture costs more than
+ * the microseconds these operations take and skews their timing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JhenJpaDAOBenchmark
+{
+	@Param({ "1000", "10000", "100000" })
+	private int tableSize;
+
+	private BenchmarkDAO dao;
+	private long[] ids;
+
+	@Setup(Level.Trial)
+	public void populate() throws JhenPersistenceException
+	{
+		EntityManagerFactoryRegistry.warmUp(BenchmarkDAO.PERSISTENCE_UNIT,
+				EntityManagerFactoryRegistry.jdbcBatchingProperties(500));
+		
+		dao = new BenchmarkDAO();
+		dao.delete(BenchmarkEntity.class, null);
+		dao.setBatchSize(500);
+		
+		List<BenchmarkEntity> entities = new ArrayList<>(tableSize);
+		for (int i = 0; i < tableSize; i++)
+			entities.add(new BenchmarkEntity("entity" + i, i));
+		dao.storeAll(entities);
+		
+		ids = new long[tableSize];
+		for (int i = 0; i < tableSize; i++)
+			ids[i] = entities.get(i).getId();
+	}
+
+	@TearDown(Level.Trial)
+	public void close()
+	{
+		dao.close();
+		EntityManagerFactoryRegistry.closeAll();
+	}
+
+	@Benchmark
+	public BenchmarkEntity store() throws JhenPersistenceException
+	{
+		dao.getEntityManager().clear();
+		BenchmarkEntity entity = new BenchmarkEntity("stored", 0);
+		dao.store(entity);
+		return entity;
+	}
+
+	@Benchmark
+	public BenchmarkEntity getByKey()
+	{
+		dao.getEntityManager().clear();
+		long id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+		return dao.getByKey(BenchmarkEntity.class, id);
+	}
+
+	@Benchmark
+	public List<BenchmarkEntity> findAll()
+	{
+		dao.getEntityManager().clear();
+		return dao.findAll(BenchmarkEntity.class);
+	}
+
+	@Benchmark
+	public long count()
+	{
+		dao.getEntityManager().clear();
+		return dao.count(BenchmarkEntity.class);
+	}
+}
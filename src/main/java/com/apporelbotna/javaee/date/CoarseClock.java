@@ -0,0 +1,161 @@
+package com.apporelbotna.javaee.date;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Clock} which doesn't read the system clock when asked for the time, but returns the
+ * instant stored by a background thread which reads it once per tick (every millisecond by
+ * default). Reading it is just a volatile read, and the {@link LocalDateTime} of each tick is
+ * only computed once no matter how many times it is requested, so it suits code which asks for
+ * "now" thousands of times per second and doesn't mind being a tick late, i.e
+ * {@link DateInterval#isInProgress(Clock)} on every request.<br>
+ * <br>
+ * {@link #systemDefaultZone()} returns a shared clock ticking every millisecond whose thread
+ * lives as long as the application. Clocks created with {@link #start(Duration, ZoneId)} have
+ * their own thread and must be closed when no longer needed. In both cases the thread is a
+ * daemon one. Clocks returned by {@link #withZone(ZoneId)} share the thread of the original one.
+ *
+ * @author Jendoliver
+ */
+public final class CoarseClock extends Clock implements AutoCloseable
+{
+	public static final Duration DEFAULT_RESOLUTION = Duration.ofMillis(1);
+
+	private static final class Holder
+	{
+		private static final CoarseClock SYSTEM_DEFAULT_ZONE = new CoarseClock(new TickSource(DEFAULT_RESOLUTION, true),
+				ZoneId.systemDefault());
+	}
+
+	/**
+	 * The thread updating the time and the last time it read, shared by the clocks of every zone
+	 */
+	private static final class TickSource
+	{
+		private final ScheduledExecutorService ticker;
+		private final boolean shared;
+		private volatile Instant current = Instant.now();
+
+		private TickSource(Duration resolution, boolean shared)
+		{
+			this.shared = shared;
+			ticker = Executors.newSingleThreadScheduledExecutor(runnable ->
+			{
+				Thread thread = new Thread(runnable, "coarse-clock");
+				thread.setDaemon(true);
+				return thread;
+			});
+			long period = resolution.toNanos();
+			ticker.scheduleAtFixedRate(() -> current = Instant.now(), period, period, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * An instant and its local date-time in the zone of the clock
+	 */
+	private static final class Tick
+	{
+		private final Instant instant;
+		private final LocalDateTime localDateTime;
+
+		private Tick(Instant instant, ZoneId zone)
+		{
+			this.instant = instant;
+			this.localDateTime = LocalDateTime.ofInstant(instant, zone);
+		}
+	}
+
+	private final TickSource source;
+	private final ZoneId zone;
+	private volatile Tick lastTick;
+
+	private CoarseClock(TickSource source, ZoneId zone)
+	{
+		this.source = source;
+		this.zone = zone;
+		this.lastTick = new Tick(source.current, zone);
+	}
+
+	/**
+	 * Returns the shared clock of the default time zone, ticking every millisecond
+	 */
+	public static CoarseClock systemDefaultZone()
+	{
+		return Holder.SYSTEM_DEFAULT_ZONE;
+	}
+
+	/**
+	 * Starts a new clock of the given zone, with its own thread reading the system clock every
+	 * <code>resolution</code>
+	 */
+	public static CoarseClock start(Duration resolution, ZoneId zone)
+	{
+		if (resolution.isNegative() || resolution.isZero())
+			throw new IllegalArgumentException("The resolution must be positive");
+		return new CoarseClock(new TickSource(resolution, false), zone);
+	}
+
+	@Override
+	public ZoneId getZone()
+	{
+		return zone;
+	}
+
+	@Override
+	public CoarseClock withZone(ZoneId zone)
+	{
+		return zone.equals(this.zone) ? this : new CoarseClock(source, zone);
+	}
+
+	@Override
+	public Instant instant()
+	{
+		return source.current;
+	}
+
+	@Override
+	public long millis()
+	{
+		return source.current.toEpochMilli();
+	}
+
+	/**
+	 * Same as <code>LocalDateTime.now(clock)</code>, but creating a single LocalDateTime per tick
+	 */
+	public LocalDateTime localDateTime()
+	{
+		Instant current = source.current;
+		Tick tick = lastTick;
+		if (tick.instant != current)
+		{
+			tick = new Tick(current, zone);
+			lastTick = tick;
+		}
+		return tick.localDateTime;
+	}
+
+	/**
+	 * Stops the thread of this clock, which will keep returning the last time it read. Closing the
+	 * shared clock of {@link #systemDefaultZone()} does nothing, since other code may be using it,
+	 * so it can be closed like any other one, i.e in a try-with-resources.
+	 */
+	@Override
+	public void close()
+	{
+		if (!source.shared)
+			source.ticker.shutdownNow();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CoarseClock[" + zone + "]";
+	}
+}
@@ -1,8 +1,13 @@
 package com.apporelbotna.javaee.date;
 
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.Period;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiPredicate;
 
 import javax.persistence.Column;
 import javax.persistence.Embeddable;
@@ -15,6 +20,10 @@ import javax.persistence.Transient;
  * such as methods to check if an instant of time is contained between the interval, if it has
  * started/finished, if it's in progress, etc.<br>
  * <br>
+ * The methods checking the interval against the current time also accept a {@link Clock}, i.e
+ * a {@link CoarseClock} when they are called at a high rate or a fixed clock in tests, or the
+ * current time itself when many intervals have to be checked against the same instant.<br>
+ * <br>
  * Note that this class is an {@link Embeddable}, so when adding it to an {@link Entity} as a
  * property, the generated table for the entity will have both the startDate and endDate of the
  * DateInterval as columns instead of a reference to a DateInterval table which would be really
@@ -55,22 +64,18 @@ public class DateInterval
 		return new DateInterval(startDate, endDate);
 	}
 	
+	/**
+	 * Parses the interval from two dates separated by {@link #START_END_SEPARATOR}. Use a
+	 * {@link DateIntervalCodec} directly to parse many intervals or parts of a bigger text.
+	 */
 	public static DateInterval parse(String text, DateTimeFormatter formatter)
 	{
-		String[] startAndEndDates = text.split(START_END_SEPARATOR);
-		if(startAndEndDates.length != 2)
-			throw new IllegalArgumentException("The text to parse must contain two LocalDateTime "
-					+ "instances separated by a " + START_END_SEPARATOR);
-		
-		LocalDateTime startDate = LocalDateTime.parse(startAndEndDates[0], formatter);
-		LocalDateTime endDate = LocalDateTime.parse(startAndEndDates[1], formatter);
-		
-		return DateInterval.of(startDate, endDate);
+		return DateIntervalCodec.of(formatter).parse(text);
 	}
 	
 	public String format(DateTimeFormatter formatter)
 	{
-		return startDate.format(formatter) + START_END_SEPARATOR + endDate.format(formatter);
+		return DateIntervalCodec.of(formatter).format(this);
 	}
 	
 	public boolean contains(LocalDateTime localDateTime)
@@ -123,12 +128,38 @@ public class DateInterval
 	
 	public boolean hasStarted()
 	{
-		return LocalDateTime.now().isAfter(startDate);
+		return hasStarted(LocalDateTime.now());
+	}
+	
+	public boolean hasStarted(Clock clock)
+	{
+		return hasStarted(now(clock));
+	}
+	
+	/**
+	 * Returns true if the interval has started at the given instant, which should be "now"
+	 */
+	public boolean hasStarted(LocalDateTime now)
+	{
+		return now.isAfter(startDate);
 	}
 	
 	public boolean hasFinished()
 	{
-		return LocalDateTime.now().isAfter(endDate);
+		return hasFinished(LocalDateTime.now());
+	}
+	
+	public boolean hasFinished(Clock clock)
+	{
+		return hasFinished(now(clock));
+	}
+	
+	/**
+	 * Returns true if the interval has finished at the given instant, which should be "now"
+	 */
+	public boolean hasFinished(LocalDateTime now)
+	{
+		return now.isAfter(endDate);
 	}
 	
 	@Transient
@@ -137,6 +168,50 @@ public class DateInterval
 		return contains(LocalDateTime.now());
 	}
 	
+	public boolean isInProgress(Clock clock)
+	{
+		return contains(now(clock));
+	}
+	
+	/**
+	 * Same as {@link #contains(LocalDateTime)}, which should be given "now"
+	 */
+	public boolean isInProgress(LocalDateTime now)
+	{
+		return contains(now);
+	}
+	
+	/**
+	 * Returns the intervals of the collection which are in progress according to the clock, which
+	 * is read only once for all of them
+	 */
+	public static <T extends DateInterval> List<T> inProgress(Collection<T> dateIntervals, Clock clock)
+	{
+		return filter(dateIntervals, clock, DateInterval::isInProgress);
+	}
+	
+	/**
+	 * Returns the intervals of the collection which match the condition at the current instant of
+	 * the clock, which is read only once for all of them, i.e:<br>
+	 * <br>
+	 * <code>DateInterval.filter(bookings, clock, DateInterval::hasFinished)</code>
+	 */
+	public static <T extends DateInterval> List<T> filter(Collection<T> dateIntervals, Clock clock,
+			BiPredicate<? super T, LocalDateTime> condition)
+	{
+		LocalDateTime now = now(clock);
+		List<T> result = new ArrayList<>();
+		for(T dateInterval : dateIntervals)
+			if(condition.test(dateInterval, now))
+				result.add(dateInterval);
+		return result;
+	}
+	
+	private static LocalDateTime now(Clock clock)
+	{
+		return clock instanceof CoarseClock ? ((CoarseClock)clock).localDateTime() : LocalDateTime.now(clock);
+	}
+	
 	@Transient
 	public Period getPeriod()
 	{
@@ -0,0 +1,406 @@
+package com.apporelbotna.javaee.date;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * A growable, columnar collection of intervals which keeps their start and end dates in two
+ * <code>long[]</code> of milliseconds since the epoch (see {@link EpochDateInterval}), so millions
+ * of intervals take 16 bytes each and can be sorted and searched without creating a single
+ * object.<br>
+ * <br>
+ * The searches need the array to be {@link #sort() sorted}, by start and then by end. Adding an
+ * interval unsorts it. The first search after a change lays an implicit interval tree over the
+ * sorted array, which costs one more <code>long</code> per interval, so the searches take
+ * O(log n + k) time for k results instead of scanning every interval starting before the searched
+ * range. This class is not thread-safe.
+ *
+ * @author Jendoliver
+ */
+public class DateIntervalArray
+{
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+	/**
+	 * Level of the tree under which subtrees, of up to 15 intervals, are scanned instead of walked
+	 */
+	private static final int LINEAR_SCAN_LEVEL = 3;
+
+	private long[] starts;
+	private long[] ends;
+	private int size;
+	private boolean sorted = true;
+	/**
+	 * The latest end of the subtree of every node of the interval tree, or null if it has to be
+	 * built again
+	 */
+	private long[] maxEnds;
+	private int treeLevels;
+
+	public DateIntervalArray()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	public DateIntervalArray(int initialCapacity)
+	{
+		starts = new long[initialCapacity];
+		ends = new long[initialCapacity];
+	}
+
+	public static DateIntervalArray of(Collection<? extends DateInterval> dateIntervals)
+	{
+		return of(dateIntervals, ZoneOffset.UTC);
+	}
+
+	public static DateIntervalArray of(Collection<? extends DateInterval> dateIntervals, ZoneOffset offset)
+	{
+		DateIntervalArray array = new DateIntervalArray(Math.max(dateIntervals.size(), 1));
+		for (DateInterval dateInterval : dateIntervals)
+			array.add(dateInterval, offset);
+		return array;
+	}
+
+	public void add(long startEpochMilli, long endEpochMilli)
+	{
+		if (startEpochMilli > endEpochMilli)
+			throw new IllegalArgumentException("start must be before end");
+
+		if (size == starts.length)
+			grow();
+
+		if (size > 0 && compare(size - 1, startEpochMilli, endEpochMilli) > 0)
+			sorted = false;
+
+		starts[size] = startEpochMilli;
+		ends[size] = endEpochMilli;
+		size++;
+		maxEnds = null;
+	}
+
+	public void add(EpochDateInterval interval)
+	{
+		add(interval.getStart(), interval.getEnd());
+	}
+
+	public void add(DateInterval dateInterval)
+	{
+		add(dateInterval, ZoneOffset.UTC);
+	}
+
+	public void add(DateInterval dateInterval, ZoneOffset offset)
+	{
+		add(EpochDateInterval.toEpochMilli(dateInterval.getStartDate(), offset),
+				EpochDateInterval.toEpochMilli(dateInterval.getEndDate(), offset));
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public boolean isSorted()
+	{
+		return sorted;
+	}
+
+	public void clear()
+	{
+		size = 0;
+		sorted = true;
+		maxEnds = null;
+	}
+
+	public long getStart(int index)
+	{
+		checkIndex(index);
+		return starts[index];
+	}
+
+	public long getEnd(int index)
+	{
+		checkIndex(index);
+		return ends[index];
+	}
+
+	public EpochDateInterval get(int index)
+	{
+		checkIndex(index);
+		return EpochDateInterval.of(starts[index], ends[index]);
+	}
+
+	public DateInterval toDateInterval(int index)
+	{
+		return toDateInterval(index, ZoneOffset.UTC);
+	}
+
+	public DateInterval toDateInterval(int index, ZoneOffset offset)
+	{
+		checkIndex(index);
+		return DateInterval.of(EpochDateInterval.toLocalDateTime(starts[index], offset),
+				EpochDateInterval.toLocalDateTime(ends[index], offset));
+	}
+
+	public List<DateInterval> toDateIntervals()
+	{
+		return toDateIntervals(ZoneOffset.UTC);
+	}
+
+	public List<DateInterval> toDateIntervals(ZoneOffset offset)
+	{
+		List<DateInterval> dateIntervals = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			dateIntervals.add(toDateInterval(i, offset));
+		return dateIntervals;
+	}
+
+	/**
+	 * Sorts the intervals by start, then by end, in place
+	 */
+	public void sort()
+	{
+		if (!sorted)
+			sort(0, size - 1);
+		sorted = true;
+	}
+
+	/**
+	 * Returns the index of the first interval starting after the given instant, or {@link #size()}
+	 * if there is none. Every interval before that index starts at or before the instant.
+	 */
+	public int firstStartingAfter(long epochMilli)
+	{
+		checkSorted();
+		int low = 0;
+		int high = size;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (starts[middle] <= epochMilli)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Calls the action with the index of every interval containing the given instant, as in
+	 * {@link EpochDateInterval#contains(long)}
+	 */
+	public void forEachContaining(long epochMilli, IntConsumer action)
+	{
+		forEachOverlapping(epochMilli, epochMilli, i ->
+		{
+			if (EpochDateInterval.contains(starts[i], ends[i], epochMilli))
+				action.accept(i);
+		});
+	}
+
+	/**
+	 * Calls the action with the index of every interval overlapping the range between the given
+	 * instants, as in {@link EpochDateInterval#overlaps(EpochDateInterval)}, in index order
+	 */
+	public void forEachOverlapping(long fromEpochMilli, long toEpochMilli, IntConsumer action)
+	{
+		checkSorted();
+		if (size == 0)
+			return;
+		if (maxEnds == null)
+			buildTree();
+
+		// In-order walk, skipping the subtrees which end before the range or start after it. Each
+		// entry packs a node, its level and whether its left subtree has been walked already.
+		long[] stack = new long[2 * treeLevels + 4];
+		int top = 0;
+		stack[top++] = treeNode((1 << treeLevels) - 1, treeLevels, false);
+		while (top > 0)
+		{
+			long entry = stack[--top];
+			int node = (int)(entry >>> 7);
+			int level = (int)(entry >>> 1) & 63;
+			if (level <= LINEAR_SCAN_LEVEL)
+			{
+				int first = node >> level << level;
+				int last = Math.min(size, first + (1 << (level + 1)) - 1);
+				for (int i = first; i < last && starts[i] <= toEpochMilli; i++)
+					if (ends[i] >= fromEpochMilli)
+						action.accept(i);
+			}
+			else if ((entry & 1) == 0)
+			{
+				int left = node - (1 << (level - 1));
+				stack[top++] = entry | 1;
+				if (left >= size || maxEnds[left] >= fromEpochMilli)
+					stack[top++] = treeNode(left, level - 1, false);
+			}
+			else if (node < size && starts[node] <= toEpochMilli)
+			{
+				if (ends[node] >= fromEpochMilli)
+					action.accept(node);
+				stack[top++] = treeNode(node + (1 << (level - 1)), level - 1, false);
+			}
+		}
+	}
+
+	private static long treeNode(int node, int level, boolean leftWalked)
+	{
+		return (long)node << 7 | level << 1 | (leftWalked ? 1 : 0);
+	}
+
+	/**
+	 * Builds the implicit interval tree in linear time. The interval at index i is a node at the
+	 * level given by the trailing one bits of i, whose children are the intervals at i plus and
+	 * minus 2<sup>level-1</sup>, so the sorted array is its in-order traversal. Nodes whose right
+	 * child is beyond the end of the array take the latest end of the last subtree instead.
+	 */
+	private void buildTree()
+	{
+		long[] tree = new long[size];
+		long lastMaxEnd = 0;
+		int lastNode = 0;
+		for (int i = 0; i < size; i += 2)
+		{
+			lastNode = i;
+			lastMaxEnd = tree[i] = ends[i];
+		}
+
+		int level = 1;
+		for (; 1L << level <= size; level++)
+		{
+			int half = 1 << (level - 1);
+			for (int i = (half << 1) - 1; i < size; i += half << 2)
+			{
+				long right = i + half < size ? tree[i + half] : lastMaxEnd;
+				tree[i] = Math.max(ends[i], Math.max(tree[i - half], right));
+			}
+			lastNode = (lastNode >> level & 1) != 0 ? lastNode - half : lastNode + half;
+			if (lastNode < size && tree[lastNode] > lastMaxEnd)
+				lastMaxEnd = tree[lastNode];
+		}
+		treeLevels = level - 1;
+		maxEnds = tree;
+	}
+
+	public void trimToSize()
+	{
+		starts = Arrays.copyOf(starts, size);
+		ends = Arrays.copyOf(ends, size);
+	}
+
+	private void grow()
+	{
+		int capacity = Math.max(DEFAULT_CAPACITY, starts.length + (starts.length >> 1));
+		starts = Arrays.copyOf(starts, capacity);
+		ends = Arrays.copyOf(ends, capacity);
+	}
+
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+
+	private void checkSorted()
+	{
+		if (!sorted)
+			throw new IllegalStateException("The array must be sorted before searching it");
+	}
+
+	private int compare(int index, long start, long end)
+	{
+		int comparison = Long.compare(starts[index], start);
+		return comparison != 0 ? comparison : Long.compare(ends[index], end);
+	}
+
+	/**
+	 * Quicksort with Hoare partitioning, which copes well with many equal intervals, recursing
+	 * only on the smaller partition so the stack stays logarithmic
+	 */
+	private void sort(int low, int high)
+	{
+		while (high - low > INSERTION_SORT_THRESHOLD)
+		{
+			int split = partition(low, high);
+			if (split - low < high - split)
+			{
+				sort(low, split);
+				low = split + 1;
+			}
+			else
+			{
+				sort(split + 1, high);
+				high = split;
+			}
+		}
+		insertionSort(low, high);
+	}
+
+	private int partition(int low, int high)
+	{
+		int middle = (low + high) >>> 1;
+		if (compare(middle, starts[low], ends[low]) < 0)
+			swap(low, middle);
+		if (compare(high, starts[low], ends[low]) < 0)
+			swap(low, high);
+		if (compare(high, starts[middle], ends[middle]) < 0)
+			swap(middle, high);
+
+		long pivotStart = starts[middle];
+		long pivotEnd = ends[middle];
+		int i = low - 1;
+		int j = high + 1;
+		while (true)
+		{
+			do
+				i++;
+			while (compare(i, pivotStart, pivotEnd) < 0);
+
+			do
+				j--;
+			while (compare(j, pivotStart, pivotEnd) > 0);
+
+			if (i >= j)
+				return j;
+			swap(i, j);
+		}
+	}
+
+	private void insertionSort(int low, int high)
+	{
+		for (int i = low + 1; i <= high; i++)
+		{
+			long start = starts[i];
+			long end = ends[i];
+			int j = i - 1;
+			while (j >= low && compare(j, start, end) > 0)
+			{
+				starts[j + 1] = starts[j];
+				ends[j + 1] = ends[j];
+				j--;
+			}
+			starts[j + 1] = start;
+			ends[j + 1] = end;
+		}
+	}
+
+	private void swap(int i, int j)
+	{
+		long start = starts[i];
+		starts[i] = starts[j];
+		starts[j] = start;
+
+		long end = ends[i];
+		ends[i] = ends[j];
+		ends[j] = end;
+	}
+}
@@ -0,0 +1,395 @@
+package com.apporelbotna.javaee.date;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Parses and formats {@link DateInterval}s as text, that is, as two dates separated by
+ * {@link DateInterval#START_END_SEPARATOR}, without the intermediate Strings, arrays and regular
+ * expressions of {@link String#split(String)} and string concatenation. Text can be parsed from any
+ * {@link CharSequence} or range of ASCII bytes, and written to a caller-supplied
+ * {@link StringBuilder} or {@link ByteBuffer}.<br>
+ * <br>
+ * Dates in {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME} format (years 0000 to 9999) are read and
+ * written by hand, which is several times faster than going through the formatter. Any other
+ * format, and any ISO date out of the fast path, is handled by the formatter given to
+ * {@link #of(DateTimeFormatter)}. Parsing straight into the compact representation of a
+ * {@link DateIntervalArray} doesn't create a single object on the fast path.<br>
+ * <br>
+ * Codecs are immutable and thread-safe.
+ *
+ * @see DateIntervalReader
+ * @author Jendoliver
+ */
+public final class DateIntervalCodec
+{
+	public static final DateIntervalCodec ISO = new DateIntervalCodec(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+
+	private static final char SEPARATOR = DateInterval.START_END_SEPARATOR.charAt(0);
+	private static final long DAYS_0000_TO_1970 = 719528L;
+	private static final int SECONDS_PER_DAY = 86400;
+	private static final ThreadLocal<StringBuilder> BYTE_FORMAT_BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(64));
+
+	private final DateTimeFormatter formatter;
+	private final boolean iso;
+
+	private DateIntervalCodec(DateTimeFormatter formatter)
+	{
+		this.formatter = formatter;
+		this.iso = formatter == DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+	}
+
+	public static DateIntervalCodec of(DateTimeFormatter formatter)
+	{
+		return formatter == DateTimeFormatter.ISO_LOCAL_DATE_TIME ? ISO : new DateIntervalCodec(formatter);
+	}
+
+	public DateTimeFormatter getFormatter()
+	{
+		return formatter;
+	}
+
+	public DateInterval parse(CharSequence text)
+	{
+		return parse(text, 0, text.length());
+	}
+
+	/**
+	 * Parses the interval written between the <code>from</code> (included) and <code>to</code>
+	 * (excluded) positions of the text
+	 */
+	public DateInterval parse(CharSequence text, int from, int to)
+	{
+		int separator = indexOfSeparator(text, from, to);
+		return DateInterval.of(parseDate(text, from, separator), parseDate(text, separator + 1, to));
+	}
+
+	/**
+	 * Parses the interval written as ASCII between the <code>from</code> (included) and
+	 * <code>to</code> (excluded) positions of the array
+	 */
+	public DateInterval parse(byte[] bytes, int from, int to)
+	{
+		return parse(new AsciiCharSequence(bytes), from, to);
+	}
+
+	/**
+	 * Parses the interval written between the given positions of the text, and adds it to the
+	 * array with the given offset
+	 */
+	public void parseInto(CharSequence text, int from, int to, DateIntervalArray array, ZoneOffset offset)
+	{
+		int separator = indexOfSeparator(text, from, to);
+		array.add(parseEpochMilli(text, from, separator, offset), parseEpochMilli(text, separator + 1, to, offset));
+	}
+
+	public void formatTo(DateInterval dateInterval, StringBuilder builder)
+	{
+		formatDate(dateInterval.getStartDate(), builder);
+		builder.append(SEPARATOR);
+		formatDate(dateInterval.getEndDate(), builder);
+	}
+
+	/**
+	 * Writes the interval as ASCII bytes at the current position of the buffer
+	 */
+	public void formatTo(DateInterval dateInterval, ByteBuffer buffer)
+	{
+		StringBuilder builder = BYTE_FORMAT_BUFFER.get();
+		builder.setLength(0);
+		formatTo(dateInterval, builder);
+		for (int i = 0; i < builder.length(); i++)
+			buffer.put((byte)builder.charAt(i));
+	}
+
+	public String format(DateInterval dateInterval)
+	{
+		StringBuilder builder = new StringBuilder(iso ? 39 : 64);
+		formatTo(dateInterval, builder);
+		return builder.toString();
+	}
+
+	private static int indexOfSeparator(CharSequence text, int from, int to)
+	{
+		int separator = -1;
+		for (int i = from; i < to; i++)
+			if (text.charAt(i) == SEPARATOR)
+			{
+				if (separator >= 0)
+				{
+					separator = -1;
+					break;
+				}
+				separator = i;
+			}
+
+		if (separator <= from || separator >= to - 1)
+			throw new IllegalArgumentException("The text to parse must contain two LocalDateTime "
+					+ "instances separated by a " + DateInterval.START_END_SEPARATOR);
+		return separator;
+	}
+
+	private LocalDateTime parseDate(CharSequence text, int from, int to)
+	{
+		if (iso)
+		{
+			long fields = parseIsoFields(text, from, to);
+			if (fields >= 0)
+				return LocalDateTime.of(year(fields), month(fields), day(fields), hour(fields), minute(fields),
+						second(fields), parseIsoNano(text, from, to));
+		}
+		return LocalDateTime.parse(subSequence(text, from, to), formatter);
+	}
+
+	private long parseEpochMilli(CharSequence text, int from, int to, ZoneOffset offset)
+	{
+		if (iso)
+		{
+			long fields = parseIsoFields(text, from, to);
+			if (fields >= 0)
+			{
+				long epochSecond = epochDay(year(fields), month(fields), day(fields)) * SECONDS_PER_DAY
+						+ hour(fields) * 3600 + minute(fields) * 60 + second(fields) - offset.getTotalSeconds();
+				return epochSecond * 1000 + parseIsoNano(text, from, to) / 1_000_000;
+			}
+		}
+		return EpochDateInterval.toEpochMilli(LocalDateTime.parse(subSequence(text, from, to), formatter), offset);
+	}
+
+	private static CharSequence subSequence(CharSequence text, int from, int to)
+	{
+		// Decode non-ASCII bytes properly for the formatter, i.e localized month names
+		if (text instanceof AsciiCharSequence)
+			return ((AsciiCharSequence)text).decode(from, to);
+		return text.subSequence(from, to);
+	}
+
+	/**
+	 * Reads an ISO date-time (<code>yyyy-MM-ddTHH:mm[:ss[.fffffffff]]</code>) packing all of its
+	 * fields but the nanoseconds in one long, or returns -1 if it is not such a date or it is not
+	 * a valid one
+	 */
+	private static long parseIsoFields(CharSequence text, int from, int to)
+	{
+		int length = to - from;
+		if (length != 16 && length != 19 && (length < 21 || length > 29))
+			return -1;
+		if (text.charAt(from + 4) != '-' || text.charAt(from + 7) != '-' || text.charAt(from + 13) != ':'
+				|| (text.charAt(from + 10) != 'T' && text.charAt(from + 10) != 't'))
+			return -1;
+		if (length > 16 && text.charAt(from + 16) != ':')
+			return -1;
+		if (length > 19 && text.charAt(from + 19) != '.')
+			return -1;
+
+		int year = digits(text, from, 4);
+		int month = digits(text, from + 5, 2);
+		int day = digits(text, from + 8, 2);
+		int hour = digits(text, from + 11, 2);
+		int minute = digits(text, from + 14, 2);
+		int second = length > 16 ? digits(text, from + 17, 2) : 0;
+		if ((year | month | day | hour | minute | second) < 0)
+			return -1;
+		if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month) || hour > 23 || minute > 59
+				|| second > 59)
+			return -1;
+		if (length > 19 && digits(text, from + 20, length - 20) < 0)
+			return -1;
+
+		return (long)year << 26 | month << 22 | day << 17 | hour << 12 | minute << 6 | second;
+	}
+
+	private static int parseIsoNano(CharSequence text, int from, int to)
+	{
+		int fractionDigits = to - from - 20;
+		if (fractionDigits <= 0)
+			return 0;
+
+		int nano = digits(text, from + 20, fractionDigits);
+		for (int i = fractionDigits; i < 9; i++)
+			nano *= 10;
+		return nano;
+	}
+
+	/**
+	 * Parses the given number of decimal digits, or returns -1 if some character is not a digit
+	 */
+	private static int digits(CharSequence text, int from, int count)
+	{
+		int value = 0;
+		for (int i = from; i < from + count; i++)
+		{
+			int digit = text.charAt(i) - '0';
+			if (digit < 0 || digit > 9)
+				return -1;
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	private static int year(long fields)
+	{
+		return (int)(fields >>> 26);
+	}
+
+	private static int month(long fields)
+	{
+		return (int)(fields >>> 22 & 0xF);
+	}
+
+	private static int day(long fields)
+	{
+		return (int)(fields >>> 17 & 0x1F);
+	}
+
+	private static int hour(long fields)
+	{
+		return (int)(fields >>> 12 & 0x1F);
+	}
+
+	private static int minute(long fields)
+	{
+		return (int)(fields >>> 6 & 0x3F);
+	}
+
+	private static int second(long fields)
+	{
+		return (int)(fields & 0x3F);
+	}
+
+	private static boolean isLeapYear(int year)
+	{
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	private static int lengthOfMonth(int year, int month)
+	{
+		switch (month)
+		{
+			case 2:
+				return isLeapYear(year) ? 29 : 28;
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+	/**
+	 * Same as {@link java.time.LocalDate#toEpochDay()}, for non-negative years
+	 */
+	private static long epochDay(int year, int month, int day)
+	{
+		long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+		total += (367 * month - 362) / 12;
+		total += day - 1;
+		if (month > 2)
+		{
+			total--;
+			if (!isLeapYear(year))
+				total--;
+		}
+		return total - DAYS_0000_TO_1970;
+	}
+
+	/**
+	 * Writes the date like {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME} does: seconds are always
+	 * written, and nanoseconds are only written if there are any, without trailing zeros
+	 */
+	private void formatDate(LocalDateTime date, StringBuilder builder)
+	{
+		if (!iso || date.getYear() < 0 || date.getYear() > 9999)
+		{
+			formatter.formatTo(date, builder);
+			return;
+		}
+
+		pad(builder, date.getYear(), 4).append('-');
+		pad(builder, date.getMonthValue(), 2).append('-');
+		pad(builder, date.getDayOfMonth(), 2).append('T');
+		pad(builder, date.getHour(), 2).append(':');
+		pad(builder, date.getMinute(), 2).append(':');
+		pad(builder, date.getSecond(), 2);
+
+		int nano = date.getNano();
+		if (nano == 0)
+			return;
+
+		int digits = 9;
+		while (nano % 10 == 0)
+		{
+			nano /= 10;
+			digits--;
+		}
+		pad(builder.append('.'), nano, digits);
+	}
+
+	private static StringBuilder pad(StringBuilder builder, int value, int width)
+	{
+		for (int divisor = pow10(width - 1); divisor > 0; divisor /= 10)
+			builder.append((char)('0' + value / divisor % 10));
+		return builder;
+	}
+
+	private static int pow10(int exponent)
+	{
+		int result = 1;
+		for (int i = 0; i < exponent; i++)
+			result *= 10;
+		return result;
+	}
+
+	/**
+	 * A view of an array of ASCII bytes as characters, so they can be parsed without decoding them
+	 * into a String first
+	 */
+	static final class AsciiCharSequence implements CharSequence
+	{
+		private byte[] bytes;
+
+		AsciiCharSequence(byte[] bytes)
+		{
+			this.bytes = bytes;
+		}
+
+		void reset(byte[] bytes)
+		{
+			this.bytes = bytes;
+		}
+
+		@Override
+		public int length()
+		{
+			return bytes.length;
+		}
+
+		@Override
+		public char charAt(int index)
+		{
+			return (char)(bytes[index] & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end)
+		{
+			return decode(start, end);
+		}
+
+		String decode(int start, int end)
+		{
+			return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public String toString()
+		{
+			return decode(0, bytes.length);
+		}
+	}
+}
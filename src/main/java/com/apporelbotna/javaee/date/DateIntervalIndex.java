@@ -0,0 +1,391 @@
+package com.apporelbotna.javaee.date;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An in-memory index of many {@link DateInterval}s which answers which of them contain an
+ * instant, which of them overlap another interval and where is the next free slot of a given
+ * length in O(log n + k) time (k being the number of intervals found), instead of checking every
+ * interval one by one.<br>
+ * <br>
+ * It is an interval tree: a self-balancing (AVL) binary search tree ordered by start date, whose
+ * nodes also know the latest end date of their subtree so whole branches can be skipped. Use
+ * {@link #of(Collection)} to index many intervals at once, which is faster than adding them one
+ * by one.<br>
+ * <br>
+ * The queries follow the semantics of the methods of DateInterval they are named after. Since the
+ * index is ordered by the dates the intervals had when they were added, indexed intervals must
+ * not be modified. This class is not thread-safe.
+ *
+ * @author Jendoliver
+ */
+public class DateIntervalIndex implements Iterable<DateInterval>
+{
+	private static final class Node
+	{
+		private final DateInterval interval;
+		private final LocalDateTime start;
+		private final LocalDateTime end;
+		private final long sequence;
+
+		private Node left;
+		private Node right;
+		private int height = 1;
+		private LocalDateTime maxEnd;
+
+		private Node(DateInterval interval, long sequence)
+		{
+			this.interval = interval;
+			this.start = interval.getStartDate();
+			this.end = interval.getEndDate();
+			this.sequence = sequence;
+			this.maxEnd = end;
+		}
+	}
+
+	private static final Comparator<Node> ORDER = Comparator
+			.comparing((Node node) -> node.start)
+			.thenComparing(node -> node.end)
+			.thenComparingLong(node -> node.sequence);
+
+	private Node root;
+	private int size;
+	private long nextSequence;
+	private boolean removed;
+
+	public DateIntervalIndex()
+	{
+		// Empty index
+	}
+
+	/**
+	 * Indexes all the given intervals at once by sorting them and building a perfectly balanced
+	 * tree, in O(n log n) time but way faster than adding them one by one
+	 */
+	public static DateIntervalIndex of(Collection<? extends DateInterval> intervals)
+	{
+		DateIntervalIndex index = new DateIntervalIndex();
+		Node[] nodes = new Node[intervals.size()];
+		int i = 0;
+		for (DateInterval interval : intervals)
+			nodes[i++] = new Node(interval, index.nextSequence++);
+
+		Arrays.sort(nodes, ORDER);
+		index.root = build(nodes, 0, nodes.length - 1);
+		index.size = nodes.length;
+		return index;
+	}
+
+	private static Node build(Node[] nodes, int from, int to)
+	{
+		if (from > to)
+			return null;
+
+		int middle = (from + to) >>> 1;
+		Node node = nodes[middle];
+		node.left = build(nodes, from, middle - 1);
+		node.right = build(nodes, middle + 1, to);
+		update(node);
+		return node;
+	}
+
+	public void add(DateInterval interval)
+	{
+		root = insert(root, new Node(interval, nextSequence++));
+		size++;
+	}
+
+	/**
+	 * Removes one interval with the same start and end dates as the given one. Returns false if
+	 * there was none.
+	 */
+	public boolean remove(DateInterval interval)
+	{
+		removed = false;
+		root = remove(root, interval.getStartDate(), interval.getEndDate());
+		if (removed)
+			size--;
+		return removed;
+	}
+
+	public void clear()
+	{
+		root = null;
+		size = 0;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * Returns the intervals which contain the given instant, as in
+	 * {@link DateInterval#contains(LocalDateTime)}: strictly after their start and before their end
+	 */
+	public List<DateInterval> containing(LocalDateTime instant)
+	{
+		List<DateInterval> result = new ArrayList<>();
+		collectOverlapping(root, instant, instant, true, result);
+		return result;
+	}
+
+	/**
+	 * Returns the intervals which overlap the given one, as in
+	 * {@link DateInterval#overlaps(DateInterval)}: those which are neither before nor after it
+	 */
+	public List<DateInterval> overlapping(DateInterval interval)
+	{
+		return overlapping(interval.getStartDate(), interval.getEndDate());
+	}
+
+	/**
+	 * Returns the intervals which share at least one instant with the range between
+	 * <code>from</code> and <code>to</code>, both included
+	 */
+	public List<DateInterval> overlapping(LocalDateTime from, LocalDateTime to)
+	{
+		List<DateInterval> result = new ArrayList<>();
+		collectOverlapping(root, from, to, false, result);
+		return result;
+	}
+
+	public boolean overlapsAny(DateInterval interval)
+	{
+		return findOverlapping(root, interval.getStartDate(), interval.getEndDate()) != null;
+	}
+
+	/**
+	 * Returns the earliest instant, not before <code>from</code>, which starts a slot of the given
+	 * length free of any indexed interval. Slots may start right when an interval ends and end
+	 * right when another one starts, so back-to-back bookings are allowed.
+	 */
+	public LocalDateTime findFreeSlot(LocalDateTime from, Duration length)
+	{
+		LocalDateTime candidate = from;
+		while (true)
+		{
+			LocalDateTime blockedUntil = latestEndOverlapping(root, candidate, candidate.plus(length), null);
+			if (blockedUntil == null)
+				return candidate;
+			candidate = blockedUntil;
+		}
+	}
+
+	/**
+	 * Returns the indexed intervals ordered by start date, then by end date
+	 */
+	public List<DateInterval> toList()
+	{
+		List<DateInterval> result = new ArrayList<>(size);
+		collectInOrder(root, result);
+		return result;
+	}
+
+	@Override
+	public Iterator<DateInterval> iterator()
+	{
+		return toList().iterator();
+	}
+
+	/**
+	 * Collects the intervals overlapping the range from-to, taking the bounds as included (like
+	 * {@link DateInterval#overlaps(DateInterval)}) or excluded (like
+	 * {@link DateInterval#contains(LocalDateTime)}) according to <code>strict</code>
+	 */
+	private static void collectOverlapping(Node node, LocalDateTime from, LocalDateTime to, boolean strict,
+			List<DateInterval> result)
+	{
+		if (node == null || endsBefore(node.maxEnd, from, strict))
+			return;
+
+		collectOverlapping(node.left, from, to, strict, result);
+		if (startsAfter(node.start, to, strict))
+			return;
+
+		if (!endsBefore(node.end, from, strict))
+			result.add(node.interval);
+		collectOverlapping(node.right, from, to, strict, result);
+	}
+
+	private static Node findOverlapping(Node node, LocalDateTime from, LocalDateTime to)
+	{
+		while (node != null)
+		{
+			if (!node.start.isAfter(to) && !node.end.isBefore(from))
+				return node;
+
+			// If some interval on the left reaches from but none overlaps, it starts after to and so
+			// does every interval on the right
+			if (node.left != null && !node.left.maxEnd.isBefore(from))
+				node = node.left;
+			else if (node.start.isAfter(to))
+				return null;
+			else
+				node = node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the latest end among the intervals strictly overlapping the range from-to, if it is
+	 * later than <code>latest</code>
+	 */
+	private static LocalDateTime latestEndOverlapping(Node node, LocalDateTime from, LocalDateTime to,
+			LocalDateTime latest)
+	{
+		if (node == null || !node.maxEnd.isAfter(from) || (latest != null && !node.maxEnd.isAfter(latest)))
+			return latest;
+
+		latest = latestEndOverlapping(node.left, from, to, latest);
+		if (!node.start.isBefore(to))
+			return latest;
+
+		if (node.end.isAfter(from) && (latest == null || node.end.isAfter(latest)))
+			latest = node.end;
+		return latestEndOverlapping(node.right, from, to, latest);
+	}
+
+	private static boolean endsBefore(LocalDateTime end, LocalDateTime from, boolean strict)
+	{
+		return strict ? !end.isAfter(from) : end.isBefore(from);
+	}
+
+	private static boolean startsAfter(LocalDateTime start, LocalDateTime to, boolean strict)
+	{
+		return strict ? !start.isBefore(to) : start.isAfter(to);
+	}
+
+	private static void collectInOrder(Node node, List<DateInterval> result)
+	{
+		if (node == null)
+			return;
+
+		collectInOrder(node.left, result);
+		result.add(node.interval);
+		collectInOrder(node.right, result);
+	}
+
+	private static Node insert(Node node, Node inserted)
+	{
+		if (node == null)
+			return inserted;
+
+		if (ORDER.compare(inserted, node) < 0)
+			node.left = insert(node.left, inserted);
+		else
+			node.right = insert(node.right, inserted);
+		return rebalance(node);
+	}
+
+	private Node remove(Node node, LocalDateTime start, LocalDateTime end)
+	{
+		if (node == null)
+			return null;
+
+		int comparison = start.compareTo(node.start);
+		if (comparison == 0)
+			comparison = end.compareTo(node.end);
+
+		if (comparison < 0)
+			node.left = remove(node.left, start, end);
+		else if (comparison > 0)
+			node.right = remove(node.right, start, end);
+		else
+		{
+			removed = true;
+			if (node.left == null)
+				return node.right;
+			if (node.right == null)
+				return node.left;
+
+			Node successor = min(node.right);
+			successor.right = removeMin(node.right);
+			successor.left = node.left;
+			node = successor;
+		}
+		return rebalance(node);
+	}
+
+	private static Node min(Node node)
+	{
+		while (node.left != null)
+			node = node.left;
+		return node;
+	}
+
+	private static Node removeMin(Node node)
+	{
+		if (node.left == null)
+			return node.right;
+
+		node.left = removeMin(node.left);
+		return rebalance(node);
+	}
+
+	private static Node rebalance(Node node)
+	{
+		update(node);
+		int balance = height(node.left) - height(node.right);
+		if (balance > 1)
+		{
+			if (height(node.left.left) < height(node.left.right))
+				node.left = rotateLeft(node.left);
+			return rotateRight(node);
+		}
+		if (balance < -1)
+		{
+			if (height(node.right.right) < height(node.right.left))
+				node.right = rotateRight(node.right);
+			return rotateLeft(node);
+		}
+		return node;
+	}
+
+	private static Node rotateRight(Node node)
+	{
+		Node pivot = node.left;
+		node.left = pivot.right;
+		pivot.right = node;
+		update(node);
+		update(pivot);
+		return pivot;
+	}
+
+	private static Node rotateLeft(Node node)
+	{
+		Node pivot = node.right;
+		node.right = pivot.left;
+		pivot.left = node;
+		update(node);
+		update(pivot);
+		return pivot;
+	}
+
+	private static void update(Node node)
+	{
+		node.height = 1 + Math.max(height(node.left), height(node.right));
+		node.maxEnd = node.end;
+		if (node.left != null && node.left.maxEnd.isAfter(node.maxEnd))
+			node.maxEnd = node.left.maxEnd;
+		if (node.right != null && node.right.maxEnd.isAfter(node.maxEnd))
+			node.maxEnd = node.right.maxEnd;
+	}
+
+	private static int height(Node node)
+	{
+		return node == null ? 0 : node.height;
+	}
+}
@@ -0,0 +1,183 @@
+package com.apporelbotna.javaee.date;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import com.apporelbotna.javaee.date.DateIntervalCodec.AsciiCharSequence;
+
+/**
+ * Reads {@link DateInterval}s from a stream of text with one interval per line, as written by
+ * {@link DateInterval#format(java.time.format.DateTimeFormatter)}. Lines are parsed straight from
+ * the bytes read, without decoding them into Strings first, so a file of millions of intervals can
+ * be loaded into a {@link DateIntervalArray} without creating any garbage per line:<br>
+ * <br>
+ * <code>
+ * try (DateIntervalReader reader = DateIntervalReader.open(path))<br>
+ * {<br>
+ * &emsp;reader.readInto(array, ZoneOffset.UTC);<br>
+ * }
+ * </code><br>
+ * <br>
+ * Both <code>\n</code> and <code>\r\n</code> line endings are supported. Lines are trimmed of
+ * leading and trailing whitespace, and blank lines are skipped. Text is expected in UTF-8, of
+ * which ISO dates are plain ASCII. This class is not thread-safe.
+ *
+ * @see DateIntervalCodec
+ * @author Jendoliver
+ */
+public class DateIntervalReader implements Closeable
+{
+	private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	private final InputStream in;
+	private final DateIntervalCodec codec;
+	private final AsciiCharSequence chars;
+
+	private byte[] buffer;
+	private int position;
+	private int limit;
+	private boolean endOfStream;
+
+	private int lineStart;
+	private int lineEnd;
+
+	public DateIntervalReader(InputStream in)
+	{
+		this(in, DateIntervalCodec.ISO);
+	}
+
+	public DateIntervalReader(InputStream in, DateIntervalCodec codec)
+	{
+		this.in = in;
+		this.codec = codec;
+		this.buffer = new byte[DEFAULT_BUFFER_SIZE];
+		this.chars = new AsciiCharSequence(buffer);
+	}
+
+	public static DateIntervalReader open(Path path) throws IOException
+	{
+		return open(path, DateIntervalCodec.ISO);
+	}
+
+	public static DateIntervalReader open(Path path, DateIntervalCodec codec) throws IOException
+	{
+		return new DateIntervalReader(Files.newInputStream(path), codec);
+	}
+
+	/**
+	 * Returns the interval of the next line, or null if the end of the stream has been reached
+	 */
+	public DateInterval read() throws IOException
+	{
+		return nextLine() ? codec.parse(chars, lineStart, lineEnd) : null;
+	}
+
+	/**
+	 * Reads every remaining line, passing its interval to the given action
+	 */
+	public void readAll(Consumer<? super DateInterval> action) throws IOException
+	{
+		while (nextLine())
+			action.accept(codec.parse(chars, lineStart, lineEnd));
+	}
+
+	/**
+	 * Reads every remaining line into the given array, with the given offset, and returns how many
+	 * intervals have been read
+	 */
+	public int readInto(DateIntervalArray array, ZoneOffset offset) throws IOException
+	{
+		int count = 0;
+		while (nextLine())
+		{
+			codec.parseInto(chars, lineStart, lineEnd, array, offset);
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+	/**
+	 * Moves to the next non-blank line, leaving its bounds in lineStart and lineEnd. Returns false
+	 * if there are no more lines.
+	 */
+	private boolean nextLine() throws IOException
+	{
+		while (true)
+		{
+			int newLine = indexOfNewLine();
+			if (newLine < 0)
+			{
+				if (!endOfStream)
+				{
+					fill();
+					continue;
+				}
+				if (position == limit)
+					return false;
+				newLine = limit;
+			}
+
+			lineStart = position;
+			lineEnd = newLine;
+			position = Math.min(newLine + 1, limit);
+			// Trims control characters and spaces, the \r of \r\n line endings included
+			while (lineEnd > lineStart && isWhitespace(buffer[lineEnd - 1]))
+				lineEnd--;
+			while (lineStart < lineEnd && isWhitespace(buffer[lineStart]))
+				lineStart++;
+			if (lineEnd > lineStart)
+				return true;
+		}
+	}
+
+	private static boolean isWhitespace(byte b)
+	{
+		// Like String.trim(), on the unsigned value so UTF-8 multi-byte sequences are kept
+		return (b & 0xFF) <= ' ';
+	}
+
+	private int indexOfNewLine()
+	{
+		for (int i = position; i < limit; i++)
+			if (buffer[i] == '\n')
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Reads more bytes after the current line, moving it to the start of the buffer first, or
+	 * growing the buffer if the line doesn't fit in it
+	 */
+	private void fill() throws IOException
+	{
+		if (position > 0)
+		{
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		else if (limit == buffer.length)
+		{
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			chars.reset(buffer);
+		}
+
+		int read = in.read(buffer, limit, buffer.length - limit);
+		if (read < 0)
+			endOfStream = true;
+		else
+			limit += read;
+	}
+}
@@ -0,0 +1,372 @@
+package com.apporelbotna.javaee.date;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * An immutable set of instants represented as sorted, non-overlapping {@link DateInterval}s, on
+ * which unions, intersections and differences can be computed in linear time by sweeping both
+ * sets at once, instead of checking every pair of intervals. For instance, the availability of
+ * an agenda can be computed as:<br>
+ * <br>
+ * <code>
+ * DateIntervalSet available = workingHours.difference(bookings).difference(holidays);
+ * </code><br>
+ * <br>
+ * Intervals are normalized when the set is built: overlapping or adjacent intervals are
+ * coalesced into one, and empty ones (starting when they end) are dropped. The set treats every
+ * interval as including its start and excluding its end, so an interval ending when another one
+ * starts leaves no gap between them.
+ *
+ * @author Jendoliver
+ */
+public final class DateIntervalSet
+{
+	private static final DateIntervalSet EMPTY = new DateIntervalSet(new LocalDateTime[0], new LocalDateTime[0], 0);
+	private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+	private final LocalDateTime[] starts;
+	private final LocalDateTime[] ends;
+
+	private DateIntervalSet(LocalDateTime[] starts, LocalDateTime[] ends, int size)
+	{
+		this.starts = starts.length == size ? starts : Arrays.copyOf(starts, size);
+		this.ends = ends.length == size ? ends : Arrays.copyOf(ends, size);
+	}
+
+	public static DateIntervalSet empty()
+	{
+		return EMPTY;
+	}
+
+	public static DateIntervalSet of(DateInterval... dateIntervals)
+	{
+		return of(Arrays.asList(dateIntervals));
+	}
+
+	/**
+	 * Builds the set of instants covered by any of the given intervals, in O(n log n) time
+	 */
+	public static DateIntervalSet of(Collection<? extends DateInterval> dateIntervals)
+	{
+		DateInterval[] sorted = dateIntervals.toArray(new DateInterval[dateIntervals.size()]);
+		return normalize(sorted, 0, sorted.length);
+	}
+
+	/**
+	 * Same as {@link #of(Collection)}, but splitting the work among the threads of the common
+	 * {@link ForkJoinPool}: both halves of the collection are normalized in parallel, recursively,
+	 * and then merged. Only worth it for really big collections.
+	 */
+	public static DateIntervalSet parallelOf(Collection<? extends DateInterval> dateIntervals)
+	{
+		DateInterval[] array = dateIntervals.toArray(new DateInterval[dateIntervals.size()]);
+		return ForkJoinPool.commonPool().invoke(new NormalizeTask(array, 0, array.length));
+	}
+
+	private static class NormalizeTask extends RecursiveTask<DateIntervalSet>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final DateInterval[] dateIntervals;
+		private final int from;
+		private final int to;
+
+		private NormalizeTask(DateInterval[] dateIntervals, int from, int to)
+		{
+			this.dateIntervals = dateIntervals;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected DateIntervalSet compute()
+		{
+			if (to - from <= PARALLEL_THRESHOLD)
+				return normalize(dateIntervals, from, to);
+
+			int middle = (from + to) >>> 1;
+			NormalizeTask left = new NormalizeTask(dateIntervals, from, middle);
+			left.fork();
+			DateIntervalSet right = new NormalizeTask(dateIntervals, middle, to).compute();
+			return left.join().union(right);
+		}
+	}
+
+	/**
+	 * Sorts the given range of the array by start date and coalesces it
+	 */
+	private static DateIntervalSet normalize(DateInterval[] dateIntervals, int from, int to)
+	{
+		Arrays.sort(dateIntervals, from, to, Comparator.comparing(DateInterval::getStartDate));
+		Builder builder = new Builder(to - from);
+		for (int i = from; i < to; i++)
+			builder.add(dateIntervals[i].getStartDate(), dateIntervals[i].getEndDate());
+		return builder.build();
+	}
+
+	/**
+	 * Returns the instants which are in this set, in the other one or in both
+	 */
+	public DateIntervalSet union(DateIntervalSet other)
+	{
+		if (other.isEmpty())
+			return this;
+		if (isEmpty())
+			return other;
+
+		Builder builder = new Builder(size() + other.size());
+		int i = 0;
+		int j = 0;
+		while (i < size() || j < other.size())
+			if (j == other.size() || (i < size() && !starts[i].isAfter(other.starts[j])))
+			{
+				builder.add(starts[i], ends[i]);
+				i++;
+			}
+			else
+			{
+				builder.add(other.starts[j], other.ends[j]);
+				j++;
+			}
+		return builder.build();
+	}
+
+	/**
+	 * Returns the instants which are both in this set and in the other one
+	 */
+	public DateIntervalSet intersection(DateIntervalSet other)
+	{
+		Builder builder = new Builder(Math.max(size(), other.size()));
+		int i = 0;
+		int j = 0;
+		while (i < size() && j < other.size())
+		{
+			builder.add(max(starts[i], other.starts[j]), min(ends[i], other.ends[j]));
+			if (ends[i].isBefore(other.ends[j]))
+				i++;
+			else
+				j++;
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns the instants which are in this set but not in the other one
+	 */
+	public DateIntervalSet difference(DateIntervalSet other)
+	{
+		if (isEmpty() || other.isEmpty())
+			return this;
+
+		Builder builder = new Builder(size() + other.size());
+		int j = 0;
+		for (int i = 0; i < size(); i++)
+		{
+			LocalDateTime current = starts[i];
+			while (j < other.size() && !other.ends[j].isAfter(current))
+				j++;
+
+			for (int k = j; k < other.size() && other.starts[k].isBefore(ends[i]); k++)
+			{
+				builder.add(current, other.starts[k]);
+				current = max(current, other.ends[k]);
+			}
+			builder.add(current, ends[i]);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns the parts of the given interval which are not in this set, i.e the free slots of an
+	 * agenda within a day
+	 */
+	public DateIntervalSet complement(DateInterval within)
+	{
+		return of(within).difference(this);
+	}
+
+	/**
+	 * Returns the holes between the intervals of this set, from the end of the first one to the
+	 * start of the last one
+	 */
+	public DateIntervalSet gaps()
+	{
+		Builder builder = new Builder(Math.max(size() - 1, 0));
+		for (int i = 1; i < size(); i++)
+			builder.add(ends[i - 1], starts[i]);
+		return builder.build();
+	}
+
+	public Duration getTotalDuration()
+	{
+		Duration total = Duration.ZERO;
+		for (int i = 0; i < size(); i++)
+			total = total.plus(Duration.between(starts[i], ends[i]));
+		return total;
+	}
+
+	/**
+	 * Returns true if the instant is in this set, that is, in one of its intervals, start included
+	 * and end excluded. Takes O(log n) time.
+	 */
+	public boolean contains(LocalDateTime instant)
+	{
+		int index = lastStartingAtOrBefore(instant);
+		return index >= 0 && instant.isBefore(ends[index]);
+	}
+
+	/**
+	 * Returns true if every instant of the given interval is in this set
+	 */
+	public boolean contains(DateInterval dateInterval)
+	{
+		int index = lastStartingAtOrBefore(dateInterval.getStartDate());
+		return index >= 0 && !dateInterval.getEndDate().isAfter(ends[index]);
+	}
+
+	/**
+	 * Returns true if some instant of the given interval is in this set
+	 */
+	public boolean overlaps(DateInterval dateInterval)
+	{
+		int index = lastStartingAtOrBefore(dateInterval.getStartDate());
+		if (index >= 0 && dateInterval.getStartDate().isBefore(ends[index]))
+			return true;
+
+		return index + 1 < size() && starts[index + 1].isBefore(dateInterval.getEndDate());
+	}
+
+	public int size()
+	{
+		return starts.length;
+	}
+
+	public boolean isEmpty()
+	{
+		return starts.length == 0;
+	}
+
+	/**
+	 * Returns the normalized intervals of this set, sorted by start date
+	 */
+	public List<DateInterval> toList()
+	{
+		List<DateInterval> dateIntervals = new ArrayList<>(size());
+		for (int i = 0; i < size(); i++)
+			dateIntervals.add(DateInterval.of(starts[i], ends[i]));
+		return dateIntervals;
+	}
+
+	private int lastStartingAtOrBefore(LocalDateTime instant)
+	{
+		int low = 0;
+		int high = size() - 1;
+		while (low <= high)
+		{
+			int middle = (low + high) >>> 1;
+			if (starts[middle].isAfter(instant))
+				high = middle - 1;
+			else
+				low = middle + 1;
+		}
+		return high;
+	}
+
+	private static LocalDateTime max(LocalDateTime a, LocalDateTime b)
+	{
+		return a.isAfter(b) ? a : b;
+	}
+
+	private static LocalDateTime min(LocalDateTime a, LocalDateTime b)
+	{
+		return a.isBefore(b) ? a : b;
+	}
+
+	/**
+	 * Accumulates intervals given in start order, coalescing each one with the previous one if
+	 * they overlap or touch and dropping the empty ones
+	 */
+	private static class Builder
+	{
+		private LocalDateTime[] starts;
+		private LocalDateTime[] ends;
+		private int size;
+
+		private Builder(int expectedSize)
+		{
+			starts = new LocalDateTime[Math.max(expectedSize, 1)];
+			ends = new LocalDateTime[Math.max(expectedSize, 1)];
+		}
+
+		private void add(LocalDateTime start, LocalDateTime end)
+		{
+			if (!start.isBefore(end))
+				return;
+
+			if (size > 0 && !start.isAfter(ends[size - 1]))
+			{
+				if (end.isAfter(ends[size - 1]))
+					ends[size - 1] = end;
+				return;
+			}
+
+			if (size == starts.length)
+			{
+				starts = Arrays.copyOf(starts, size * 2);
+				ends = Arrays.copyOf(ends, size * 2);
+			}
+			starts[size] = start;
+			ends[size] = end;
+			size++;
+		}
+
+		private DateIntervalSet build()
+		{
+			return size == 0 ? EMPTY : new DateIntervalSet(starts, ends, size);
+		}
+	}
+
+	@Override
+	public int hashCode()
+	{
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(starts);
+		result = prime * result + Arrays.hashCode(ends);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		DateIntervalSet other = (DateIntervalSet)obj;
+		return Arrays.equals(starts, other.starts) && Arrays.equals(ends, other.ends);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < size(); i++)
+		{
+			if (i > 0)
+				builder.append(", ");
+			builder.append(starts[i]).append(DateInterval.START_END_SEPARATOR).append(ends[i]);
+		}
+		return builder.append(']').toString();
+	}
+}
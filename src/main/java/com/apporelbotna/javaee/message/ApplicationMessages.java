@@ -1,6 +1,6 @@
 package com.apporelbotna.javaee.message;
 
-import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -17,12 +17,70 @@ import java.util.ResourceBundle;
  * Think about this class as a ResourceBundle factory. It also provides utility methods
  * to retrieve parametrized messages (see {@link #get(String, Object...)}
  * 
+ * The patterns of parametrized messages are compiled once and cached, since parsing them
+ * is way more expensive than formatting them. Use {@link #preload()} to compile all of them
+ * at startup.
+ * 
+ * To serve several locales at once, use {@link #get(Locale, String, Object...)} instead of
+ * {@link #setLocale(Locale)}, or {@link LocalizedMessages} directly.
+ * 
  * @author Jendoliver
  */
 public abstract class ApplicationMessages
 {
 	protected ResourceBundle bundle;
 	
+	private volatile BundleFormats formats;
+	
+	/**
+	 * The format cache of a bundle, kept together so they are always seen together by any thread,
+	 * plus the messages already retrieved by {@link MessageKey} indexed by their ordinal
+	 */
+	private static final class BundleFormats
+	{
+		private final ResourceBundle bundle;
+		private final MessageFormatCache cache;
+		private volatile KeyedMessage[] keyedMessages = new KeyedMessage[0];
+		
+		private BundleFormats(ResourceBundle bundle)
+		{
+			this.bundle = bundle;
+			this.cache = MessageFormatCache.of(bundle);
+		}
+		
+		private CompiledMessage get(MessageKey key)
+		{
+			KeyedMessage[] messages = keyedMessages;
+			int ordinal = key.ordinal();
+			Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+			if(ordinal < messages.length)
+			{
+				KeyedMessage keyed = messages[ordinal];
+				if(keyed != null && keyed.key == key && keyed.message.isCompiledFor(locale))
+					return keyed.message;
+			}
+			
+			// Copy on write, a message lost by a concurrent write will just be looked up again
+			CompiledMessage message = cache.compiled(bundle, key.getCode());
+			messages = Arrays.copyOf(messages, Math.max(messages.length, ordinal + 1));
+			messages[ordinal] = new KeyedMessage(key, message);
+			keyedMessages = messages;
+			return message;
+		}
+	}
+	
+	private static final class KeyedMessage
+	{
+		private final MessageKey key;
+		private final CompiledMessage message;
+		
+		private KeyedMessage(MessageKey key, CompiledMessage message)
+		{
+			this.key = key;
+			this.message = message;
+		}
+	}
+	
 	public ApplicationMessages()
 	{
 		bundle = ResourceBundle.getBundle(getBundleName(), Locale.getDefault());
@@ -38,8 +96,51 @@ public abstract class ApplicationMessages
 	 */
 	public String get(String code, Object... parameters)
 	{
-		String message = get(code);
-		return MessageFormat.format(message, parameters);
+		ResourceBundle current = bundle;
+		return getFormats(current).cache.format(current, code, parameters);
+	}
+	
+	/**
+	 * Retrieves a message by its generated key (see {@link MessageBundle}), formatted with the
+	 * given parameters if there are any. Once retrieved, messages are found by the ordinal of
+	 * their key instead of by hashing their code.
+	 */
+	public String get(MessageKey key, Object... parameters)
+	{
+		ResourceBundle current = bundle;
+		CompiledMessage message = getFormats(current).get(key);
+		return parameters.length == 0 ? message.getPattern() : message.format(parameters);
+	}
+	
+	/**
+	 * Retrieves a message in the given locale, without changing the locale of this instance. See
+	 * {@link LocalizedMessages}, which this method delegates to.
+	 */
+	public String get(Locale locale, String code, Object... parameters)
+	{
+		return LocalizedMessages.of(getBundleName()).get(locale, code, parameters);
+	}
+	
+	/**
+	 * Compiles every parametrized message of the bundle, so the first calls to
+	 * {@link #get(String, Object...)} don't have to
+	 */
+	public void preload()
+	{
+		ResourceBundle current = bundle;
+		getFormats(current).cache.preload(current);
+	}
+	
+	private BundleFormats getFormats(ResourceBundle current)
+	{
+		// The bundle is protected, so it might have been replaced without any setter
+		BundleFormats bundleFormats = formats;
+		if(bundleFormats == null || bundleFormats.bundle != current)
+		{
+			bundleFormats = new BundleFormats(current);
+			formats = bundleFormats;
+		}
+		return bundleFormats;
 	}
 	
 	public ResourceBundle getBundle()
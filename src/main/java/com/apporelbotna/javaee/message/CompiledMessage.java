@@ -0,0 +1,73 @@
+package com.apporelbotna.javaee.message;
+
+import java.text.Format;
+import java.text.MessageFormat;
+import java.util.Locale;
+
+/**
+ * A message pattern parsed once into a {@link MessageFormat}, which can be formatted by many
+ * threads at once. Messages without any placeholder or quote are returned as they are, and formats
+ * without sub-formats (only plain <code>{0}</code> arguments) are shared by every thread, since
+ * formatting doesn't modify them. Any other format is cloned before using it, as MessageFormat
+ * isn't thread-safe.
+ *
+ * @author Jendoliver
+ */
+final class CompiledMessage
+{
+	private final String pattern;
+	private final Locale locale;
+	private final MessageFormat format;
+	private final boolean shared;
+
+	CompiledMessage(String pattern, Locale locale)
+	{
+		this.pattern = pattern;
+		this.locale = locale;
+		if (pattern.indexOf('{') < 0 && pattern.indexOf('\'') < 0)
+		{
+			format = null;
+			shared = true;
+		}
+		else
+		{
+			format = new MessageFormat(pattern, locale);
+			shared = hasNoSubformats(format);
+		}
+	}
+
+	String getPattern()
+	{
+		return pattern;
+	}
+
+	boolean isCompiledFrom(String pattern, Locale locale)
+	{
+		return this.pattern.equals(pattern) && this.locale.equals(locale);
+	}
+
+	boolean isCompiledFor(Locale locale)
+	{
+		return this.locale.equals(locale);
+	}
+
+	/**
+	 * Same as <code>MessageFormat.format(pattern, parameters)</code>
+	 */
+	String format(Object[] parameters)
+	{
+		if (format == null)
+			return pattern;
+
+		MessageFormat messageFormat = shared ? format : (MessageFormat)format.clone();
+		return messageFormat.format(parameters, new StringBuffer(pattern.length() + 16), null).toString();
+	}
+
+	private static boolean hasNoSubformats(MessageFormat format)
+	{
+		for (Format subformat : format.getFormats())
+			if (subformat != null)
+				return false;
+		return true;
+	}
+}
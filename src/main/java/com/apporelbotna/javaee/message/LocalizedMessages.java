@@ -0,0 +1,167 @@
+package com.apporelbotna.javaee.message;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The messages of a {@link ResourceBundle} in every locale, for applications which serve many
+ * locales at once, i.e a server whose users each have their own language. Unlike
+ * {@link ApplicationMessages}, which holds the bundle of a single locale, the locale is given on
+ * every call to {@link #get(Locale, String, Object...)}, so one instance can be shared by all the
+ * threads of the application:<br>
+ * <br>
+ * <code>
+ * LocalizedMessages.of("userMessages").get(request.getLocale(), "user.welcome", name)
+ * </code><br>
+ * <br>
+ * The first time a locale is requested, every message of its bundle (including the ones inherited
+ * from its parent bundles, i.e <code>messages_es_ES</code> from <code>messages_es</code> and
+ * <code>messages</code>) is compiled into a single map, so getting a message is a single hash
+ * lookup no matter how long the fallback chain is. Parameters are formatted according to the
+ * requested locale.<br>
+ * <br>
+ * {@link #reload()} reads the .properties files again, replacing every loaded locale at once, so
+ * messages can be changed without restarting the application. Readers never see a half-reloaded
+ * bundle.<br>
+ * <br>
+ * This class is thread-safe.
+ *
+ * @author Jendoliver
+ */
+public final class LocalizedMessages
+{
+	private static final ConcurrentMap<String, LocalizedMessages> INSTANCES = new ConcurrentHashMap<>();
+
+	/**
+	 * Reads the .properties files bypassing the URL caches, so reloaded bundles read the files as
+	 * they are now
+	 */
+	private static final ResourceBundle.Control UNCACHED_CONTROL = new ResourceBundle.Control()
+	{
+		@Override
+		public ResourceBundle newBundle(String baseName, Locale locale, String format, ClassLoader loader,
+				boolean reload) throws IllegalAccessException, InstantiationException, IOException
+		{
+			return super.newBundle(baseName, locale, format, loader, true);
+		}
+	};
+
+	private final String bundleName;
+	private final ClassLoader classLoader;
+	private volatile ConcurrentMap<Locale, Map<String, CompiledMessage>> locales = new ConcurrentHashMap<>();
+
+	private LocalizedMessages(String bundleName, ClassLoader classLoader)
+	{
+		this.bundleName = bundleName;
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * Returns the messages of the given bundle, shared by the whole application and loaded by the
+	 * context class loader of the first thread asking for them
+	 */
+	public static LocalizedMessages of(String bundleName)
+	{
+		LocalizedMessages messages = INSTANCES.get(bundleName);
+		if (messages != null)
+			return messages;
+
+		return INSTANCES.computeIfAbsent(bundleName, name -> new LocalizedMessages(name, defaultClassLoader()));
+	}
+
+	/**
+	 * Creates a new, not shared, instance for the given bundle, loaded by the given class loader
+	 */
+	public static LocalizedMessages of(String bundleName, ClassLoader classLoader)
+	{
+		return new LocalizedMessages(bundleName, classLoader);
+	}
+
+	private static ClassLoader defaultClassLoader()
+	{
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		return classLoader != null ? classLoader : LocalizedMessages.class.getClassLoader();
+	}
+
+	public String getBundleName()
+	{
+		return bundleName;
+	}
+
+	/**
+	 * Returns the message in the given locale, formatted with the given parameters if there are
+	 * any, in the same way as {@link ApplicationMessages#get(String, Object...)}
+	 *
+	 * @throws MissingResourceException if there is no such message
+	 */
+	public String get(Locale locale, String code, Object... parameters)
+	{
+		CompiledMessage message = messagesOf(locale).get(code);
+		if (message == null)
+			throw new MissingResourceException("Can't find resource for bundle " + bundleName + "_" + locale
+					+ ", key " + code, bundleName, code);
+
+		return parameters.length == 0 ? message.getPattern() : message.format(parameters);
+	}
+
+	public boolean contains(Locale locale, String code)
+	{
+		return messagesOf(locale).containsKey(code);
+	}
+
+	/**
+	 * Loads the messages of the given locales right away, so the first requests in them don't
+	 * have to
+	 */
+	public void preload(Locale... locales)
+	{
+		for (Locale locale : locales)
+			messagesOf(locale);
+	}
+
+	/**
+	 * Reads the bundle files of every locale loaded so far again, and replaces their messages with
+	 * the new ones once all of them have been read
+	 */
+	public void reload()
+	{
+		ResourceBundle.clearCache(classLoader);
+		ConcurrentMap<Locale, Map<String, CompiledMessage>> reloaded = new ConcurrentHashMap<>();
+		for (Locale locale : locales.keySet())
+			reloaded.put(locale, load(locale));
+		locales = reloaded;
+	}
+
+	private Map<String, CompiledMessage> messagesOf(Locale locale)
+	{
+		Map<String, CompiledMessage> messages = locales.get(locale);
+		if (messages != null)
+			return messages;
+
+		return locales.computeIfAbsent(locale, this::load);
+	}
+
+	/**
+	 * Flattens the bundle of the locale and all of its parents into a single map
+	 */
+	private Map<String, CompiledMessage> load(Locale locale)
+	{
+		ResourceBundle bundle = ResourceBundle.getBundle(bundleName, locale, classLoader, UNCACHED_CONTROL);
+		Map<String, CompiledMessage> messages = new HashMap<>();
+		Enumeration<String> codes = bundle.getKeys();
+		while (codes.hasMoreElements())
+		{
+			String code = codes.nextElement();
+			messages.put(code, new CompiledMessage(bundle.getString(code), locale));
+		}
+		return Collections.unmodifiableMap(messages);
+	}
+}
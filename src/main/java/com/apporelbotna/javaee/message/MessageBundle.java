@@ -0,0 +1,41 @@
+package com.apporelbotna.javaee.message;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates an enum with the keys of a bundle at compile time, named after the annotated class
+ * plus <code>Keys</code> and placed on its same package, i.e:<br>
+ * <br>
+ * <code>
+ * &#64;MessageBundle("userMessages")<br>
+ * public class UserMessages extends ApplicationMessages<br>
+ * </code><br>
+ * generates <code>UserMessagesKeys</code>, with one {@link MessageKey} constant per message of
+ * <code>userMessages.properties</code>: <code>user.notFound</code> becomes
+ * <code>USER_NOT_FOUND</code>, and so on.<br>
+ * <br>
+ * The build fails if the bundle files are inconsistent: if a locale lacks some message of the
+ * base bundle (or of any other locale if there is no base bundle), if a locale has messages which
+ * the base bundle hasn't, or if the patterns of a message expect a different number of parameters
+ * depending on the locale.<br>
+ * <br>
+ * The processor reads the .properties files from the directories given with the
+ * <code>-Ajhen.messages.dir</code> compiler option (i.e <code>src/main/resources</code>),
+ * separated by the path separator of the platform.
+ *
+ * @author Jendoliver
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface MessageBundle
+{
+	/**
+	 * The name of the bundle, as given to {@link java.util.ResourceBundle#getBundle(String)}
+	 */
+	String value();
+}
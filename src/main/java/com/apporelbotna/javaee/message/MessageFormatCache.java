@@ -0,0 +1,99 @@
+package com.apporelbotna.javaee.message;
+
+import java.text.MessageFormat;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The compiled {@link MessageFormat}s of the messages of one {@link ResourceBundle}, so their
+ * patterns are parsed once instead of on every {@link ApplicationMessages#get(String, Object...)}.
+ * There is one cache per bundle name and locale, shared by every ApplicationMessages using it.<br>
+ * <br>
+ * Each compiled message remembers the pattern it was compiled from, and is compiled again if the
+ * bundle returns a different one (i.e it has been reloaded or replaced by a custom bundle), so the
+ * cache never returns stale messages.
+ *
+ * @see CompiledMessage
+ * @author Jendoliver
+ */
+final class MessageFormatCache
+{
+	private static final ConcurrentMap<BundleKey, MessageFormatCache> CACHES = new ConcurrentHashMap<>();
+
+	private static final class BundleKey
+	{
+		private final String bundleName;
+		private final Locale locale;
+
+		private BundleKey(ResourceBundle bundle)
+		{
+			this.bundleName = bundle.getBaseBundleName() != null ? bundle.getBaseBundleName()
+					: bundle.getClass().getName();
+			this.locale = bundle.getLocale();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * bundleName.hashCode() + Objects.hashCode(locale);
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof BundleKey))
+				return false;
+			BundleKey other = (BundleKey)obj;
+			return bundleName.equals(other.bundleName) && Objects.equals(locale, other.locale);
+		}
+	}
+
+	private final ConcurrentMap<String, CompiledMessage> messages = new ConcurrentHashMap<>();
+
+	private MessageFormatCache()
+	{
+		// Use of(ResourceBundle)
+	}
+
+	static MessageFormatCache of(ResourceBundle bundle)
+	{
+		return CACHES.computeIfAbsent(new BundleKey(bundle), key -> new MessageFormatCache());
+	}
+
+	/**
+	 * Same as <code>MessageFormat.format(bundle.getString(code), parameters)</code>
+	 */
+	String format(ResourceBundle bundle, String code, Object[] parameters)
+	{
+		return compiled(bundle, code).format(parameters);
+	}
+
+	/**
+	 * Compiles every message of the bundle right away
+	 */
+	void preload(ResourceBundle bundle)
+	{
+		Enumeration<String> codes = bundle.getKeys();
+		while (codes.hasMoreElements())
+			compiled(bundle, codes.nextElement());
+	}
+
+	CompiledMessage compiled(ResourceBundle bundle, String code)
+	{
+		String pattern = bundle.getString(code);
+		Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+		CompiledMessage compiled = messages.get(code);
+		if (compiled == null || !compiled.isCompiledFrom(pattern, locale))
+		{
+			compiled = new CompiledMessage(pattern, locale);
+			messages.put(code, compiled);
+		}
+		return compiled;
+	}
+}
@@ -0,0 +1,30 @@
+package com.apporelbotna.javaee.message;
+
+/**
+ * A message of a bundle, known at compile time. Implemented by the enums generated from the
+ * .properties files of the classes annotated with {@link MessageBundle}, so messages can be
+ * retrieved with {@link ApplicationMessages#get(MessageKey, Object...)} instead of with their code
+ * as a String, which is faster and can't be misspelled.
+ *
+ * @author Jendoliver
+ */
+public interface MessageKey
+{
+	String getBundleName();
+
+	/**
+	 * The key of the message in the .properties files
+	 */
+	String getCode();
+
+	/**
+	 * How many parameters the message expects, that is, the highest argument index of its pattern
+	 * plus one
+	 */
+	int getParameterCount();
+
+	/**
+	 * The position of the key among the keys of its bundle, starting at 0
+	 */
+	int ordinal();
+}
@@ -0,0 +1,31 @@
+package com.apporelbotna.javaee.persistence;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non-blocking counterpart of {@link JhenDAO}: every operation returns right away with a
+ * {@link CompletionStage} which completes once the operation has been done, in a thread of the
+ * DAO, so independent operations overlap instead of waiting for each other. Operations which fail
+ * complete their stage exceptionally, with the {@link JhenPersistenceException} or the exception
+ * of the persistence system.
+ *
+ * @see AsyncJhenJpaDAO
+ * @author Jendoliver
+ */
+public interface AsyncJhenDAO
+{
+	<T extends Identifiable<K>, K> CompletionStage<Void> store(T entity);
+	<T extends Identifiable<K>, K> CompletionStage<Void> update(T entity);
+	<T extends Identifiable<K>, K> CompletionStage<Void> delete(T entity);
+	<T extends Identifiable<K>, K> CompletionStage<Void> storeAll(Collection<T> entities);
+	<T extends Identifiable<K>, K> CompletionStage<Void> updateAll(Collection<T> entities);
+	<T extends Identifiable<K>, K> CompletionStage<Void> deleteAll(Collection<T> entities);
+	<T extends Identifiable<K>, K> CompletionStage<Boolean> isPersisted(T entity);
+	<T extends Identifiable<K>, K> CompletionStage<T> getByKey(Class<T> clazz, K key);
+	<T extends Identifiable<K>, K> CompletionStage<Map<K, T>> getAllByKeys(Class<T> clazz, Collection<K> keys);
+	<T extends Identifiable<K>, K> CompletionStage<List<T>> findAll(Class<T> clazz);
+	<T extends Identifiable<K>, K> CompletionStage<Long> count(Class<T> clazz);
+}
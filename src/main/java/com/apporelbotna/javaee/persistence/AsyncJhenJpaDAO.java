@@ -0,0 +1,472 @@
+package com.apporelbotna.javaee.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+
+/**
+ * {@link AsyncJhenDAO} which runs the operations of a {@link JhenJpaDAO} on a dedicated, bounded
+ * pool of threads, so a web tier doesn't have to wrap every call by hand nor block its own
+ * threads on the database:<br>
+ * <br>
+ * <code>
+ * AsyncJhenJpaDAO&lt;UserDAO&gt; users = new AsyncJhenJpaDAO&lt;&gt;(new UserDAO(EntityManagerScope.THREAD), 8, 1000);<br>
+ * users.getAllByKeys(User.class, ids).thenAccept(found -&gt; ...);<br>
+ * users.supply(dao -&gt; dao.findByEmail(email)).thenAccept(user -&gt; ...);<br>
+ * </code><br>
+ * The DAO must have the {@link EntityManagerScope#THREAD} scope. Each operation borrows an
+ * EntityManager from a pool of them, as many as threads, and lends it to its thread through the
+ * {@link EntityManagerContext}. Committing only clears it, so it is reused by the following
+ * operations instead of opening a new one every time. Operations which don't fit in the queue
+ * fail right away with a {@link RejectedExecutionException}, so callers get back pressure instead
+ * of piling up work.<br>
+ * <br>
+ * The returned futures can be cancelled, and fail with a {@link TimeoutException} if they take
+ * longer than {@link #setTimeout(long, TimeUnit)}. Operations cancelled or timed out while queued
+ * are never run. Running ones are not interrupted, since interrupting a thread in the middle of a
+ * JDBC call may break its connection, but their queries are given the remaining time as their
+ * timeout.
+ *
+ * @param <D> the type of the DAO, whose own methods can be run through {@link #supply(Operation)}
+ * @author Jendoliver
+ */
+public class AsyncJhenJpaDAO<D extends JhenJpaDAO> implements AsyncJhenDAO, AutoCloseable
+{
+	/**
+	 * Query timeout in milliseconds of the JPA specification, set on the EntityManagers of the
+	 * operations with a timeout
+	 */
+	public static final String QUERY_TIMEOUT_HINT = "javax.persistence.query.timeout";
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	private static final ScheduledThreadPoolExecutor TIMEOUTS = createTimeoutScheduler();
+
+	/**
+	 * An operation over the DAO, which is run in one of the threads of the AsyncJhenJpaDAO
+	 */
+	@FunctionalInterface
+	public interface Operation<D, R>
+	{
+		R apply(D dao) throws JhenPersistenceException;
+	}
+
+	private final D dao;
+	private final String persistenceUnitName;
+	private final ThreadPoolExecutor executor;
+	private final BlockingQueue<EntityManager> entityManagers;
+	private final Object defaultQueryTimeout;
+	private volatile long timeoutMillis;
+
+	/**
+	 * Creates an AsyncJhenJpaDAO with as many threads as processors, and at least 4, since they
+	 * spend most of their time waiting for the database
+	 */
+	public AsyncJhenJpaDAO(D dao)
+	{
+		this(dao, Math.max(4, Runtime.getRuntime().availableProcessors()), DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * @param threads how many operations run at once, which shouldn't be more than the
+	 *            connections of the pool of the persistence unit
+	 * @param queueCapacity how many operations can wait for a thread
+	 */
+	public AsyncJhenJpaDAO(D dao, int threads, int queueCapacity)
+	{
+		if (dao.getScope() != EntityManagerScope.THREAD)
+			throw new IllegalArgumentException("The DAO of an AsyncJhenJpaDAO must have the THREAD scope");
+		if (threads <= 0 || queueCapacity <= 0)
+			throw new IllegalArgumentException("The threads and the capacity of the queue must be positive");
+
+		this.dao = dao;
+		this.persistenceUnitName = dao.getPersistenceUnitName();
+		this.entityManagers = new ArrayBlockingQueue<>(threads);
+		Object configuredQueryTimeout = dao.getEntityManagerFactory().getProperties().get(QUERY_TIMEOUT_HINT);
+		this.defaultQueryTimeout = configuredQueryTimeout != null ? configuredQueryTimeout : 0;
+
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), runnable ->
+				{
+					Thread thread = new Thread(runnable, "jhen-persistence-" + persistenceUnitName + "-"
+							+ threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				})
+		{
+			@Override
+			protected void terminated()
+			{
+				// No operation can give an EntityManager back anymore
+				for (EntityManager entityManager = entityManagers.poll(); entityManager != null; entityManager = entityManagers.poll())
+					if (entityManager.isOpen())
+						entityManager.close();
+			}
+		};
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	private static ScheduledThreadPoolExecutor createTimeoutScheduler()
+	{
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable ->
+		{
+			Thread thread = new Thread(runnable, "jhen-persistence-timeouts");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.setRemoveOnCancelPolicy(true);
+		return scheduler;
+	}
+
+	public D getDAO()
+	{
+		return dao;
+	}
+
+	/**
+	 * Sets how long the operations can take, counting the time they wait in the queue, before
+	 * their futures fail with a {@link TimeoutException}. 0 (the default) means no timeout.
+	 */
+	public void setTimeout(long timeout, TimeUnit unit)
+	{
+		if (timeout < 0)
+			throw new IllegalArgumentException("The timeout can't be negative");
+
+		this.timeoutMillis = unit.toMillis(timeout);
+	}
+
+	public CriteriaBuilder getCriteriaBuilder()
+	{
+		return dao.getCriteriaBuilder();
+	}
+
+	/**
+	 * Runs the operation over the DAO in one of the threads of this AsyncJhenJpaDAO, outside a
+	 * transaction unless the operation begins one
+	 */
+	public <R> CompletableFuture<R> supply(Operation<? super D, R> operation)
+	{
+		CompletableFuture<R> future = new CompletableFuture<>();
+		long timeout = timeoutMillis;
+		long deadline = timeout == 0 ? 0 : System.currentTimeMillis() + timeout;
+		try
+		{
+			executor.execute(() -> run(operation, future, deadline));
+		}
+		catch (RejectedExecutionException e)
+		{
+			future.completeExceptionally(e);
+			return future;
+		}
+
+		if (timeout > 0)
+		{
+			ScheduledFuture<?> expiration = TIMEOUTS.schedule(() -> future.completeExceptionally(
+					new TimeoutException("The operation took longer than " + timeout + " ms")), timeout, TimeUnit.MILLISECONDS);
+			future.whenComplete((result, e) -> expiration.cancel(false));
+		}
+		return future;
+	}
+
+	/**
+	 * Runs the operation over the DAO in one single transaction, which is committed if it
+	 * succeeds and rolled back otherwise
+	 */
+	public <R> CompletableFuture<R> inTransaction(Operation<? super D, R> operation)
+	{
+		return supply(transactional ->
+		{
+			transactional.beginTransaction();
+			try
+			{
+				R result = operation.apply(transactional);
+				transactional.commit();
+				return result;
+			}
+			catch (JhenPersistenceException | RuntimeException e)
+			{
+				if (transactional.getTransaction().isActive())
+					transactional.rollback();
+				throw e;
+			}
+		});
+	}
+
+	private <R> void run(Operation<? super D, R> operation, CompletableFuture<R> future, long deadline)
+	{
+		// Cancelled or timed out while waiting in the queue
+		if (future.isDone())
+			return;
+
+		EntityManager entityManager = null;
+		try
+		{
+			entityManager = borrow();
+			if (deadline > 0)
+				entityManager.setProperty(QUERY_TIMEOUT_HINT, queryTimeout(deadline));
+			EntityManagerContext.bind(persistenceUnitName, entityManager);
+			future.complete(operation.apply(dao));
+		}
+		catch (Exception e)
+		{
+			future.completeExceptionally(e);
+		}
+		catch (Error e)
+		{
+			future.completeExceptionally(e);
+			throw e;
+		}
+		finally
+		{
+			if (entityManager != null)
+				giveBack(entityManager, deadline > 0);
+		}
+	}
+
+	/**
+	 * The time left until the deadline, as the integer milliseconds the hint takes. It is rounded up
+	 * to whole seconds, since JDBC query timeouts are in seconds and providers round the hint to
+	 * the nearest one, which would turn less than half a second into no timeout at all.
+	 */
+	private static int queryTimeout(long deadline)
+	{
+		long seconds = Math.max(1, (deadline - System.currentTimeMillis() + 999) / 1000);
+		return (int)Math.min(Integer.MAX_VALUE / 1000, seconds) * 1000;
+	}
+
+	private EntityManager borrow()
+	{
+		EntityManager entityManager = entityManagers.poll();
+		while (entityManager != null && !entityManager.isOpen())
+			entityManager = entityManagers.poll();
+		return entityManager != null ? entityManager : dao.getEntityManagerFactory().createEntityManager();
+	}
+
+	/**
+	 * Unbinds the EntityManager from the thread and puts it back in the pool, rolling back the
+	 * transaction the operation may have left behind and resetting the query timeout it was given
+	 */
+	private void giveBack(EntityManager entityManager, boolean timed)
+	{
+		EntityManager bound = EntityManagerContext.unbind(persistenceUnitName);
+		// The operation closed the lent one, so the DAO opened another
+		if (bound != null && bound != entityManager && bound.isOpen())
+			bound.close();
+
+		if (!entityManager.isOpen())
+			return;
+		if (entityManager.getTransaction().isActive())
+			entityManager.getTransaction().rollback();
+		entityManager.clear();
+		if (timed)
+			entityManager.setProperty(QUERY_TIMEOUT_HINT, defaultQueryTimeout);
+		if (executor.isShutdown() || !entityManagers.offer(entityManager))
+			entityManager.close();
+	}
+
+	@Override
+	public <T extends Identifiable<K>, K> CompletableFuture<Void> store(T entity)
+	{
+		return supply(dao ->
+		{
+			dao.store(entity);
+			return null;
+		});
+	}
+
+	/**
+	 * Merges the entity and commits, since the transaction can't outlive the operation
+	 */
+	@Override
+	public <T extends Identifiable<K>, K> CompletableFuture<Void> update(T entity)
+	{
+		return inTransaction(dao ->
+		{
+			dao.update(entity);
+			return null;
+		});
+	}
+
+	/**
+	 * Removes the entity and commits, since the transaction can't outlive the operation
+	 */
+	@Override
+	public <T extends Identifiable<K>, K> CompletableFuture<Void> delete(T entity)
+	{
+		return inTransaction(dao ->
+		{
+			dao.delete(entity);
+			return null;
+		});
+	}
+
+	@Override
+	public <T extends Identifiable<K>, K> CompletableFuture<Void> storeAll(Collection<T> entities)
+	{
+		return supply(dao ->
+		{
+			dao.storeAll(entities);
+			return null;
+		});
+	}
+
+	@Override
+	public <T extends Identifiable<K>, K> CompletableFuture<Void> updateAll(Collection<T> entities)
+	{
+		return supply(dao ->
+		{
+			dao.updateAll(entities);
+			return null;
+		});
+	}
+
+	@Override
+	public <T extends Identifiable<K>, K> CompletableFuture<Void> deleteAll(Collection<T> entities)
+	{
+		return supply(dao ->
+		{
+			dao.deleteAll(entities);
+			return null;
+		});
+	}
+
+	@Override
+	public <T extends Identifiable<K>, K> CompletableFuture<Boolean> isPersisted(T entity)
+	{
+		return supply(dao -> dao.isPersisted(entity));
+	}
+
+	@Override
+	public <T extends Identifiable<K>, K> CompletableFuture<T> getByKey(Class<T> clazz, K key)
+	{
+		return supply(dao -> dao.getByKey(clazz, key));
+	}
+
+	/**
+	 * Gets the entities with the given keys, splitting them among the threads so they are fetched
+	 * in parallel, and merges them in the order of the keys. Keys without entity are left out.<br>
+	 * <br>
+	 * The returned future fails as soon as any part does, and failing or cancelling it cancels the
+	 * parts which haven't run yet.
+	 */
+	@Override
+	public <T extends Identifiable<K>, K> CompletableFuture<Map<K, T>> getAllByKeys(Class<T> clazz, Collection<K> keys)
+	{
+		List<K> distinctKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+		int parts = Math.min(distinctKeys.size(), executor.getMaximumPoolSize());
+		if (parts == 0)
+			return CompletableFuture.completedFuture(new LinkedHashMap<>());
+
+		List<CompletableFuture<List<T>>> fetches = new ArrayList<>(parts);
+		for (int i = 0; i < parts; i++)
+		{
+			List<K> part = distinctKeys.subList(i * distinctKeys.size() / parts, (i + 1) * distinctKeys.size() / parts);
+			fetches.add(supply(dao ->
+			{
+				List<T> entities = new ArrayList<>(part.size());
+				for (K key : part)
+					entities.add(dao.getByKey(clazz, key));
+				return entities;
+			}));
+		}
+
+		CompletableFuture<Map<K, T>> merged = new CompletableFuture<>();
+		AtomicInteger pending = new AtomicInteger(parts);
+		for (CompletableFuture<List<T>> fetch : fetches)
+			fetch.whenComplete((entities, e) ->
+			{
+				if (e != null)
+					merged.completeExceptionally(e);
+				else if (pending.decrementAndGet() == 0)
+					merged.complete(merge(distinctKeys, fetches));
+			});
+		merged.whenComplete((entities, e) ->
+		{
+			if (e != null)
+				fetches.forEach(fetch -> fetch.cancel(false));
+		});
+		return merged;
+	}
+
+	private static <T, K> Map<K, T> merge(List<K> keys, List<CompletableFuture<List<T>>> fetches)
+	{
+		Map<K, T> entities = new LinkedHashMap<>(keys.size() * 4 / 3 + 1);
+		int index = 0;
+		for (CompletableFuture<List<T>> fetch : fetches)
+			for (T entity : fetch.join())
+			{
+				K key = keys.get(index++);
+				if (entity != null)
+					entities.put(key, entity);
+			}
+		return entities;
+	}
+
+	@Override
+	public <T extends Identifiable<K>, K> CompletableFuture<List<T>> findAll(Class<T> clazz)
+	{
+		return supply(dao -> dao.findAll(clazz));
+	}
+
+	public <T extends Identifiable<K>, K> CompletableFuture<List<T>> find(CriteriaQuery<T> query)
+	{
+		return supply(dao -> dao.find(query));
+	}
+
+	@Override
+	public <T extends Identifiable<K>, K> CompletableFuture<Long> count(Class<T> clazz)
+	{
+		return supply(dao -> dao.count(clazz));
+	}
+
+	public CompletableFuture<Long> count(CriteriaQuery<Long> query)
+	{
+		return supply(dao -> dao.count(query));
+	}
+
+	/**
+	 * How many operations are waiting for a thread
+	 */
+	public int getQueueSize()
+	{
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Stops accepting operations. The ones already accepted are run, and the EntityManagers of the
+	 * pool are closed once they finish. The DAO itself is not closed.
+	 */
+	@Override
+	public void close()
+	{
+		executor.shutdown();
+	}
+
+	/**
+	 * Waits for the operations accepted before {@link #close()} to finish
+	 *
+	 * @return whether they finished before the timeout
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		return executor.awaitTermination(timeout, unit);
+	}
+}
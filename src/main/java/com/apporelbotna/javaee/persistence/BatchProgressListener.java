@@ -0,0 +1,29 @@
+package com.apporelbotna.javaee.persistence;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets notified every time a batch operation of a {@link JhenDAO} (i.e
+ * {@link JhenDAO#storeAll(java.util.Collection)}) finishes one of its chunks, so the throughput
+ * of bulk imports can be logged or monitored.
+ * 
+ * @author Jendoliver
+ */
+@FunctionalInterface
+public interface BatchProgressListener
+{
+	/**
+	 * @param chunk The number of the chunk, starting at 1
+	 * @param entities How many entities the chunk had
+	 * @param elapsedNanos How long it took to process and flush the chunk
+	 */
+	void chunkCompleted(int chunk, int entities, long elapsedNanos);
+
+	/**
+	 * Entities per second of a chunk, as reported to {@link #chunkCompleted(int, int, long)}
+	 */
+	static double throughput(int entities, long elapsedNanos)
+	{
+		return elapsedNanos <= 0 ? entities : entities * (double)TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+}
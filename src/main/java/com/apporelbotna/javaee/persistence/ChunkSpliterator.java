@@ -0,0 +1,82 @@
+package com.apporelbotna.javaee.persistence;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} which walks the results of a query one chunk at a time, so only
+ * one chunk of entities is held in memory at once. Every chunk is handed to the release action
+ * once it has been fully consumed, which is where the DAO gets rid of the entities it manages.
+ * 
+ * @author Jendoliver
+ */
+class ChunkSpliterator<T> extends Spliterators.AbstractSpliterator<T>
+{
+	@FunctionalInterface
+	interface ChunkLoader<T>
+	{
+		/**
+		 * Loads the chunk following <code>previousChunk</code> (null for the first one),
+		 * whose first element is the result number <code>offset</code>
+		 */
+		List<T> load(List<T> previousChunk, int offset);
+	}
+
+	private final ChunkLoader<T> loader;
+	private final Consumer<List<T>> release;
+	private final int chunkSize;
+
+	private List<T> chunk;
+	private int position;
+	private int offset;
+	private boolean exhausted;
+
+	ChunkSpliterator(int chunkSize, ChunkLoader<T> loader, Consumer<List<T>> release)
+	{
+		super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("The chunk size must be positive");
+		
+		this.chunkSize = chunkSize;
+		this.loader = loader;
+		this.release = release;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action)
+	{
+		if (chunk == null || position == chunk.size())
+		{
+			if (exhausted)
+				return false;
+			
+			List<T> previousChunk = chunk;
+			chunk = loader.load(previousChunk, offset);
+			if (previousChunk != null)
+				release.accept(previousChunk);
+			
+			position = 0;
+			offset += chunk.size();
+			exhausted = chunk.size() < chunkSize;
+			if (chunk.isEmpty())
+				return false;
+		}
+		
+		action.accept(chunk.get(position++));
+		return true;
+	}
+
+	/**
+	 * Releases the chunk being walked, if any. Bound to {@link java.util.stream.Stream#close()}
+	 */
+	void close()
+	{
+		if (chunk != null)
+			release.accept(chunk);
+		
+		chunk = null;
+		exhausted = true;
+	}
+}
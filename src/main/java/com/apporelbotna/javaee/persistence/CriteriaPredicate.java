@@ -0,0 +1,24 @@
+package com.apporelbotna.javaee.persistence;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+/**
+ * Builds the restriction of a criteria operation (a query, a count, a bulk delete...) over the
+ * entities of type <code>T</code>, so the DAO can create the query itself and the caller only
+ * has to write the <i>where</i> clause:<br>
+ * <br>
+ * <code>
+ * long admins = dao.count(User.class, (cb, user) -&gt; cb.isTrue(user.get("admin")));
+ * </code>
+ *
+ * @param <T> The type of the entities to restrict
+ * 
+ * @author Jendoliver
+ */
+@FunctionalInterface
+public interface CriteriaPredicate<T>
+{
+	Predicate toPredicate(CriteriaBuilder cb, Root<T> root);
+}
@@ -0,0 +1,198 @@
+package com.apporelbotna.javaee.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded, in-memory read-through cache of the entities of one class, indexed by their
+ * {@link Identifiable#getId()}. It sits in front of {@link JhenDAO#getByKey(Class, Object)} and
+ * {@link JhenDAO#findAll(Class)} when enabled with
+ * {@link JhenJpaDAO#enableCache(Class, int, long, TimeUnit)}, and does not depend on the
+ * second-level cache configuration of the JPA provider at all.<br>
+ * <br>
+ * Entries are evicted in LRU order once the cache holds <code>maximumSize</code> of them, and
+ * expire <code>timeToLive</code> after being loaded. Since the cached instances are shared by
+ * every DAO and thread of the application, they must be treated as read-only: this cache is meant
+ * for reference data, not for entities which are modified as part of the application flow. The
+ * ones to be modified are to be loaded inside a transaction, which bypasses the cache.<br>
+ * <br>
+ * This class is thread-safe.
+ *
+ * @param <T> The type of the cached entities
+ * @param <K> The type of their primary key
+ * 
+ * @author Jendoliver
+ */
+public class EntityCache<T extends Identifiable<K>, K>
+{
+	private static class Entry<V>
+	{
+		private final V value;
+		private final long expiresAt;
+
+		private Entry(V value, long expiresAt)
+		{
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final int maximumSize;
+	private final long timeToLiveNanos;
+	private final Map<K, Entry<T>> entries;
+	private Entry<List<T>> all;
+	private long generation;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public EntityCache(int maximumSize, long timeToLive, TimeUnit unit)
+	{
+		if (maximumSize <= 0)
+			throw new IllegalArgumentException("The maximum size of the cache must be positive");
+		
+		this.maximumSize = maximumSize;
+		this.timeToLiveNanos = unit.toNanos(timeToLive);
+		this.entries = new LinkedHashMap<K, Entry<T>>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<T>> eldest)
+			{
+				if (size() <= EntityCache.this.maximumSize)
+					return false;
+				
+				evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached entity with the given id, or null if it is not cached or has expired
+	 */
+	public synchronized T get(K key)
+	{
+		Entry<T> entry = entries.get(key);
+		if (entry != null && isExpired(entry))
+		{
+			entries.remove(key);
+			evictions++;
+			entry = null;
+		}
+		
+		if (entry == null)
+		{
+			misses++;
+			return null;
+		}
+		
+		hits++;
+		return entry.value;
+	}
+
+	/**
+	 * Returns a copy of the cached result of {@link JhenDAO#findAll(Class)}, or null if it is
+	 * not cached or has expired
+	 */
+	public synchronized List<T> getAll()
+	{
+		if (all != null && isExpired(all))
+		{
+			all = null;
+			evictions++;
+		}
+		
+		if (all == null)
+		{
+			misses++;
+			return null;
+		}
+		
+		hits++;
+		return new ArrayList<>(all.value);
+	}
+
+	/**
+	 * Returns the current generation of the cache, which changes every time the cache is
+	 * invalidated. Read it before loading the entities which will be {@link #put(Identifiable, long)
+	 * put} in the cache, so entities loaded before a concurrent modification can't get cached
+	 * after its invalidation.
+	 */
+	public synchronized long generation()
+	{
+		return generation;
+	}
+
+	/**
+	 * Caches the given entity, unless the cache has been invalidated since <code>generation</code>
+	 */
+	public synchronized void put(T entity, long generation)
+	{
+		if (entity != null && entity.getId() != null && generation == this.generation)
+			entries.put(entity.getId(), new Entry<>(entity, expiration()));
+	}
+
+	/**
+	 * Caches the result of {@link JhenDAO#findAll(Class)}, unless the cache has been invalidated
+	 * since <code>generation</code>
+	 */
+	public synchronized void putAll(List<T> entities, long generation)
+	{
+		if (generation == this.generation)
+			all = new Entry<>(Collections.unmodifiableList(new ArrayList<>(entities)), expiration());
+	}
+
+	/**
+	 * Forgets the entity with the given id, as well as the cached {@link JhenDAO#findAll(Class)}
+	 */
+	public synchronized void invalidate(K key)
+	{
+		generation++;
+		all = null;
+		if (key != null)
+			entries.remove(key);
+	}
+
+	public synchronized void invalidateAll()
+	{
+		generation++;
+		all = null;
+		entries.clear();
+	}
+
+	/**
+	 * Drops the expired entries right away, instead of waiting for them to be requested
+	 */
+	public synchronized void evictExpired()
+	{
+		for (Iterator<Entry<T>> it = entries.values().iterator(); it.hasNext();)
+			if (isExpired(it.next()))
+			{
+				it.remove();
+				evictions++;
+			}
+	}
+
+	public synchronized EntityCacheStatistics getStatistics()
+	{
+		return new EntityCacheStatistics(hits, misses, evictions, entries.size());
+	}
+
+	private long expiration()
+	{
+		return System.nanoTime() + timeToLiveNanos;
+	}
+
+	private boolean isExpired(Entry<?> entry)
+	{
+		return System.nanoTime() - entry.expiresAt >= 0;
+	}
+}
@@ -0,0 +1,58 @@
+package com.apporelbotna.javaee.persistence;
+
+/**
+ * Point-in-time statistics of an {@link EntityCache}
+ * 
+ * @author Jendoliver
+ */
+public final class EntityCacheStatistics
+{
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final int size;
+
+	public EntityCacheStatistics(long hits, long misses, long evictions, int size)
+	{
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.size = size;
+	}
+
+	public long getHits()
+	{
+		return hits;
+	}
+
+	public long getMisses()
+	{
+		return misses;
+	}
+
+	public long getEvictions()
+	{
+		return evictions;
+	}
+
+	public int getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * Ratio of requests served by the cache, between 0 and 1
+	 */
+	public double getHitRate()
+	{
+		long requests = hits + misses;
+		return requests == 0 ? 0 : (double)hits / requests;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "EntityCacheStatistics [hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+				+ ", size=" + size + "]";
+	}
+}
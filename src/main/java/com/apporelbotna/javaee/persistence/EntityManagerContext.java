@@ -0,0 +1,155 @@
+package com.apporelbotna.javaee.persistence;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Keeps the {@link EntityManager} of every persistence unit bound to the current thread, as used by
+ * the DAOs with {@link EntityManagerScope#THREAD} scope. All the DAOs of the same persistence unit
+ * used by a thread share its EntityManager, so a transaction begun by one of them also spans the
+ * operations of the others.<br>
+ * <br>
+ * The thread-bound map is removed as soon as its last EntityManager is released, so nothing stays
+ * attached to pooled threads nor to the (many, short-lived) virtual threads of a request.<br>
+ * <br>
+ * An EntityManager can also be lent to the current thread with {@link #bind(String, EntityManager)},
+ * i.e by a pool of them. Releasing a lent EntityManager only clears it, so it can go on being used
+ * by the thread, and it is never closed here: it stays bound until its lender calls
+ * {@link #unbind(String)}.
+ * 
+ * @see JhenJpaDAO
+ * @author Jendoliver
+ */
+public final class EntityManagerContext
+{
+	private static final ThreadLocal<Map<String, Binding>> ENTITY_MANAGERS = new ThreadLocal<>();
+
+	private static final class Binding
+	{
+		private final EntityManager entityManager;
+		private final boolean lent;
+
+		private Binding(EntityManager entityManager, boolean lent)
+		{
+			this.entityManager = entityManager;
+			this.lent = lent;
+		}
+	}
+
+	/**
+	 * Returns the EntityManager of the given persistence unit bound to the current thread,
+	 * opening and binding a new one if there isn't any.
+	 */
+	public static EntityManager current(String persistenceUnitName)
+	{
+		Map<String, Binding> entityManagers = bindings();
+		Binding binding = entityManagers.get(persistenceUnitName);
+		if(binding == null || !binding.entityManager.isOpen())
+		{
+			binding = new Binding(EntityManagerFactoryRegistry
+					.getEntityManagerFactory(persistenceUnitName)
+					.createEntityManager(), false);
+			entityManagers.put(persistenceUnitName, binding);
+		}
+		return binding.entityManager;
+	}
+
+	private static Map<String, Binding> bindings()
+	{
+		Map<String, Binding> entityManagers = ENTITY_MANAGERS.get();
+		if(entityManagers == null)
+		{
+			entityManagers = new HashMap<>(4);
+			ENTITY_MANAGERS.set(entityManagers);
+		}
+		return entityManagers;
+	}
+
+	/**
+	 * Lends the given EntityManager to the current thread as the one of the given persistence
+	 * unit, until {@link #unbind(String)} is called
+	 *
+	 * @throws IllegalStateException if the thread already has one bound for the persistence unit
+	 */
+	public static void bind(String persistenceUnitName, EntityManager entityManager)
+	{
+		Map<String, Binding> entityManagers = bindings();
+		if(entityManagers.containsKey(persistenceUnitName))
+			throw new IllegalStateException("The current thread already has an EntityManager of " + persistenceUnitName);
+		entityManagers.put(persistenceUnitName, new Binding(entityManager, true));
+	}
+
+	/**
+	 * Unbinds the EntityManager of the given persistence unit from the current thread without
+	 * closing it, and returns it, or null if there is none
+	 */
+	public static EntityManager unbind(String persistenceUnitName)
+	{
+		Map<String, Binding> entityManagers = ENTITY_MANAGERS.get();
+		if(entityManagers == null)
+			return null;
+
+		Binding binding = entityManagers.remove(persistenceUnitName);
+		if(entityManagers.isEmpty())
+			ENTITY_MANAGERS.remove();
+		return binding == null ? null : binding.entityManager;
+	}
+
+	/**
+	 * Returns true if the current thread has an EntityManager bound for the given persistence unit
+	 */
+	public static boolean isBound(String persistenceUnitName)
+	{
+		Map<String, Binding> entityManagers = ENTITY_MANAGERS.get();
+		return entityManagers != null && entityManagers.containsKey(persistenceUnitName);
+	}
+
+	/**
+	 * Unbinds the EntityManager of the given persistence unit from the current thread and
+	 * closes it, or just clears it if it has been lent. Does nothing if there is none.
+	 */
+	public static void release(String persistenceUnitName)
+	{
+		Map<String, Binding> entityManagers = ENTITY_MANAGERS.get();
+		if(entityManagers == null)
+			return;
+
+		Binding binding = entityManagers.get(persistenceUnitName);
+		if(binding != null && binding.lent)
+		{
+			if(binding.entityManager.isOpen())
+				binding.entityManager.clear();
+			return;
+		}
+
+		entityManagers.remove(persistenceUnitName);
+		if(entityManagers.isEmpty())
+			ENTITY_MANAGERS.remove();
+
+		if(binding != null && binding.entityManager.isOpen())
+			binding.entityManager.close();
+	}
+
+	/**
+	 * Unbinds every EntityManager bound to the current thread, closing the ones which haven't
+	 * been lent
+	 */
+	public static void releaseAll()
+	{
+		Map<String, Binding> entityManagers = ENTITY_MANAGERS.get();
+		if(entityManagers == null)
+			return;
+
+		ENTITY_MANAGERS.remove();
+		for(Binding binding : entityManagers.values())
+			if(!binding.lent && binding.entityManager.isOpen())
+				binding.entityManager.close();
+	}
+
+	private EntityManagerContext()
+	{
+		throw new IllegalAccessError();
+	}
+}
@@ -0,0 +1,150 @@
+package com.apporelbotna.javaee.persistence;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+/**
+ * Process-wide holder of the {@link EntityManagerFactory} of every persistence unit used by the
+ * application. Building an EntityManagerFactory means parsing the persistence.xml, booting the
+ * provider's metamodel and opening a connection pool, so it must happen once per persistence unit
+ * and not once per DAO.<br>
+ * <br>
+ * Factories are created lazily the first time their persistence unit is requested, but they can
+ * also be created eagerly at deploy time with {@link #warmUp(String...)}. Remember to call
+ * {@link #closeAll()} when the application is undeployed, i.e from a
+ * <code>ServletContextListener</code> or a <code>@PreDestroy</code> method of a startup bean.<br>
+ * <br>
+ * This class is thread-safe.
+ *
+ * @see JhenJpaDAO
+ * @author Jendoliver
+ */
+public final class EntityManagerFactoryRegistry
+{
+	private static final ConcurrentMap<String, EntityManagerFactory> FACTORIES = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the factory of the given persistence unit, creating it if this is the first time
+	 * it is requested.
+	 */
+	public static EntityManagerFactory getEntityManagerFactory(String persistenceUnitName)
+	{
+		return getEntityManagerFactory(persistenceUnitName, Collections.emptyMap());
+	}
+
+	/**
+	 * Same as {@link #getEntityManagerFactory(String)}, but the given properties override the ones
+	 * declared on the persistence.xml if the factory has to be created. They are ignored if the
+	 * factory already exists.
+	 */
+	public static EntityManagerFactory getEntityManagerFactory(String persistenceUnitName, Map<String, ?> properties)
+	{
+		EntityManagerFactory factory = FACTORIES.get(persistenceUnitName);
+		if(factory != null)
+			return factory;
+
+		return FACTORIES.computeIfAbsent(persistenceUnitName,
+				name -> Persistence.createEntityManagerFactory(name, properties));
+	}
+
+	/**
+	 * Creates the factories of the given persistence units right away, so the first request
+	 * served by the application doesn't have to pay for their creation.
+	 */
+	public static void warmUp(String... persistenceUnitNames)
+	{
+		for(String persistenceUnitName : persistenceUnitNames)
+			getEntityManagerFactory(persistenceUnitName);
+	}
+
+	/**
+	 * Same as {@link #warmUp(String...)} for a single persistence unit, overriding the properties
+	 * of its persistence.xml with the given ones.
+	 */
+	public static void warmUp(String persistenceUnitName, Map<String, ?> properties)
+	{
+		getEntityManagerFactory(persistenceUnitName, properties);
+	}
+
+	/**
+	 * Registers a factory which has been created elsewhere, i.e injected by the container with
+	 * <code>@PersistenceUnit</code>. Returns false if the persistence unit already had one.
+	 */
+	public static boolean register(String persistenceUnitName, EntityManagerFactory factory)
+	{
+		return FACTORIES.putIfAbsent(persistenceUnitName, factory) == null;
+	}
+
+	public static boolean isRegistered(String persistenceUnitName)
+	{
+		return FACTORIES.containsKey(persistenceUnitName);
+	}
+
+	/**
+	 * Closes and forgets the factory of the given persistence unit. A later request for it
+	 * will create a brand new one.
+	 */
+	public static void close(String persistenceUnitName)
+	{
+		EntityManagerFactory factory = FACTORIES.remove(persistenceUnitName);
+		if(factory != null)
+			closeQuietly(persistenceUnitName, factory);
+	}
+
+	/**
+	 * Closes every factory of the registry. Call it when shutting down the application.
+	 */
+	public static void closeAll()
+	{
+		for(String persistenceUnitName : FACTORIES.keySet())
+			close(persistenceUnitName);
+	}
+
+	/**
+	 * Properties enabling JDBC statement batching on the most common JPA providers, to be passed
+	 * to {@link #warmUp(String, Map)} when the application does bulk writes with the batch
+	 * operations of {@link JhenJpaDAO}. The batch size should match the DAO's
+	 * {@link JhenJpaDAO#setBatchSize(int)}.<br>
+	 * <br>
+	 * Note that Hibernate silently disables insert batching for entities whose id is generated
+	 * with <code>GenerationType.IDENTITY</code>.
+	 */
+	public static Map<String, Object> jdbcBatchingProperties(int batchSize)
+	{
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("hibernate.jdbc.batch_size", String.valueOf(batchSize));
+		properties.put("hibernate.order_inserts", "true");
+		properties.put("hibernate.order_updates", "true");
+		properties.put("hibernate.jdbc.batch_versioned_data", "true");
+		properties.put("eclipselink.jdbc.batch-writing", "JDBC");
+		properties.put("eclipselink.jdbc.batch-writing.size", String.valueOf(batchSize));
+		return properties;
+	}
+
+	private static void closeQuietly(String persistenceUnitName, EntityManagerFactory factory)
+	{
+		try
+		{
+			if(factory.isOpen())
+				factory.close();
+		}
+		catch (RuntimeException e)
+		{
+			Logger.getGlobal().log(Level.WARNING,
+					"Could not close the EntityManagerFactory of " + persistenceUnitName, e);
+		}
+	}
+
+	private EntityManagerFactoryRegistry()
+	{
+		throw new IllegalAccessError();
+	}
+}
@@ -0,0 +1,27 @@
+package com.apporelbotna.javaee.persistence;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Defines how long the {@link EntityManager} used by a {@link JhenJpaDAO} lives.
+ * 
+ * @author Jendoliver
+ */
+public enum EntityManagerScope
+{
+	/**
+	 * The DAO creates its own EntityManager when instantiated and keeps it until
+	 * {@link JhenJpaDAO#close()} is called. Such a DAO must not be shared between threads.
+	 */
+	DAO,
+
+	/**
+	 * The DAO holds no EntityManager at all: it uses the one bound to the current thread by
+	 * the {@link EntityManagerContext}, which is opened on {@link JhenJpaDAO#beginTransaction()}
+	 * and closed on {@link JhenJpaDAO#commit()}, {@link JhenJpaDAO#rollback()} or
+	 * {@link JhenJpaDAO#close()}. Reads done outside a transaction open one of their own which is
+	 * closed as soon as they finish, so the entities they return are detached.
+	 * Such a DAO is stateless and can be shared as a singleton by any number of threads.
+	 */
+	THREAD
+}
@@ -0,0 +1,147 @@
+package com.apporelbotna.javaee.persistence;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.SingularAttribute;
+
+/**
+ * What the DAOs need to know about the mapping of an entity class and can't get from the
+ * {@link Identifiable} interface itself, read once from the JPA {@link Metamodel} and cached.
+ *
+ * @author Jendoliver
+ */
+final class EntityMetadata
+{
+	/**
+	 * Whether an entity is already in the database, as far as it can be told without asking it
+	 */
+	enum State
+	{
+		NEW, EXISTING, UNKNOWN
+	}
+
+	private static final ConcurrentMap<Class<?>, EntityMetadata> CACHE = new ConcurrentHashMap<>();
+
+	private final Class<?> entityClass;
+	private final String idAttributeName;
+	private final boolean generatedId;
+	private final Member version;
+
+	private EntityMetadata(EntityType<?> entityType)
+	{
+		entityClass = entityType.getJavaType();
+
+		SingularAttribute<?, ?> id = entityType.getId(entityType.getIdType().getJavaType());
+		idAttributeName = id.getName();
+		generatedId = IdentifiableAuto.class.isAssignableFrom(entityClass)
+				|| isAnnotatedWith(id.getJavaMember(), GeneratedValue.class);
+
+		Member versionMember = null;
+		if (entityType.hasVersionAttribute())
+			for (SingularAttribute<?, ?> attribute : entityType.getSingularAttributes())
+				if (attribute.isVersion() && !attribute.getJavaType().isPrimitive()
+						&& (attribute.getJavaMember() instanceof Field || attribute.getJavaMember() instanceof Method))
+					versionMember = accessible(attribute.getJavaMember());
+		version = versionMember;
+	}
+
+	/**
+	 * Returns the metadata of the given class, or of its closest superclass known by the metamodel
+	 * if it is not an entity itself (i.e it is a proxy generated by the JPA provider)
+	 */
+	static EntityMetadata of(Class<?> clazz, Metamodel metamodel)
+	{
+		EntityMetadata metadata = CACHE.get(clazz);
+		if (metadata != null)
+			return metadata;
+
+		return CACHE.computeIfAbsent(clazz, c -> new EntityMetadata(entityType(c, metamodel)));
+	}
+
+	private static EntityType<?> entityType(Class<?> clazz, Metamodel metamodel)
+	{
+		try
+		{
+			return metamodel.entity(clazz);
+		}
+		catch (IllegalArgumentException e)
+		{
+			if (clazz.getSuperclass() == null || clazz.getSuperclass() == Object.class)
+				throw e;
+			return entityType(clazz.getSuperclass(), metamodel);
+		}
+	}
+
+	Class<?> getEntityClass()
+	{
+		return entityClass;
+	}
+
+	/**
+	 * Name of the attribute mapped as <code>@Id</code>, the one backing {@link Identifiable#getId()}
+	 */
+	String getIdAttributeName()
+	{
+		return idAttributeName;
+	}
+
+	/**
+	 * Tells whether the given entity is new or already persisted from its id and version only:
+	 * <ul>
+	 * <li>An entity without id is new</li>
+	 * <li>An entity whose id is generated on persist (an {@link IdentifiableAuto} or any other
+	 * <code>@GeneratedValue</code> id) and has one is persisted</li>
+	 * <li>An entity with a non-primitive <code>@Version</code> is new if and only if it has no
+	 * version yet</li>
+	 * </ul>
+	 * Otherwise, i.e for entities with application-assigned ids and no version, the database has
+	 * to be asked.
+	 */
+	State stateOf(Identifiable<?> entity)
+	{
+		if (entity.getId() == null)
+			return State.NEW;
+
+		if (generatedId)
+			return State.EXISTING;
+
+		if (version != null)
+			return read(version, entity) == null ? State.NEW : State.EXISTING;
+
+		return State.UNKNOWN;
+	}
+
+	private static boolean isAnnotatedWith(Member member, Class<GeneratedValue> annotation)
+	{
+		return member instanceof AccessibleObject && ((AccessibleObject)member).isAnnotationPresent(annotation);
+	}
+
+	private static Member accessible(Member member)
+	{
+		((AccessibleObject)member).setAccessible(true);
+		return member;
+	}
+
+	private static Object read(Member member, Object entity)
+	{
+		try
+		{
+			if (member instanceof Field)
+				return ((Field)member).get(entity);
+			return ((Method)member).invoke(entity);
+		}
+		catch (IllegalAccessException | InvocationTargetException e)
+		{
+			throw new IllegalStateException("Could not read " + member.getName() + " of " + entity, e);
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package com.apporelbotna.javaee.persistence;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
@@ -17,9 +19,25 @@ public interface IJhenJpaDAO extends JhenDAO
 	void beginTransaction();
 	void commit();
 	void setAutoCommit(boolean autoCommit);
+	void setBatchSize(int batchSize);
+	void setCommitInterval(int commitInterval);
+	void setBatchProgressListener(BatchProgressListener listener);
 	void rollback();
 	void close();
 	CriteriaBuilder getCriteriaBuilder();
+	<T extends Identifiable<K>, K> void enableCache(Class<T> clazz, int maximumSize, long timeToLive, TimeUnit unit);
+	<T extends Identifiable<K>, K> void disableCache(Class<T> clazz);
+	<T extends Identifiable<K>, K> EntityCacheStatistics getCacheStatistics(Class<T> clazz);
 	<T extends Identifiable<K>, K> List<T> find(CriteriaQuery<T> query);
 	<T extends Identifiable<K>, K> T get(CriteriaQuery<T> query);
+	<T extends Identifiable<K>, K> List<T> findPage(CriteriaQuery<T> query, int firstResult, int maxResults);
+	<T extends Identifiable<K>, K extends Comparable<? super K>> List<T> findPage(Class<T> clazz, K afterKey, int pageSize);
+	<T extends Identifiable<K>, K extends Comparable<? super K>> List<T> findPage(Class<T> clazz, CriteriaPredicate<T> where, K afterKey, int pageSize);
+	<T extends Identifiable<K>, K> Stream<T> stream(CriteriaQuery<T> query, int chunkSize);
+	<T extends Identifiable<K>, K extends Comparable<? super K>> Stream<T> stream(Class<T> clazz, int chunkSize);
+	<T extends Identifiable<K>, K extends Comparable<? super K>> Stream<T> stream(Class<T> clazz, CriteriaPredicate<T> where, int chunkSize);
+	<T extends Identifiable<K>, K> int delete(Class<T> clazz, CriteriaPredicate<T> where);
+	long count(CriteriaQuery<Long> query);
+	<T extends Identifiable<K>, K> long count(Class<T> clazz, CriteriaPredicate<T> where);
+	<T extends Identifiable<K>, K> long countApproximately(Class<T> clazz);
 }
@@ -10,7 +10,12 @@ import javax.persistence.MappedSuperclass;
  * A ready-to-extend implementation of {@link Identifiable}, using an auto-generated Integer
  * as identifier. If you want an Entity from your application to have an autoincrementable ID when
  * using one of the implementations of {@link JhenDAO#store(Identifiable)}, make it inherit this
- * class and it will be ready to go.
+ * class and it will be ready to go.<br>
+ * <br>
+ * Keep in mind that <code>IDENTITY</code> ids are assigned by the database when the row is
+ * inserted, which forces JPA providers to insert every entity as soon as it is persisted and
+ * therefore disables JDBC batching. Entities which are inserted in bulk should rather extend
+ * {@link IdentifiableSequence} or {@link IdentifiableTimeOrdered}.
  * 
  * @author Jendoliver
  */
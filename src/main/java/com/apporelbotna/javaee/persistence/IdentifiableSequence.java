@@ -0,0 +1,75 @@
+package com.apporelbotna.javaee.persistence;
+
+import javax.persistence.Column;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.MappedSuperclass;
+import javax.persistence.SequenceGenerator;
+
+/**
+ * A ready-to-extend implementation of {@link Identifiable}, using a Long generated from a database
+ * sequence as identifier. Unlike {@link IdentifiableAuto}, whose <code>IDENTITY</code> ids only
+ * exist once the row has been inserted, the JPA provider reserves blocks of
+ * {@value #ALLOCATION_SIZE} ids at once (Hibernate's pooled optimizer, EclipseLink's preallocation)
+ * and assigns them on persist without touching the database. Inserts can thus be sent in JDBC
+ * batches, see {@link EntityManagerFactoryRegistry#jdbcBatchingProperties(int)}.<br>
+ * <br>
+ * Every subclass draws its ids from the same <code>jhen_sequence</code> sequence, which must be
+ * created with an increment of {@value #ALLOCATION_SIZE} if the schema is not generated by the
+ * JPA provider. The database must support sequences.
+ * 
+ * @author Jendoliver
+ */
+@MappedSuperclass
+public class IdentifiableSequence implements Identifiable<Long>
+{
+	public static final int ALLOCATION_SIZE = 50;
+
+	private Long id;
+
+	@Id
+	@SequenceGenerator(name = "jhen_sequence", sequenceName = "jhen_sequence", allocationSize = ALLOCATION_SIZE)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "jhen_sequence")
+	@Column(name = "id", unique = true, nullable = false)
+	@Override
+	public Long getId()
+	{
+		return id;
+	}
+	
+	@Override
+	public void setId(Long id)
+	{
+		this.id = id;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((id == null) ? 0 : id.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		IdentifiableSequence other = (IdentifiableSequence)obj;
+		if (id == null)
+		{
+			if (other.id != null)
+				return false;
+		}
+		else if (!id.equals(other.id))
+			return false;
+		return true;
+	}
+}
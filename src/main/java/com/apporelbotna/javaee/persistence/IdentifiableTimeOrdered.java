@@ -0,0 +1,77 @@
+package com.apporelbotna.javaee.persistence;
+
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.MappedSuperclass;
+import javax.persistence.PrePersist;
+
+/**
+ * A ready-to-extend implementation of {@link Identifiable}, using a time-ordered Long generated by
+ * the {@link TimeOrderedIdGenerator} as identifier. Ids are generated in memory without any
+ * database round-trip, so inserts can be sent in JDBC batches, and they are roughly ordered by
+ * creation time, which keeps the primary key index as compact as an autoincrementable one.<br>
+ * <br>
+ * The id is assigned when the entity is persisted if it has none yet, but it can also be
+ * assigned beforehand with {@link #assignId()}, i.e to reference the entity from somewhere else
+ * before it is stored.
+ * 
+ * @author Jendoliver
+ */
+@MappedSuperclass
+public class IdentifiableTimeOrdered implements Identifiable<Long>
+{
+	private Long id;
+
+	@Id
+	@Column(name = "id", unique = true, nullable = false)
+	@Override
+	public Long getId()
+	{
+		return id;
+	}
+	
+	@Override
+	public void setId(Long id)
+	{
+		this.id = id;
+	}
+
+	/**
+	 * Assigns a new id to this entity unless it already has one
+	 */
+	@PrePersist
+	public void assignId()
+	{
+		if (id == null)
+			id = TimeOrderedIdGenerator.getDefault().nextId();
+	}
+
+	@Override
+	public int hashCode()
+	{
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((id == null) ? 0 : id.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		IdentifiableTimeOrdered other = (IdentifiableTimeOrdered)obj;
+		if (id == null)
+		{
+			if (other.id != null)
+				return false;
+		}
+		else if (!id.equals(other.id))
+			return false;
+		return true;
+	}
+}
@@ -1,5 +1,6 @@
 package com.apporelbotna.javaee.persistence;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -13,8 +14,11 @@ public interface JhenDAO
 	<T extends Identifiable<K>, K> void store(T entity) throws JhenPersistenceException;
 	<T extends Identifiable<K>, K> void update(T entity) throws JhenPersistenceException;
 	<T extends Identifiable<K>, K> void delete(T entity) throws JhenPersistenceException;
+	<T extends Identifiable<K>, K> void storeAll(Collection<T> entities) throws JhenPersistenceException;
+	<T extends Identifiable<K>, K> void updateAll(Collection<T> entities) throws JhenPersistenceException;
+	<T extends Identifiable<K>, K> void deleteAll(Collection<T> entities) throws JhenPersistenceException;
 	<T extends Identifiable<K>, K> boolean isPersisted(T entity);
 	<T extends Identifiable<K>, K> T getByKey(Class<T> clazz, K key);
 	<T extends Identifiable<K>, K> List<T> findAll(Class<T> clazz);
-	<T extends Identifiable<K>, K> Integer count(Class<T> clazz);
+	<T extends Identifiable<K>, K> long count(Class<T> clazz);
 }
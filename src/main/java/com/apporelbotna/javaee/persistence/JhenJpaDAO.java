@@ -1,12 +1,30 @@
 package com.apporelbotna.javaee.persistence;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
-import javax.persistence.Persistence;
+import javax.persistence.Table;
 import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 
 import com.apporelbotna.javaee.persistence.JhenPersistenceException.Reason;
@@ -18,22 +36,76 @@ import com.apporelbotna.javaee.persistence.JhenPersistenceException.Reason;
  * <br><br>
  * An application desiring to implement persistence with JPA should extend this class to provide
  * application-specific methods, i.e operations for treating with entities of the application domain.
+ * <br><br>
+ * The {@link EntityManagerFactory} of the persistence unit is shared by every DAO through the
+ * {@link EntityManagerFactoryRegistry}, so creating a DAO only costs the creation of its
+ * {@link EntityManager}.
+ * <br><br>
+ * By default every DAO owns its EntityManager (see {@link EntityManagerScope#DAO}). DAOs which
+ * are to be shared by many threads should instead pass {@link EntityManagerScope#THREAD} to
+ * {@link #JhenJpaDAO(EntityManagerScope)}, so that each thread works with its own EntityManager
+ * for the duration of its transaction. Subclasses should always reach the EntityManager through
+ * {@link #getEntityManager()}, since the protected fields are only set on the DAO scope, and run
+ * their queries through {@link #read(Function)} so that, on the THREAD scope, the ones done outside
+ * a transaction don't leave an EntityManager bound to the thread.
  * 
  * @author Jendoliver
  */
 public abstract class JhenJpaDAO implements IJhenJpaDAO
 {
+	/**
+	 * Native query returning the row count estimated by the PostgreSQL statistics for the table
+	 * given as first parameter. See {@link #getApproximateCountQuery()}.
+	 */
+	public static final String POSTGRESQL_APPROXIMATE_COUNT =
+			"SELECT CAST(reltuples AS BIGINT) FROM pg_class WHERE lower(relname) = lower(?1)";
+
+	/**
+	 * Native query returning the row count estimated by the MySQL/MariaDB statistics for the
+	 * table given as first parameter. See {@link #getApproximateCountQuery()}.
+	 */
+	public static final String MYSQL_APPROXIMATE_COUNT = "SELECT TABLE_ROWS FROM information_schema.TABLES "
+			+ "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?1";
+
+	/**
+	 * Entity caches of every persistence unit, shared by all the DAOs of the application
+	 */
+	private static final ConcurrentMap<String, ConcurrentMap<Class<?>, EntityCache<?, ?>>> CACHES =
+			new ConcurrentHashMap<>();
+
+	/**
+	 * Cache invalidations to be repeated once the transaction they were made in commits, since
+	 * until then other threads may cache the rows being changed again
+	 */
+	private static final Map<EntityTransaction, List<Runnable>> PENDING_EVICTIONS =
+			Collections.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * Maximum number of ids sent in the <code>IN</code> clause of an existence check
+	 */
+	private static final int EXISTENCE_CHECK_CHUNK = 500;
+
 	protected EntityManager entityManager;
 	protected EntityTransaction transaction;
 	protected boolean autoCommit = true;
+	protected int batchSize = 50;
+	protected int commitInterval = 0;
+	private BatchProgressListener batchProgressListener;
+	private final EntityManagerScope scope;
 
 	public JhenJpaDAO()
 	{
-		entityManager = Persistence
-				.createEntityManagerFactory(getPersistenceUnitName())
-				.createEntityManager();
-		
-		transaction = entityManager.getTransaction();
+		this(EntityManagerScope.DAO);
+	}
+
+	protected JhenJpaDAO(EntityManagerScope scope)
+	{
+		this.scope = scope;
+		if (scope == EntityManagerScope.DAO)
+		{
+			entityManager = getEntityManagerFactory().createEntityManager();
+			transaction = entityManager.getTransaction();
+		}
 	}
 
 	/**
@@ -51,22 +123,202 @@ public abstract class JhenJpaDAO implements IJhenJpaDAO
 	 */
 	protected abstract String getPersistenceUnitName();
 
+	/**
+	 * Returns the shared factory of this DAO's persistence unit
+	 */
+	protected EntityManagerFactory getEntityManagerFactory()
+	{
+		return EntityManagerFactoryRegistry.getEntityManagerFactory(getPersistenceUnitName());
+	}
+
+	/**
+	 * Returns the EntityManager this DAO must work with: its own one on the
+	 * {@link EntityManagerScope#DAO} scope, or the one bound to the current thread on the
+	 * {@link EntityManagerScope#THREAD} scope.
+	 */
+	protected EntityManager getEntityManager()
+	{
+		if (scope == EntityManagerScope.THREAD)
+			return EntityManagerContext.current(getPersistenceUnitName());
+		
+		return entityManager;
+	}
+
+	protected EntityTransaction getTransaction()
+	{
+		if (scope == EntityManagerScope.THREAD)
+			return getEntityManager().getTransaction();
+		
+		return transaction;
+	}
+
+	/**
+	 * Runs a read with the current EntityManager. On the {@link EntityManagerScope#THREAD} scope, a
+	 * read done outside a transaction gets a short-lived EntityManager which is released as soon as
+	 * it finishes, so pooled threads don't keep one forever, serving stale entities from its
+	 * persistence context. The entities it returns are therefore detached. Reads nested in another
+	 * one, or done in a transaction or with a lent EntityManager, just use the bound one.
+	 */
+	protected <R> R read(Function<EntityManager, R> operation)
+	{
+		if (scope != EntityManagerScope.THREAD || EntityManagerContext.isBound(getPersistenceUnitName()))
+			return operation.apply(getEntityManager());
+		
+		try
+		{
+			return operation.apply(getEntityManager());
+		}
+		finally
+		{
+			if (!isTransactionActive())
+				releaseThreadBoundEntityManager();
+		}
+	}
+
+	public EntityManagerScope getScope()
+	{
+		return scope;
+	}
+
 	@Override
 	public CriteriaBuilder getCriteriaBuilder()
 	{
-		return entityManager.getCriteriaBuilder();
+		return getEntityManagerFactory().getCriteriaBuilder();
+	}
+
+	/**
+	 * Puts an {@link EntityCache} in front of {@link #getByKey(Class, Object)} and
+	 * {@link #findAll(Class)} for the given entity class, replacing the previous one if any. The
+	 * cache is shared by every DAO of this DAO's persistence unit and invalidated by their
+	 * write operations, but not by changes made to the database by anything else: choose the
+	 * time to live accordingly.<br>
+	 * <br>
+	 * The entities are detached from the EntityManager before being cached, and every hit returns
+	 * the same instance to every caller and thread, so they are strictly read-only: a change made
+	 * to one of them would be seen by everybody else before being written, if ever. To change an
+	 * entity, load it inside a transaction, where the cache is bypassed altogether and a managed
+	 * instance of its own is returned. This way transactions also see their own changes, and only
+	 * committed rows are ever cached.
+	 */
+	@Override
+	public <T extends Identifiable<K>, K> void enableCache(Class<T> clazz, int maximumSize, long timeToLive, TimeUnit unit)
+	{
+		CACHES.computeIfAbsent(getPersistenceUnitName(), name -> new ConcurrentHashMap<>())
+				.put(clazz, new EntityCache<T, K>(maximumSize, timeToLive, unit));
+	}
+
+	@Override
+	public <T extends Identifiable<K>, K> void disableCache(Class<T> clazz)
+	{
+		ConcurrentMap<Class<?>, EntityCache<?, ?>> caches = CACHES.get(getPersistenceUnitName());
+		if (caches != null)
+			caches.remove(clazz);
+	}
+
+	/**
+	 * Returns the statistics of the cache of the given entity class, or null if it has none
+	 */
+	@Override
+	public <T extends Identifiable<K>, K> EntityCacheStatistics getCacheStatistics(Class<T> clazz)
+	{
+		EntityCache<T, K> cache = getCache(clazz);
+		return cache == null ? null : cache.getStatistics();
+	}
+
+	/**
+	 * Returns the cache of the given entity class (or of its closest cached superclass, so
+	 * provider-generated proxies are found as well), or null if it has none
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T extends Identifiable<K>, K> EntityCache<T, K> getCache(Class<?> clazz)
+	{
+		ConcurrentMap<Class<?>, EntityCache<?, ?>> caches = CACHES.get(getPersistenceUnitName());
+		if (caches == null || caches.isEmpty())
+			return null;
+		
+		for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass())
+		{
+			EntityCache<?, ?> cache = caches.get(current);
+			if (cache != null)
+				return (EntityCache<T, K>)cache;
+		}
+		return null;
+	}
+
+	private <T extends Identifiable<K>, K> void evict(T entity)
+	{
+		EntityCache<T, K> cache = getCache(entity.getClass());
+		if (cache != null)
+		{
+			K id = entity.getId();
+			invalidate(() -> cache.invalidate(id));
+		}
+	}
+
+	private void evictAll(Class<?> clazz)
+	{
+		EntityCache<?, ?> cache = getCache(clazz);
+		if (cache != null)
+			invalidate(cache::invalidateAll);
+	}
+
+	/**
+	 * Invalidates right away and, if there is a transaction in progress, once more after it
+	 * commits, which also changes the generation of the cache so the rows other threads loaded in
+	 * the meantime are not cached. Write operations must therefore evict before they commit.
+	 */
+	private void invalidate(Runnable invalidation)
+	{
+		invalidation.run();
+		if (isTransactionActive())
+			PENDING_EVICTIONS.computeIfAbsent(getTransaction(), key -> new ArrayList<>()).add(invalidation);
+	}
+
+	/**
+	 * Tells whether there is a transaction in progress without opening an EntityManager on the
+	 * THREAD scope when the thread has none, i.e because a commit has just released it
+	 */
+	private boolean isTransactionActive()
+	{
+		if (scope == EntityManagerScope.THREAD && !EntityManagerContext.isBound(getPersistenceUnitName()))
+			return false;
+		
+		return getTransaction().isActive();
+	}
+
+	private void commitTransaction()
+	{
+		EntityTransaction currentTransaction = getTransaction();
+		List<Runnable> evictions = PENDING_EVICTIONS.remove(currentTransaction);
+		currentTransaction.commit();
+		if (evictions != null)
+			evictions.forEach(Runnable::run);
+	}
+
+	private void rollbackTransaction()
+	{
+		EntityTransaction currentTransaction = getTransaction();
+		PENDING_EVICTIONS.remove(currentTransaction);
+		currentTransaction.rollback();
 	}
 
 	@Override
 	public void beginTransaction()
 	{
-		transaction.begin();
+		getTransaction().begin();
 	}
 
 	@Override
 	public void commit()
 	{
-		transaction.commit();
+		try
+		{
+			commitTransaction();
+		}
+		finally
+		{
+			releaseThreadBoundEntityManager();
+		}
 	}
 	
 	@Override
@@ -75,22 +327,75 @@ public abstract class JhenJpaDAO implements IJhenJpaDAO
 		this.autoCommit = autoCommit;
 	}
 	
+	/**
+	 * Sets every how many entities the batch operations (see {@link #storeAll(Collection)})
+	 * flush and clear the EntityManager, so the JPA provider can send them to the database in JDBC
+	 * batches and the persistence context doesn't grow with the size of the collection. 50 by
+	 * default.
+	 * 
+	 * @see EntityManagerFactoryRegistry#jdbcBatchingProperties(int)
+	 */
+	@Override
+	public void setBatchSize(int batchSize)
+	{
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("The batch size must be positive");
+		
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Sets every how many entities the batch operations commit their transaction when
+	 * {@link #setAutoCommit(boolean) autoCommit} is enabled, rounded up to a whole number of
+	 * batches. 0 (the default) means that every batch operation runs in one single transaction.
+	 */
+	@Override
+	public void setCommitInterval(int commitInterval)
+	{
+		if (commitInterval < 0)
+			throw new IllegalArgumentException("The commit interval can't be negative");
+		
+		this.commitInterval = commitInterval;
+	}
+
+	@Override
+	public void setBatchProgressListener(BatchProgressListener listener)
+	{
+		this.batchProgressListener = listener;
+	}
+
 	@Override
 	public void rollback()
 	{
-		transaction.rollback();
+		try
+		{
+			rollbackTransaction();
+		}
+		finally
+		{
+			releaseThreadBoundEntityManager();
+		}
 	}
 	
 	@Override
 	public void close()
 	{
-		entityManager.close();
+		if (scope == EntityManagerScope.THREAD)
+			releaseThreadBoundEntityManager();
+		else
+			entityManager.close();
+	}
+
+	private void releaseThreadBoundEntityManager()
+	{
+		if (scope == EntityManagerScope.THREAD)
+			EntityManagerContext.release(getPersistenceUnitName());
 	}
 
 	@Override
 	public <T extends Identifiable<K>, K> List<T> find(CriteriaQuery<T> query)
 	{
-		return entityManager.createQuery(query).getResultList();
+		return read(currentEntityManager -> currentEntityManager.createQuery(query).getResultList());
 	}
 
 	@Override
@@ -100,22 +405,152 @@ public abstract class JhenJpaDAO implements IJhenJpaDAO
 		return entities.isEmpty() ? null : entities.get(0);
 	}
 
+	/**
+	 * Offset-based page of the results of the given query. Prefer the keyset-based
+	 * {@link #findPage(Class, Comparable, int)} when walking big tables, since databases have to
+	 * read and discard all the skipped rows to answer this one.
+	 */
 	@Override
-	public <T extends Identifiable<K>, K> void store(T entity) throws JhenPersistenceException
+	public <T extends Identifiable<K>, K> List<T> findPage(CriteriaQuery<T> query, int firstResult, int maxResults)
 	{
-		if (isPersisted(entity))
-		{
-			update(entity);
-			return;
-		}
+		return read(currentEntityManager -> currentEntityManager
+				.createQuery(query)
+				.setFirstResult(firstResult)
+				.setMaxResults(maxResults)
+				.getResultList());
+	}
+
+	/**
+	 * Keyset-based (a.k.a seek) page of the entities of the given class: returns at most
+	 * <code>pageSize</code> entities whose id is greater than <code>afterKey</code>, ordered by id.
+	 * Pass null to get the first page and the id of the last entity of a page to get the next one.
+	 */
+	@Override
+	public <T extends Identifiable<K>, K extends Comparable<? super K>> List<T> findPage(Class<T> clazz, K afterKey, int pageSize)
+	{
+		return findPage(clazz, null, afterKey, pageSize);
+	}
+
+	/**
+	 * Same as {@link #findPage(Class, Comparable, int)}, only returning the entities matching the
+	 * given restriction
+	 */
+	@Override
+	public <T extends Identifiable<K>, K extends Comparable<? super K>> List<T> findPage(Class<T> clazz,
+			CriteriaPredicate<T> where, K afterKey, int pageSize)
+	{
+		CriteriaBuilder cb = getCriteriaBuilder();
+		CriteriaQuery<T> query = cb.createQuery(clazz);
+		Root<T> root = query.from(clazz);
+		Path<K> id = root.get(getIdAttributeName(clazz));
 		
-		if(autoCommit)
-			transaction.begin();
+		query.select(root);
+		if (where != null && afterKey != null)
+			query.where(where.toPredicate(cb, root), cb.greaterThan(id, afterKey));
+		else if (where != null)
+			query.where(where.toPredicate(cb, root));
+		else if (afterKey != null)
+			query.where(cb.greaterThan(id, afterKey));
+		query.orderBy(cb.asc(id));
 		
-		entityManager.persist(entity);
+		return read(currentEntityManager -> currentEntityManager.createQuery(query).setMaxResults(pageSize).getResultList());
+	}
+
+	/**
+	 * Lazily streams the results of the given query, fetching them in offset-based chunks of
+	 * <code>chunkSize</code> entities. See {@link #stream(Class, CriteriaPredicate, int)} for
+	 * how memory is kept flat.<br>
+	 * <br>
+	 * The query should have a deterministic order, otherwise the database is free to return
+	 * some rows twice and skip others between chunks.
+	 */
+	@Override
+	public <T extends Identifiable<K>, K> Stream<T> stream(CriteriaQuery<T> query, int chunkSize)
+	{
+		return stream(chunkSize, (previousChunk, offset) -> findPage(query, offset, chunkSize));
+	}
+
+	@Override
+	public <T extends Identifiable<K>, K extends Comparable<? super K>> Stream<T> stream(Class<T> clazz, int chunkSize)
+	{
+		return stream(clazz, null, chunkSize);
+	}
+
+	/**
+	 * Lazily streams the entities of the given class matching the given restriction (or all of
+	 * them if it is null) in id order, fetching them in keyset-based chunks of
+	 * <code>chunkSize</code> entities.<br>
+	 * <br>
+	 * Once a chunk has been consumed its entities are detached from the EntityManager (after
+	 * flushing their changes if there is a transaction in progress), so neither the stream nor
+	 * the persistence context hold more than one chunk at a time. Close the stream if it is not
+	 * consumed until its end, so the last chunk is also detached.
+	 */
+	@Override
+	public <T extends Identifiable<K>, K extends Comparable<? super K>> Stream<T> stream(Class<T> clazz,
+			CriteriaPredicate<T> where, int chunkSize)
+	{
+		return stream(chunkSize, (previousChunk, offset) ->
+		{
+			K afterKey = previousChunk == null ? null : previousChunk.get(previousChunk.size() - 1).getId();
+			return findPage(clazz, where, afterKey, chunkSize);
+		});
+	}
+
+	private <T> Stream<T> stream(int chunkSize, ChunkSpliterator.ChunkLoader<T> loader)
+	{
+		ChunkSpliterator<T> spliterator = new ChunkSpliterator<>(chunkSize, loader, this::detach);
+		return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+	}
+
+	private void detach(List<?> entities)
+	{
+		read(currentEntityManager ->
+		{
+			if (getTransaction().isActive())
+				currentEntityManager.flush();
+			
+			for (Object entity : entities)
+				currentEntityManager.detach(entity);
+			return null;
+		});
+	}
+
+	protected String getIdAttributeName(Class<?> clazz)
+	{
+		return getMetadata(clazz).getIdAttributeName();
+	}
+
+	/**
+	 * Inserts the entity if it is new or merges it otherwise, which is told apart without asking
+	 * the database whenever possible (see {@link #isPersisted(Identifiable)}). Detached entities
+	 * are therefore merged instead of inserted again.
+	 */
+	@Override
+	public <T extends Identifiable<K>, K> void store(T entity) throws JhenPersistenceException
+	{
+		boolean persisted = isPersisted(entity);
+		boolean managesTransaction = autoCommit && !getTransaction().isActive();
+		if (managesTransaction)
+			beginTransaction();
 		
-		if(autoCommit)
-			transaction.commit();
+		try
+		{
+			if (persisted)
+				getEntityManager().merge(entity);
+			else
+				getEntityManager().persist(entity);
+			
+			evict(entity);
+			if (managesTransaction)
+				commit();
+		}
+		catch (RuntimeException e)
+		{
+			if (managesTransaction && isTransactionActive())
+				rollback();
+			throw e;
+		}
 	}
 
 	@Override
@@ -124,7 +559,8 @@ public abstract class JhenJpaDAO implements IJhenJpaDAO
 		if (!isPersisted(entity))
 			throw new JhenPersistenceException(Reason.ENTITY_NOT_PERSISTED);
 		
-		entityManager.merge(entity);
+		getEntityManager().merge(entity);
+		evict(entity);
 	}
 
 	@Override
@@ -133,36 +569,400 @@ public abstract class JhenJpaDAO implements IJhenJpaDAO
 		if (!isPersisted(entity))
 			throw new JhenPersistenceException(Reason.ENTITY_NOT_PERSISTED);
 		
-		entityManager.remove(entity);
+		remove(entity);
+		evict(entity);
+	}
+
+	/**
+	 * Removes the entity even if it is detached, through a reference to its id, which usually
+	 * spares the JPA provider from loading it first
+	 */
+	private <T extends Identifiable<K>, K> void remove(T entity)
+	{
+		EntityManager currentEntityManager = getEntityManager();
+		currentEntityManager.remove(currentEntityManager.contains(entity) ? entity
+				: currentEntityManager.getReference(entity.getClass(), entity.getId()));
+	}
+
+	/**
+	 * Stores every entity of the collection like {@link #store(Identifiable)} does, asking the
+	 * database in one single query per entity class (and per {@value #EXISTENCE_CHECK_CHUNK} ids)
+	 * about the entities whose state can't be told from their id and version.
+	 */
+	@Override
+	public <T extends Identifiable<K>, K> void storeAll(Collection<T> entities) throws JhenPersistenceException
+	{
+		Set<T> persisted = findPersisted(entities);
+		runInBatches(entities, entity ->
+		{
+			if (persisted.contains(entity))
+				getEntityManager().merge(entity);
+			else
+				getEntityManager().persist(entity);
+			evict(entity);
+		});
+	}
+
+	/**
+	 * Merges every entity of the collection. Unlike {@link #update(Identifiable)}, they are not
+	 * checked to be persisted first.
+	 */
+	@Override
+	public <T extends Identifiable<K>, K> void updateAll(Collection<T> entities) throws JhenPersistenceException
+	{
+		runInBatches(entities, entity ->
+		{
+			getEntityManager().merge(entity);
+			evict(entity);
+		});
+	}
+
+	/**
+	 * Removes every entity of the collection. Unlike {@link #delete(Identifiable)}, they are not
+	 * checked to be persisted first.
+	 */
+	@Override
+	public <T extends Identifiable<K>, K> void deleteAll(Collection<T> entities) throws JhenPersistenceException
+	{
+		runInBatches(entities, entity ->
+		{
+			remove(entity);
+			evict(entity);
+		});
+	}
+
+	/**
+	 * Deletes every entity of the given class matching the given restriction (or all of them
+	 * if it is null) with one single <code>DELETE</code> statement, without loading them. Returns
+	 * how many were deleted.<br>
+	 * <br>
+	 * Like every JPA bulk operation, this bypasses the persistence context: entities already
+	 * loaded by this DAO won't know they have been deleted.
+	 */
+	@Override
+	public <T extends Identifiable<K>, K> int delete(Class<T> clazz, CriteriaPredicate<T> where)
+	{
+		CriteriaBuilder cb = getCriteriaBuilder();
+		CriteriaDelete<T> delete = cb.createCriteriaDelete(clazz);
+		Root<T> root = delete.from(clazz);
+		if (where != null)
+			delete.where(where.toPredicate(cb, root));
+		
+		boolean managesTransaction = autoCommit && !getTransaction().isActive();
+		if (managesTransaction)
+			beginTransaction();
+		
+		try
+		{
+			int deleted = getEntityManager().createQuery(delete).executeUpdate();
+			evictAll(clazz);
+			if (managesTransaction)
+				commit();
+			
+			return deleted;
+		}
+		catch (RuntimeException e)
+		{
+			if (managesTransaction && isTransactionActive())
+				rollback();
+			throw e;
+		}
+	}
+
+	/**
+	 * Applies the operation to every entity, flushing and clearing the EntityManager every
+	 * {@link #batchSize} entities. When autoCommit is enabled and there is no transaction in
+	 * progress, the whole collection is processed in one transaction, or in one every
+	 * {@link #commitInterval} entities.
+	 */
+	private <T> void runInBatches(Collection<T> entities, Consumer<T> operation) throws JhenPersistenceException
+	{
+		boolean managesTransaction = autoCommit && !getTransaction().isActive();
+		if (managesTransaction)
+			getTransaction().begin();
+		
+		try
+		{
+			int chunk = 0;
+			int inChunk = 0;
+			int sinceCommit = 0;
+			long chunkStart = System.nanoTime();
+			for (T entity : entities)
+			{
+				operation.accept(entity);
+				inChunk++;
+				sinceCommit++;
+				if (inChunk < batchSize)
+					continue;
+				
+				flushAndClear();
+				if (managesTransaction && commitInterval > 0 && sinceCommit >= commitInterval)
+				{
+					commitTransaction();
+					getTransaction().begin();
+					sinceCommit = 0;
+				}
+				reportChunk(++chunk, inChunk, chunkStart);
+				inChunk = 0;
+				chunkStart = System.nanoTime();
+			}
+			
+			if (managesTransaction)
+				commitTransaction();
+			else
+				flushAndClear();
+			
+			if (inChunk > 0)
+				reportChunk(++chunk, inChunk, chunkStart);
+		}
+		catch (RuntimeException e)
+		{
+			if (managesTransaction && getTransaction().isActive())
+				rollbackTransaction();
+			throw new JhenPersistenceException(Reason.BATCH_ERROR, e);
+		}
+		finally
+		{
+			if (managesTransaction)
+				releaseThreadBoundEntityManager();
+		}
+	}
+
+	private void flushAndClear()
+	{
+		// Outside a transaction there is nothing to flush, and clearing would discard the changes
+		if (!getTransaction().isActive())
+			return;
+		
+		EntityManager currentEntityManager = getEntityManager();
+		currentEntityManager.flush();
+		currentEntityManager.clear();
+	}
+
+	private void reportChunk(int chunk, int entities, long chunkStart)
+	{
+		if (batchProgressListener != null)
+			batchProgressListener.chunkCompleted(chunk, entities, System.nanoTime() - chunkStart);
 	}
 
+	/**
+	 * Tells whether the entity is already in the database. Entities managed by this DAO are, and
+	 * for the others the decision is made from their id, their generation strategy and their
+	 * <code>@Version</code> attribute if they have one: an entity without id is new, an
+	 * {@link IdentifiableAuto} (or any other entity with a generated id) with an id is persisted,
+	 * and so is a versioned entity with a version. Only the remaining ones, whose id is assigned by
+	 * the application and which aren't versioned, cost a query which doesn't load the entity.
+	 */
 	@Override
 	public <T extends Identifiable<K>, K> boolean isPersisted(T entity)
 	{
-		return entityManager.contains(entity);
+		return read(currentEntityManager ->
+		{
+			if (currentEntityManager.contains(entity))
+				return true;
+			
+			EntityMetadata metadata = getMetadata(entity.getClass());
+			switch (metadata.stateOf(entity))
+			{
+				case NEW:
+					return false;
+				case EXISTING:
+					return true;
+				default:
+					return !findExistingIds(metadata, Collections.singletonList(entity.getId())).isEmpty();
+			}
+		});
+	}
+
+	/**
+	 * Returns the entities of the collection which are already in the database, as told by
+	 * {@link #isPersisted(Identifiable)} but with one existence check for all those that need it
+	 */
+	private <T extends Identifiable<K>, K> Set<T> findPersisted(Collection<T> entities)
+	{
+		Set<T> persisted = Collections.newSetFromMap(new IdentityHashMap<>());
+		Map<EntityMetadata, Map<Object, List<T>>> unknown = new HashMap<>();
+		EntityManager currentEntityManager = getEntityManager();
+		for (T entity : entities)
+		{
+			if (currentEntityManager.contains(entity))
+			{
+				persisted.add(entity);
+				continue;
+			}
+			
+			EntityMetadata metadata = getMetadata(entity.getClass());
+			EntityMetadata.State state = metadata.stateOf(entity);
+			if (state == EntityMetadata.State.EXISTING)
+				persisted.add(entity);
+			else if (state == EntityMetadata.State.UNKNOWN)
+				unknown.computeIfAbsent(metadata, m -> new HashMap<>())
+						.computeIfAbsent(entity.getId(), id -> new ArrayList<>(1))
+						.add(entity);
+		}
+		
+		for (Map.Entry<EntityMetadata, Map<Object, List<T>>> byClass : unknown.entrySet())
+		{
+			Map<Object, List<T>> byId = byClass.getValue();
+			List<Object> ids = new ArrayList<>(byId.keySet());
+			for (int from = 0; from < ids.size(); from += EXISTENCE_CHECK_CHUNK)
+			{
+				List<Object> chunk = ids.subList(from, Math.min(from + EXISTENCE_CHECK_CHUNK, ids.size()));
+				for (Object existingId : findExistingIds(byClass.getKey(), chunk))
+					persisted.addAll(byId.get(existingId));
+			}
+		}
+		return persisted;
+	}
+
+	private List<?> findExistingIds(EntityMetadata metadata, Collection<?> ids)
+	{
+		CriteriaBuilder cb = getCriteriaBuilder();
+		CriteriaQuery<Object> query = cb.createQuery();
+		Root<?> root = query.from(metadata.getEntityClass());
+		Path<Object> id = root.get(metadata.getIdAttributeName());
+		query.select(id).where(id.in(ids));
+		
+		return getEntityManager().createQuery(query).getResultList();
+	}
+
+	private EntityMetadata getMetadata(Class<?> clazz)
+	{
+		return EntityMetadata.of(clazz, getEntityManagerFactory().getMetamodel());
 	}
 
 	@Override
 	public <T extends Identifiable<K>, K> T getByKey(Class<T> clazz, K key)
 	{
-		return entityManager.find(clazz, key);
+		return read(currentEntityManager ->
+		{
+			EntityCache<T, K> cache = getCache(clazz);
+			if (cache == null || getTransaction().isActive())
+				return currentEntityManager.find(clazz, key);
+			
+			T entity = cache.get(key);
+			if (entity != null)
+				return entity;
+			
+			long generation = cache.generation();
+			entity = currentEntityManager.find(clazz, key);
+			if (entity != null)
+			{
+				currentEntityManager.detach(entity);
+				cache.put(entity, generation);
+			}
+			return entity;
+		});
 	}
 
 	@Override
 	public <T extends Identifiable<K>, K> List<T> findAll(Class<T> clazz)
+	{
+		return read(currentEntityManager ->
+		{
+			EntityCache<T, K> cache = getTransaction().isActive() ? null : getCache(clazz);
+			List<T> entities = cache == null ? null : cache.getAll();
+			if (entities != null)
+				return entities;
+			
+			long generation = cache == null ? 0 : cache.generation();
+			CriteriaBuilder cb = getCriteriaBuilder();
+			CriteriaQuery<T> query = cb.createQuery(clazz);
+			Root<T> root = query.from(clazz);
+			query.select(root);
+			
+			entities = find(query);
+			if (cache != null)
+			{
+				detach(entities);
+				cache.putAll(entities, generation);
+			}
+			return entities;
+		});
+	}
+
+	/**
+	 * Override this method to enable {@link #countApproximately(Class)} by returning a native query
+	 * which reads the row count estimated by the database statistics of the table passed as its
+	 * first positional parameter, i.e {@link #POSTGRESQL_APPROXIMATE_COUNT} or
+	 * {@link #MYSQL_APPROXIMATE_COUNT}. Returns null by default, meaning that approximate counts
+	 * are not supported and exact ones are done instead.
+	 */
+	protected String getApproximateCountQuery()
+	{
+		return null;
+	}
+
+	@Override
+	public <T extends Identifiable<K>, K> long count(Class<T> clazz)
+	{
+		return count(clazz, null);
+	}
+
+	@Override
+	public long count(CriteriaQuery<Long> query)
+	{
+		Long count = read(currentEntityManager -> currentEntityManager.createQuery(query).getSingleResult());
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * Counts the entities of the given class matching the given restriction, or all of them
+	 * if it is null
+	 */
+	@Override
+	public <T extends Identifiable<K>, K> long count(Class<T> clazz, CriteriaPredicate<T> where)
 	{
 		CriteriaBuilder cb = getCriteriaBuilder();
-		CriteriaQuery<T> query = cb.createQuery(clazz);
+		CriteriaQuery<Long> query = cb.createQuery(Long.class);
 		Root<T> root = query.from(clazz);
-		query.select(root);
+		query.select(cb.count(root));
+		if (where != null)
+			query.where(where.toPredicate(cb, root));
 		
-		return find(query);
+		return count(query);
 	}
 
+	/**
+	 * Returns the number of rows of the given entity's table as estimated by the database
+	 * statistics, which is way cheaper than an exact count on really big tables but may be off
+	 * by a fair margin. Falls back to {@link #count(Class)} if the DAO provides no
+	 * {@link #getApproximateCountQuery()}, the table of the entity isn't named by a
+	 * <code>@Table</code> annotation or the database has no estimation for the table yet.
+	 */
 	@Override
-	public <T extends Identifiable<K>, K> Integer count(Class<T> clazz)
+	public <T extends Identifiable<K>, K> long countApproximately(Class<T> clazz)
 	{
-		List<T> entities = findAll(clazz);
-		return entities == null ? null : entities.size();
+		String approximateCountQuery = getApproximateCountQuery();
+		String tableName = getTableName(clazz);
+		if (approximateCountQuery == null || tableName == null)
+			return count(clazz);
+		
+		List<?> result = read(currentEntityManager -> currentEntityManager
+				.createNativeQuery(approximateCountQuery)
+				.setParameter(1, tableName)
+				.getResultList());
+		
+		Object estimation = result.isEmpty() ? null : result.get(0);
+		if (!(estimation instanceof Number) || ((Number)estimation).longValue() < 0)
+			return count(clazz);
+		
+		return ((Number)estimation).longValue();
+	}
+
+	/**
+	 * Returns the table name given by the <code>@Table</code> annotation of the entity or of its
+	 * closest annotated superclass, or null if there is none, since the name the JPA provider
+	 * derives from the entity name depends on its naming strategy
+	 */
+	private String getTableName(Class<?> clazz)
+	{
+		for (Class<?> current = clazz; current != null; current = current.getSuperclass())
+		{
+			Table table = current.getAnnotation(Table.class);
+			if (table != null && !table.name().isEmpty())
+				return table.name();
+		}
+		return null;
 	}
 }
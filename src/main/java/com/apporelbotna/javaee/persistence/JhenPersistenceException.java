@@ -13,7 +13,8 @@ public class JhenPersistenceException extends Exception
 	{
 		ENTITY_ALREADY_EXISTS("The entity is already persisted and cannot be inserted again"),
 		ENTITY_NOT_PERSISTED("The entity is not persisted, so it cannot be updated nor deleted"),
-		COMMIT_ERROR("There was an error on the commit operation");
+		COMMIT_ERROR("There was an error on the commit operation"),
+		BATCH_ERROR("There was an error on a batch operation, its uncommitted chunk was rolled back");
 
 		private String msg;
 		private Reason(String msg)
@@ -31,4 +32,9 @@ public class JhenPersistenceException extends Exception
 	{
 		super(reason.msg);
 	}
+
+	public JhenPersistenceException(Reason reason, Throwable cause)
+	{
+		super(reason.msg, cause);
+	}
 }
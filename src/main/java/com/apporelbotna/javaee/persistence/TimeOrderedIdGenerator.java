@@ -0,0 +1,100 @@
+package com.apporelbotna.javaee.persistence;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates unique, time-ordered 64-bit ids without any database round-trip, as used by
+ * {@link IdentifiableTimeOrdered}. Every id is made of:
+ * <ul>
+ * <li>41 bits with the milliseconds elapsed since {@link #EPOCH}, which last for 69 years</li>
+ * <li>10 bits with the id of the node generating it, so up to 1024 nodes can generate ids
+ * concurrently without clashing</li>
+ * <li>12 bits with a sequence number, so each node can generate 4096 ids per millisecond</li>
+ * </ul>
+ * When a node runs out of sequence numbers for the current millisecond it borrows the next one
+ * instead of waiting for it, so generating an id never blocks. The generator is lock-free and
+ * can be shared by any number of threads.<br>
+ * <br>
+ * The node id of the {@link #getDefault() default generator} is read from the
+ * <code>{@value #NODE_ID_PROPERTY}</code> system property. Set it to a different value on each
+ * node of a cluster: if it is not set, it is derived from the process id and host name, which
+ * makes clashes unlikely but not impossible.
+ * 
+ * @author Jendoliver
+ */
+public final class TimeOrderedIdGenerator
+{
+	public static final Instant EPOCH = Instant.parse("2018-01-01T00:00:00Z");
+	public static final String NODE_ID_PROPERTY = "com.apporelbotna.javaee.nodeId";
+	public static final int MAX_NODE_ID = (1 << 10) - 1;
+
+	private static final int SEQUENCE_BITS = 12;
+	private static final int NODE_BITS = 10;
+	private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+	private static final TimeOrderedIdGenerator DEFAULT = new TimeOrderedIdGenerator(defaultNodeId());
+
+	private final long epochMillis = EPOCH.toEpochMilli();
+	private final long node;
+	/**
+	 * Timestamp and sequence number of the last id generated, packed like in the ids themselves
+	 */
+	private final AtomicLong last = new AtomicLong();
+
+	public TimeOrderedIdGenerator(int nodeId)
+	{
+		if (nodeId < 0 || nodeId > MAX_NODE_ID)
+			throw new IllegalArgumentException("The node id must be between 0 and " + MAX_NODE_ID);
+		
+		this.node = nodeId;
+	}
+
+	public static TimeOrderedIdGenerator getDefault()
+	{
+		return DEFAULT;
+	}
+
+	public long nextId()
+	{
+		long now = System.currentTimeMillis() - epochMillis;
+		while (true)
+		{
+			long previous = last.get();
+			long previousTimestamp = previous >>> SEQUENCE_BITS;
+			long timestamp = Math.max(now, previousTimestamp);
+			long sequence = timestamp == previousTimestamp ? (previous & MAX_SEQUENCE) + 1 : 0;
+			if (sequence > MAX_SEQUENCE)
+			{
+				timestamp++;
+				sequence = 0;
+			}
+			
+			if (last.compareAndSet(previous, timestamp << SEQUENCE_BITS | sequence))
+				return timestamp << (NODE_BITS + SEQUENCE_BITS) | node << SEQUENCE_BITS | sequence;
+		}
+	}
+
+	/**
+	 * Returns the instant when the given id was generated, to the millisecond
+	 */
+	public static Instant getInstant(long id)
+	{
+		return EPOCH.plusMillis(id >>> (NODE_BITS + SEQUENCE_BITS));
+	}
+
+	public static int getNodeId(long id)
+	{
+		return (int)(id >>> SEQUENCE_BITS & MAX_NODE_ID);
+	}
+
+	private static int defaultNodeId()
+	{
+		String nodeId = System.getProperty(NODE_ID_PROPERTY);
+		if (nodeId != null)
+			return Integer.parseInt(nodeId.trim());
+		
+		return ManagementFactory.getRuntimeMXBean().getName().hashCode() & MAX_NODE_ID;
+	}
+}
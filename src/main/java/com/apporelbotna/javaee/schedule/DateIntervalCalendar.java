@@ -0,0 +1,130 @@
+package com.apporelbotna.javaee.schedule;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.TimeZone;
+
+import org.quartz.Calendar;
+import org.quartz.impl.calendar.BaseCalendar;
+
+import com.apporelbotna.javaee.date.DateInterval;
+import com.apporelbotna.javaee.date.DateIntervalSet;
+
+/**
+ * A Quartz {@link Calendar} which excludes the instants covered by a set of {@link DateInterval}s,
+ * i.e maintenance windows or holidays, so the triggers modified by it don't fire during them.
+ * Like {@link DateIntervalSet}, every interval includes its start and excludes its end.<br>
+ * <br>
+ * The intervals are normalized and stored as two sorted arrays of epoch milliseconds, so the
+ * scheduler checks a time against them with a binary search instead of going through every
+ * interval. Their dates are taken in the time zone the calendar is given.
+ *
+ * @see TriggerFactory.Builder#excluding(String)
+ * @author Jendoliver
+ */
+public class DateIntervalCalendar extends BaseCalendar
+{
+	private static final long serialVersionUID = 1L;
+
+	private final long[] starts;
+	private final long[] ends;
+
+	public DateIntervalCalendar(Collection<? extends DateInterval> blackouts, ZoneId zone)
+	{
+		this(DateIntervalSet.of(blackouts), zone);
+	}
+
+	public DateIntervalCalendar(DateIntervalSet blackouts, ZoneId zone)
+	{
+		this(blackouts, zone, null);
+	}
+
+	/**
+	 * @param baseCalendar another calendar whose excluded times are excluded too
+	 */
+	public DateIntervalCalendar(DateIntervalSet blackouts, ZoneId zone, Calendar baseCalendar)
+	{
+		super(baseCalendar, TimeZone.getTimeZone(zone));
+		List<DateInterval> intervals = blackouts.toList();
+		starts = new long[intervals.size()];
+		ends = new long[intervals.size()];
+		for (int i = 0; i < starts.length; i++)
+		{
+			starts[i] = toEpochMilli(intervals.get(i).getStartDate(), zone);
+			ends[i] = toEpochMilli(intervals.get(i).getEndDate(), zone);
+		}
+	}
+
+	private static long toEpochMilli(LocalDateTime localDateTime, ZoneId zone)
+	{
+		return localDateTime.atZone(zone).toInstant().toEpochMilli();
+	}
+
+	@Override
+	public boolean isTimeIncluded(long timeStamp)
+	{
+		return super.isTimeIncluded(timeStamp) && blackoutAt(timeStamp) < 0;
+	}
+
+	@Override
+	public long getNextIncludedTime(long timeStamp)
+	{
+		long next = timeStamp + 1;
+		while (!isTimeIncluded(next))
+		{
+			int blackout = blackoutAt(next);
+			if (blackout >= 0)
+				next = ends[blackout];
+			else
+				next = Math.max(next + 1, getBaseCalendar().getNextIncludedTime(next));
+		}
+		return next;
+	}
+
+	/**
+	 * Returns the index of the interval covering the given time, or -1 if there is none
+	 */
+	private int blackoutAt(long timeStamp)
+	{
+		int index = Arrays.binarySearch(starts, timeStamp);
+		if (index < 0)
+			index = -index - 2;
+		return index >= 0 && timeStamp < ends[index] ? index : -1;
+	}
+
+	/**
+	 * How many disjoint intervals are excluded
+	 */
+	public int size()
+	{
+		return starts.length;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return 31 * Arrays.hashCode(starts) + Arrays.hashCode(ends);
+	}
+
+	/**
+	 * Calendars are equal if they exclude the same intervals and have equal base calendars, which
+	 * is what a {@link TaskManager} checks before replacing a stored calendar
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof DateIntervalCalendar))
+			return false;
+		DateIntervalCalendar other = (DateIntervalCalendar)obj;
+		return Arrays.equals(starts, other.starts) && Arrays.equals(ends, other.ends)
+				&& Objects.equals(getBaseCalendar(), other.getBaseCalendar())
+				&& Objects.equals(getTimeZone(), other.getTimeZone())
+				&& Objects.equals(getDescription(), other.getDescription());
+	}
+}
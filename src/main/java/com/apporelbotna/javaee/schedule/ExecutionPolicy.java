@@ -0,0 +1,192 @@
+package com.apporelbotna.javaee.schedule;
+
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+
+/**
+ * What happens when a job fires while previous executions of it are still running, i.e when a
+ * heavy sweep overruns the period of its trigger:
+ * <ul>
+ * <li>{@link #parallel()}: the new execution runs alongside them, like Quartz does by default. With
+ * {@link #parallel(int)}, at most that many run at once and further fires are skipped.</li>
+ * <li>{@link #skipIfRunning()}: the new execution is skipped</li>
+ * <li>{@link #coalesce()}: the new execution waits for the running one, and any other fire in the
+ * meantime is merged into it, so the job runs once more after an overrun no matter how many fires
+ * it missed</li>
+ * <li>{@link #queue(int)}: the new execution waits for the running one, and so on up to the given
+ * number of waiting executions. Fires beyond that are skipped.</li>
+ * </ul>
+ * Since the waiting executions are bounded and the rest are skipped, an overloaded job keeps
+ * running at the pace it can instead of piling up executions which fight for the same rows.<br>
+ * <br>
+ * The policy of a job can be declared with {@link JobPolicy} on its class, or given to its
+ * {@link Task}. It is stored in the job data, so it survives persistent job stores, and enforced
+ * by the {@link JobThrottle} of the TaskManager, per job key and per node. Executions which are
+ * skipped return right away, without running the job.
+ *
+ * @author Jendoliver
+ */
+public final class ExecutionPolicy
+{
+	public static final String JOB_DATA_KEY = "jhen.executionPolicy";
+
+	public enum Overlap
+	{
+		PARALLEL, SKIP, COALESCE, QUEUE
+	}
+
+	private static final ExecutionPolicy PARALLEL = new ExecutionPolicy(Overlap.PARALLEL, 0);
+	private static final ExecutionPolicy SKIP = new ExecutionPolicy(Overlap.SKIP, 0);
+	private static final ExecutionPolicy COALESCE = new ExecutionPolicy(Overlap.COALESCE, 0);
+
+	private final Overlap overlap;
+	private final int limit;
+
+	private ExecutionPolicy(Overlap overlap, int limit)
+	{
+		this.overlap = overlap;
+		this.limit = limit;
+	}
+
+	public static ExecutionPolicy parallel()
+	{
+		return PARALLEL;
+	}
+
+	public static ExecutionPolicy parallel(int maxRunning)
+	{
+		return of(Overlap.PARALLEL, maxRunning);
+	}
+
+	public static ExecutionPolicy skipIfRunning()
+	{
+		return SKIP;
+	}
+
+	public static ExecutionPolicy coalesce()
+	{
+		return COALESCE;
+	}
+
+	public static ExecutionPolicy queue(int maxWaiting)
+	{
+		return of(Overlap.QUEUE, maxWaiting);
+	}
+
+	/**
+	 * @param limit the most executions running at once for {@link Overlap#PARALLEL} (0 for no
+	 *            limit), or waiting for {@link Overlap#QUEUE}. Ignored by the rest.
+	 */
+	public static ExecutionPolicy of(Overlap overlap, int limit)
+	{
+		if (limit < 0)
+			throw new IllegalArgumentException("The limit of an execution policy can't be negative: " + limit);
+
+		switch (overlap)
+		{
+			case SKIP:
+				return SKIP;
+			case COALESCE:
+				return COALESCE;
+			case QUEUE:
+				return new ExecutionPolicy(overlap, limit);
+			default:
+				return limit == 0 ? PARALLEL : new ExecutionPolicy(overlap, limit);
+		}
+	}
+
+	/**
+	 * Returns the policy declared with {@link JobPolicy} on the job class, or {@link #parallel()}
+	 * if there is none
+	 */
+	public static ExecutionPolicy of(Class<? extends Job> jobClass)
+	{
+		JobPolicy declared = jobClass.getAnnotation(JobPolicy.class);
+		return declared == null ? PARALLEL : of(declared.value(), declared.limit());
+	}
+
+	/**
+	 * Returns the policy stored in the job data, or {@link #parallel()} if there is none
+	 */
+	public static ExecutionPolicy of(JobDataMap jobData)
+	{
+		String policy = jobData.getString(JOB_DATA_KEY);
+		return policy == null ? PARALLEL : parse(policy);
+	}
+
+	/**
+	 * Parses a policy written by {@link #toString()}, i.e <code>QUEUE:5</code>
+	 */
+	public static ExecutionPolicy parse(String policy)
+	{
+		int separator = policy.indexOf(':');
+		if (separator < 0)
+			return of(Overlap.valueOf(policy), 0);
+		return of(Overlap.valueOf(policy.substring(0, separator)), Integer.parseInt(policy.substring(separator + 1)));
+	}
+
+	public Overlap getOverlap()
+	{
+		return overlap;
+	}
+
+	public int getLimit()
+	{
+		return limit;
+	}
+
+	/**
+	 * Whether this is the default policy of Quartz, so there is nothing to enforce
+	 */
+	public boolean isUnlimited()
+	{
+		return overlap == Overlap.PARALLEL && limit == 0;
+	}
+
+	/**
+	 * How many executions can run at once
+	 */
+	int getMaxRunning()
+	{
+		return overlap != Overlap.PARALLEL ? 1 : limit == 0 ? Integer.MAX_VALUE : limit;
+	}
+
+	/**
+	 * How many executions can wait for the running ones to finish
+	 */
+	int getMaxWaiting()
+	{
+		switch (overlap)
+		{
+			case COALESCE:
+				return 1;
+			case QUEUE:
+				return limit;
+			default:
+				return 0;
+		}
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return 31 * overlap.hashCode() + limit;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ExecutionPolicy))
+			return false;
+		ExecutionPolicy other = (ExecutionPolicy)obj;
+		return overlap == other.overlap && limit == other.limit;
+	}
+
+	@Override
+	public String toString()
+	{
+		return limit == 0 ? overlap.name() : overlap.name() + ":" + limit;
+	}
+}
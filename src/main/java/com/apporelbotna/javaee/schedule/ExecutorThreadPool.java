@@ -0,0 +1,219 @@
+package com.apporelbotna.javaee.schedule;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.quartz.SchedulerConfigException;
+import org.quartz.simpl.SimpleThreadPool;
+import org.quartz.spi.ThreadPool;
+
+/**
+ * A Quartz {@link ThreadPool} which runs each job in a task of an {@link ExecutorService} instead
+ * of in one of a fixed set of threads, for jobs which spend most of their time waiting on I/O
+ * (database sweeps, HTTP calls...):
+ * <ul>
+ * <li>With virtual threads, if the JVM supports them, every job gets its own thread and blocking
+ * costs next to nothing</li>
+ * <li>Otherwise, or if {@link #setVirtualThreads(boolean)} is false, a work-stealing pool with the
+ * given parallelism, or with one thread per job that can run at once if it isn't given</li>
+ * </ul>
+ * At most <code>threadCount</code> jobs run at once. Once they are all running, the scheduler
+ * stops acquiring triggers until one of them finishes, so a burst of triggers waits in the job
+ * store instead of piling up in memory.<br>
+ * <br>
+ * Quartz creates this pool from the properties built by
+ * {@link SchedulerConfiguration#virtualThreads(int)} and
+ * {@link SchedulerConfiguration#workStealing(int, int)}, so there's no need to use it directly.
+ *
+ * @author Jendoliver
+ */
+public class ExecutorThreadPool implements ThreadPool
+{
+	private static final long SHUTDOWN_CHECK_MILLIS = 500;
+
+	private int threadCount = SchedulerConfiguration.DEFAULT_THREAD_COUNT;
+	private int parallelism;
+	private boolean virtualThreads = true;
+
+	private ExecutorService executor;
+	private Semaphore permits;
+	private volatile boolean shutdown;
+
+	@Override
+	public void initialize() throws SchedulerConfigException
+	{
+		if (threadCount <= 0)
+			throw new SchedulerConfigException("The thread count must be greater than 0");
+		if (parallelism < 0)
+			throw new SchedulerConfigException("The parallelism can't be negative");
+
+		permits = new Semaphore(threadCount);
+		executor = virtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+		// Jobs block on I/O, so without virtual threads each one needs a thread of its own unless
+		// told otherwise
+		if (executor == null)
+			executor = Executors.newWorkStealingPool(parallelism > 0 ? parallelism : threadCount);
+	}
+
+	/**
+	 * Looked up by reflection so the library still runs on JVMs without virtual threads
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor()
+	{
+		try
+		{
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)factory.invoke(null);
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+		catch (ReflectiveOperationException e)
+		{
+			Logger.getGlobal().log(Level.WARNING, "Could not create a virtual thread executor", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Waits until a job can run, like {@link SimpleThreadPool} does when all its threads are busy
+	 */
+	@Override
+	public boolean runInThread(Runnable runnable)
+	{
+		if (runnable == null || !acquire())
+			return false;
+
+		try
+		{
+			executor.execute(() -> {
+				try
+				{
+					runnable.run();
+				}
+				finally
+				{
+					permits.release();
+				}
+			});
+			return true;
+		}
+		catch (RejectedExecutionException e)
+		{
+			permits.release();
+			return false;
+		}
+	}
+
+	@Override
+	public int blockForAvailableThreads()
+	{
+		if (!acquire())
+			return 0;
+
+		permits.release();
+		return Math.max(1, permits.availablePermits());
+	}
+
+	private boolean acquire()
+	{
+		try
+		{
+			while (!shutdown)
+				if (permits.tryAcquire(SHUTDOWN_CHECK_MILLIS, TimeUnit.MILLISECONDS))
+					return true;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+
+	@Override
+	public void shutdown(boolean waitForJobsToComplete)
+	{
+		shutdown = true;
+		if (executor == null)
+			return;
+
+		executor.shutdown();
+		if (!waitForJobsToComplete)
+			return;
+
+		try
+		{
+			while (!executor.awaitTermination(SHUTDOWN_CHECK_MILLIS, TimeUnit.MILLISECONDS))
+				continue;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public int getPoolSize()
+	{
+		return threadCount;
+	}
+
+	public boolean isVirtualThreads()
+	{
+		return virtualThreads;
+	}
+
+	/**
+	 * Whether to run jobs on virtual threads when the JVM supports them. True by default.
+	 */
+	public void setVirtualThreads(boolean virtualThreads)
+	{
+		this.virtualThreads = virtualThreads;
+	}
+
+	public int getThreadCount()
+	{
+		return threadCount;
+	}
+
+	/**
+	 * How many jobs can run at once
+	 */
+	public void setThreadCount(int threadCount)
+	{
+		this.threadCount = threadCount;
+	}
+
+	public int getParallelism()
+	{
+		return parallelism;
+	}
+
+	/**
+	 * How many threads the work-stealing pool keeps busy, when virtual threads are not used. The
+	 * thread count by default, or if it is 0.
+	 */
+	public void setParallelism(int parallelism)
+	{
+		this.parallelism = parallelism;
+	}
+
+	@Override
+	public void setInstanceId(String instanceId)
+	{
+		// Tasks are not named after the scheduler
+	}
+
+	@Override
+	public void setInstanceName(String instanceName)
+	{
+		// Tasks are not named after the scheduler
+	}
+}
@@ -0,0 +1,101 @@
+package com.apporelbotna.javaee.schedule;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.quartz.Scheduler;
+
+/**
+ * Creates the tables of the Quartz JDBC job store by running the SQL scripts shipped with Quartz,
+ * i.e to set up an embedded database for tests or local development:<br>
+ * <br>
+ * <code>JdbcJobStoreSchema.create(connection, "h2");</code><br>
+ * <br>
+ * The database name is the suffix of the script in the Quartz jar, such as <code>h2</code>,
+ * <code>postgres</code>, <code>mysql_innodb</code> or <code>oracle</code>. Only scripts whose
+ * statements end with semicolons are supported, which excludes the SQL Server and Sybase ones.
+ * Production databases should rather be migrated with the tool used for the rest of the schema.
+ *
+ * @author Jendoliver
+ */
+public final class JdbcJobStoreSchema
+{
+	private static final String SCRIPT_PATH = "org/quartz/impl/jdbcjobstore/tables_";
+	private static final String DEFAULT_TABLE_PREFIX = "QRTZ_";
+	/**
+	 * Some scripts spell a few table names in lower case, such as the H2 one
+	 */
+	private static final Pattern DEFAULT_TABLE_PREFIX_PATTERN = Pattern.compile(DEFAULT_TABLE_PREFIX,
+			Pattern.CASE_INSENSITIVE | Pattern.LITERAL);
+
+	public static void create(Connection connection, String database) throws SQLException
+	{
+		create(connection, database, DEFAULT_TABLE_PREFIX);
+	}
+
+	/**
+	 * Creates the tables with the given prefix instead of the default <code>QRTZ_</code>, to be
+	 * used along with {@link SchedulerConfiguration#tablePrefix(String)}
+	 */
+	public static void create(Connection connection, String database, String tablePrefix) throws SQLException
+	{
+		String replacement = Matcher.quoteReplacement(tablePrefix);
+		try (Statement statement = connection.createStatement())
+		{
+			for (String sql : statements(database))
+				statement.execute(DEFAULT_TABLE_PREFIX_PATTERN.matcher(sql).replaceAll(replacement));
+		}
+		if (!connection.getAutoCommit())
+			connection.commit();
+	}
+
+	private static List<String> statements(String database) throws SQLException
+	{
+		String script = SCRIPT_PATH + database + ".sql";
+		InputStream in = Scheduler.class.getClassLoader().getResourceAsStream(script);
+		if (in == null)
+			throw new SQLException("Quartz has no script for the database " + database);
+
+		List<String> statements = new ArrayList<>();
+		StringBuilder current = new StringBuilder();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("--") || line.startsWith("#"))
+					continue;
+
+				current.append(line).append(' ');
+				if (line.endsWith(";"))
+				{
+					String sql = current.substring(0, current.lastIndexOf(";")).trim();
+					if (!sql.equalsIgnoreCase("commit"))
+						statements.add(sql);
+					current.setLength(0);
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			throw new SQLException("Could not read " + script, e);
+		}
+		return statements;
+	}
+
+	private JdbcJobStoreSchema()
+	{
+		throw new IllegalAccessError();
+	}
+}
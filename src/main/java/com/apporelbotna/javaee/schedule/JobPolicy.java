@@ -0,0 +1,34 @@
+package com.apporelbotna.javaee.schedule;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the {@link ExecutionPolicy} of a job class, used by every {@link Task} of it which
+ * isn't given another one, i.e:<br>
+ * <br>
+ * <code>
+ * &#64;JobPolicy(ExecutionPolicy.Overlap.COALESCE)<br>
+ * public class ExpiredSessionsSweep implements BaseJob<br>
+ * </code>
+ *
+ * @author Jendoliver
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface JobPolicy
+{
+	ExecutionPolicy.Overlap value();
+
+	/**
+	 * The most executions running at once for {@link ExecutionPolicy.Overlap#PARALLEL} (0 for no
+	 * limit), or waiting for {@link ExecutionPolicy.Overlap#QUEUE}
+	 */
+	int limit() default 0;
+}
@@ -0,0 +1,102 @@
+package com.apporelbotna.javaee.schedule;
+
+/**
+ * Point-in-time statistics of the executions of a job, or of every job of a {@link TaskManager}
+ *
+ * @see TaskMetrics
+ * @author Jendoliver
+ */
+public final class JobStatistics
+{
+	private final long runs;
+	private final long failures;
+	private final long vetoes;
+	private final long skips;
+	private final int running;
+	private final int maxRunning;
+	private final LatencyHistogram.Snapshot duration;
+
+	public JobStatistics(long runs, long failures, long vetoes, long skips, int running, int maxRunning,
+			LatencyHistogram.Snapshot duration)
+	{
+		this.runs = runs;
+		this.failures = failures;
+		this.vetoes = vetoes;
+		this.skips = skips;
+		this.running = running;
+		this.maxRunning = maxRunning;
+		this.duration = duration;
+	}
+
+	/**
+	 * How many executions have finished, successfully or not
+	 */
+	public long getRuns()
+	{
+		return runs;
+	}
+
+	/**
+	 * How many executions have thrown an exception
+	 */
+	public long getFailures()
+	{
+		return failures;
+	}
+
+	/**
+	 * How many executions have been vetoed by a trigger listener
+	 */
+	public long getVetoes()
+	{
+		return vetoes;
+	}
+
+	/**
+	 * How many executions have been skipped by the {@link ExecutionPolicy} of the job. They are not
+	 * counted as runs.
+	 */
+	public long getSkips()
+	{
+		return skips;
+	}
+
+	/**
+	 * How many executions are running right now
+	 */
+	public int getRunning()
+	{
+		return running;
+	}
+
+	/**
+	 * The most executions which have run at once
+	 */
+	public int getMaxRunning()
+	{
+		return maxRunning;
+	}
+
+	/**
+	 * How long the executions took, in nanoseconds
+	 */
+	public LatencyHistogram.Snapshot getDuration()
+	{
+		return duration;
+	}
+
+	/**
+	 * Ratio of executions which failed, between 0 and 1
+	 */
+	public double getFailureRate()
+	{
+		return runs == 0 ? 0 : (double)failures / runs;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "JobStatistics [runs=" + runs + ", failures=" + failures + ", vetoes=" + vetoes + ", skips=" + skips
+				+ ", running=" + running + ", maxRunning=" + maxRunning + ", duration=" + duration + "]";
+	}
+}
@@ -0,0 +1,414 @@
+package com.apporelbotna.javaee.schedule;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.quartz.InterruptableJob;
+import org.quartz.Job;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.UnableToInterruptJobException;
+import org.quartz.listeners.TriggerListenerSupport;
+import org.quartz.simpl.PropertySettingJobFactory;
+import org.quartz.spi.JobFactory;
+import org.quartz.spi.TriggerFiredBundle;
+
+/**
+ * Limits how many executions of each job and of each group run at once, and counts the executions
+ * waiting for their turn, the ones skipped and the triggers which misfired, so a
+ * {@link TaskManager} can tell when its jobs can't keep up. Before running, every execution goes
+ * through:
+ * <ol>
+ * <li>The {@link ExecutionPolicy} of its job, which may skip it or make it wait for the running
+ * executions of the same job</li>
+ * <li>The concurrency limit of its group, if any, which makes it wait until another execution of
+ * the group finishes</li>
+ * </ol>
+ * Waiting executions hold a thread of the pool, which in turn keeps the scheduler from acquiring
+ * more triggers once the whole pool is waiting. Jobs without a policy in groups without a limit
+ * are not affected at all.<br>
+ * <br>
+ * The TaskManager installs it as the job factory and a trigger listener of its scheduler. In a
+ * cluster, the limits and the counts are the ones of this node only.
+ *
+ * @see SchedulerConfiguration#groupConcurrency(String, int)
+ * @author Jendoliver
+ */
+public class JobThrottle extends TriggerListenerSupport implements JobFactory
+{
+	public static final String LISTENER_NAME = "JhenJobThrottle";
+
+	/**
+	 * Put in the context of the executions skipped by their execution policy
+	 */
+	public static final String SKIPPED = JobThrottle.class.getName() + ".skipped";
+
+	/**
+	 * An {@link ExecutionListener} put in the context of a throttled execution by whoever needs to
+	 * know when its job actually runs
+	 *
+	 * @see #isThrottled(JobExecutionContext)
+	 */
+	public static final String EXECUTION_LISTENER = JobThrottle.class.getName() + ".executionListener";
+
+	/**
+	 * Told when the job of a throttled execution runs, which the job listeners can't tell since
+	 * they are told before the execution goes through its policy and group limit, and after it
+	 * made room for the next ones. It is not told about the executions which are skipped or
+	 * interrupted while waiting.
+	 */
+	public interface ExecutionListener
+	{
+		/**
+		 * The execution got its turn and its job is about to run
+		 */
+		void started();
+
+		/**
+		 * The job has run, and the execution is about to make room for the ones waiting
+		 */
+		void stopped();
+	}
+
+	/**
+	 * The executions of a job running and waiting right now, according to its policy
+	 */
+	private static final class JobSlots
+	{
+		private final ExecutionPolicy policy;
+		private final Semaphore running;
+		private final AtomicInteger waiting = new AtomicInteger();
+		private final LongAdder skipped = new LongAdder();
+
+		private JobSlots(ExecutionPolicy policy)
+		{
+			this.policy = policy;
+			this.running = new Semaphore(policy.getMaxRunning(), true);
+		}
+
+		/**
+		 * Returns whether the execution can run, once it can
+		 */
+		private boolean enter(AtomicInteger queued) throws InterruptedException
+		{
+			if (running.tryAcquire())
+				return true;
+
+			if (waiting.incrementAndGet() > policy.getMaxWaiting())
+			{
+				waiting.decrementAndGet();
+				skipped.increment();
+				return false;
+			}
+
+			queued.incrementAndGet();
+			try
+			{
+				acquire(running);
+				return true;
+			}
+			finally
+			{
+				queued.decrementAndGet();
+				waiting.decrementAndGet();
+			}
+		}
+	}
+
+	private final JobFactory jobFactory;
+	private final Map<String, Integer> groupLimits;
+	private final Map<String, Semaphore> groupPermits = new HashMap<>();
+	private final ConcurrentMap<JobKey, JobSlots> jobSlots = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, AtomicInteger> queued = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, LongAdder> misfires = new ConcurrentHashMap<>();
+	private final LongAdder skipped = new LongAdder();
+
+	public JobThrottle(Map<String, Integer> groupLimits)
+	{
+		this(groupLimits, new PropertySettingJobFactory());
+	}
+
+	/**
+	 * @param jobFactory the factory which creates the jobs, the default one of Quartz if not given
+	 */
+	public JobThrottle(Map<String, Integer> groupLimits, JobFactory jobFactory)
+	{
+		this.jobFactory = jobFactory;
+		this.groupLimits = Collections.unmodifiableMap(new HashMap<>(groupLimits));
+		groupLimits.forEach((group, limit) -> groupPermits.put(group, new Semaphore(limit, true)));
+	}
+
+	@Override
+	public Job newJob(TriggerFiredBundle bundle, Scheduler scheduler) throws SchedulerException
+	{
+		Job job = jobFactory.newJob(bundle, scheduler);
+		JobDetail jobDetail = bundle.getJobDetail();
+		String group = groupOf(jobDetail);
+		AtomicInteger groupQueued = queuedOf(group);
+		// Jobs are created by the scheduler thread before handing them to the pool, so they are
+		// queued until a thread of the pool picks them up
+		groupQueued.incrementAndGet();
+
+		JobSlots slots = slotsOf(jobDetail);
+		Semaphore permits = groupPermits.get(group);
+		return slots == null && permits == null ? job : new ThrottledJob(job, slots, permits, groupQueued);
+	}
+
+	/**
+	 * The policy is read from the job data on every fire, since the job may have been replaced
+	 * with another policy since the last one
+	 */
+	private JobSlots slotsOf(JobDetail jobDetail)
+	{
+		ExecutionPolicy policy = ExecutionPolicy.of(jobDetail.getJobDataMap());
+		JobKey key = jobDetail.getKey();
+		if (policy.isUnlimited())
+		{
+			jobSlots.remove(key);
+			return null;
+		}
+
+		JobSlots slots = jobSlots.get(key);
+		if (slots != null && slots.policy.equals(policy))
+			return slots;
+		return jobSlots.compute(key, (k, current) -> current != null && current.policy.equals(policy) ? current
+				: new JobSlots(policy));
+	}
+
+	@Override
+	public void triggerFired(Trigger trigger, JobExecutionContext context)
+	{
+		queuedOf(groupOf(context.getJobDetail())).decrementAndGet();
+	}
+
+	/**
+	 * Whether the execution goes through a policy or a group limit before running, and so may wait
+	 * or be skipped after the listeners were told it is to be executed
+	 */
+	public static boolean isThrottled(JobExecutionContext context)
+	{
+		return context.getJobInstance() instanceof ThrottledJob;
+	}
+
+	private static String groupOf(JobDetail jobDetail)
+	{
+		return jobDetail.getKey().getGroup();
+	}
+
+	private AtomicInteger queuedOf(String group)
+	{
+		return queued.computeIfAbsent(group, key -> new AtomicInteger());
+	}
+
+	@Override
+	public String getName()
+	{
+		return LISTENER_NAME;
+	}
+
+	@Override
+	public void triggerMisfired(Trigger trigger)
+	{
+		misfires.computeIfAbsent(trigger.getKey().getGroup(), key -> new LongAdder()).increment();
+	}
+
+	/**
+	 * How many jobs have fired but are not running yet, either waiting for a thread of the pool,
+	 * for the running executions of the same job or for their group to have room
+	 */
+	public int getQueueDepth()
+	{
+		return queued.values().stream().mapToInt(AtomicInteger::get).sum();
+	}
+
+	public int getQueueDepth(String group)
+	{
+		AtomicInteger depth = queued.get(group);
+		return depth == null ? 0 : depth.get();
+	}
+
+	/**
+	 * How many triggers have misfired since the scheduler started
+	 */
+	public long getMisfireCount()
+	{
+		return misfires.values().stream().mapToLong(LongAdder::sum).sum();
+	}
+
+	public long getMisfireCount(String group)
+	{
+		LongAdder count = misfires.get(group);
+		return count == null ? 0 : count.sum();
+	}
+
+	/**
+	 * How many executions have been skipped by the execution policy of their job
+	 */
+	public long getSkippedCount()
+	{
+		return skipped.sum();
+	}
+
+	public long getSkippedCount(JobKey key)
+	{
+		JobSlots slots = jobSlots.get(key);
+		return slots == null ? 0 : slots.skipped.sum();
+	}
+
+	/**
+	 * Forgets the state of a job which is not scheduled anymore
+	 */
+	public void forget(JobKey key)
+	{
+		jobSlots.remove(key);
+	}
+
+	public Map<String, Integer> getGroupLimits()
+	{
+		return groupLimits;
+	}
+
+	/**
+	 * The wait is managed, so a work-stealing pool may start another thread instead of losing one
+	 * of its workers
+	 */
+	private static void acquire(Semaphore permits) throws InterruptedException
+	{
+		ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker()
+		{
+			@Override
+			public boolean block() throws InterruptedException
+			{
+				permits.acquire();
+				return true;
+			}
+
+			@Override
+			public boolean isReleasable()
+			{
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * Goes through the policy of its job and the limit of its group before running the actual job
+	 */
+	private class ThrottledJob implements InterruptableJob
+	{
+		private final Job job;
+		private final JobSlots slots;
+		private final Semaphore groupPermits;
+		private final AtomicInteger queued;
+
+		private ThrottledJob(Job job, JobSlots slots, Semaphore groupPermits, AtomicInteger queued)
+		{
+			this.job = job;
+			this.slots = slots;
+			this.groupPermits = groupPermits;
+			this.queued = queued;
+		}
+
+		@Override
+		public void execute(JobExecutionContext context) throws JobExecutionException
+		{
+			try
+			{
+				if (slots != null && !slots.enter(queued))
+				{
+					skipped.increment();
+					context.put(SKIPPED, Boolean.TRUE);
+					return;
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new JobExecutionException("Interrupted while waiting for the previous executions", e);
+			}
+
+			try
+			{
+				executeInGroup(context);
+			}
+			finally
+			{
+				if (slots != null)
+					slots.running.release();
+			}
+		}
+
+		private void executeInGroup(JobExecutionContext context) throws JobExecutionException
+		{
+			if (groupPermits == null)
+			{
+				start(context);
+				return;
+			}
+
+			queued.incrementAndGet();
+			try
+			{
+				acquire(groupPermits);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new JobExecutionException("Interrupted while waiting for a permit of its group", e);
+			}
+			finally
+			{
+				queued.decrementAndGet();
+			}
+
+			try
+			{
+				start(context);
+			}
+			finally
+			{
+				groupPermits.release();
+			}
+		}
+
+		private void start(JobExecutionContext context) throws JobExecutionException
+		{
+			Object listener = context.get(EXECUTION_LISTENER);
+			if (!(listener instanceof ExecutionListener))
+			{
+				job.execute(context);
+				return;
+			}
+
+			((ExecutionListener)listener).started();
+			try
+			{
+				job.execute(context);
+			}
+			finally
+			{
+				((ExecutionListener)listener).stopped();
+			}
+		}
+
+		@Override
+		public void interrupt() throws UnableToInterruptJobException
+		{
+			if (!(job instanceof InterruptableJob))
+				throw new UnableToInterruptJobException(job.getClass() + " can't be interrupted");
+			((InterruptableJob)job).interrupt();
+		}
+	}
+}
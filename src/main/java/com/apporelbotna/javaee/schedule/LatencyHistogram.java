@@ -0,0 +1,180 @@
+package com.apporelbotna.javaee.schedule;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds, which can be recorded by many threads at once without
+ * locking. Like HdrHistogram, it splits every power of two in {@value #SUB_BUCKETS} buckets of the
+ * same width, so any percentile is accurate to within 1/{@value #SUB_BUCKETS} of its value (12.5%)
+ * no matter how large it is, using a fixed array of {@value #BUCKETS} counters.<br>
+ * <br>
+ * Durations longer than 2<sup>{@value #MAX_EXPONENT}</sup> nanoseconds (about 19 hours) are
+ * counted as that long, except for the maximum, which is always exact.
+ *
+ * @author Jendoliver
+ */
+public final class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 46;
+	private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+	private static final long MAX_TRACKABLE = (1L << MAX_EXPONENT) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos)
+	{
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(indexOf(Math.min(value, MAX_TRACKABLE)));
+		count.increment();
+		sum.add(value);
+		// Only contended while the maximum keeps growing
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value))
+			currentMax = max.get();
+	}
+
+	/**
+	 * Values below {@value #SUB_BUCKETS} have a bucket each, and every power of two above them is
+	 * split in {@value #SUB_BUCKETS} buckets
+	 */
+	private static int indexOf(long value)
+	{
+		if (value < SUB_BUCKETS)
+			return (int)value;
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * The highest value counted in the bucket with the given index
+	 */
+	private static long highestValueOf(int index)
+	{
+		if (index < SUB_BUCKETS)
+			return index;
+
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = index % SUB_BUCKETS;
+		long lowest = (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+		return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * Copies the counts recorded so far. Values recorded while copying may or may not be included.
+	 */
+	public Snapshot snapshot()
+	{
+		long[] copy = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			copy[i] = counts.get(i);
+			total += copy[i];
+		}
+		return new Snapshot(copy, total, sum.sum(), max.get());
+	}
+
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	/**
+	 * The counts of a {@link LatencyHistogram} at some point in time. Every value is in nanoseconds.
+	 */
+	public static final class Snapshot
+	{
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long max;
+
+		private Snapshot(long[] counts, long count, long sum, long max)
+		{
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		public long getCount()
+		{
+			return count;
+		}
+
+		public long getMax()
+		{
+			return max;
+		}
+
+		public double getMean()
+		{
+			return count == 0 ? 0 : (double)sum / count;
+		}
+
+		/**
+		 * Returns the value below which the given percentage of the recorded values are, i.e
+		 * <code>getPercentile(99)</code> for the 99th percentile, or 0 if nothing was recorded
+		 */
+		public long getPercentile(double percentile)
+		{
+			if (count == 0)
+				return 0;
+
+			long rank = Math.max(1, (long)Math.ceil(count * Math.min(percentile, 100) / 100));
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++)
+			{
+				seen += counts[i];
+				if (seen >= rank)
+					return Math.min(highestValueOf(i), max);
+			}
+			return max;
+		}
+
+		public long getP50()
+		{
+			return getPercentile(50);
+		}
+
+		public long getP90()
+		{
+			return getPercentile(90);
+		}
+
+		public long getP99()
+		{
+			return getPercentile(99);
+		}
+
+		public long getP999()
+		{
+			return getPercentile(99.9);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "LatencyHistogram.Snapshot [count=" + count + ", mean=" + (long)getMean() + ", p50=" + getP50()
+					+ ", p99=" + getP99() + ", max=" + max + "]";
+		}
+	}
+}
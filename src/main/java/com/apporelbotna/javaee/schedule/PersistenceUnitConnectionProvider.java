@@ -0,0 +1,203 @@
+package com.apporelbotna.javaee.schedule;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.quartz.SchedulerException;
+import org.quartz.utils.C3p0PoolingConnectionProvider;
+import org.quartz.utils.ConnectionProvider;
+
+import com.apporelbotna.javaee.persistence.EntityManagerFactoryRegistry;
+
+/**
+ * A Quartz {@link ConnectionProvider} which connects to the same database as a persistence unit,
+ * so the JDBC job store of a {@link TaskManager} doesn't need its own connection settings. It takes
+ * the EntityManagerFactory of the persistence unit from the {@link EntityManagerFactoryRegistry}
+ * and uses, in this order:
+ * <ul>
+ * <li>Its non-JTA data source, or its JTA one, either as an object or as a JNDI name</li>
+ * <li>Its JDBC URL, user and password, through a connection pool of its own</li>
+ * </ul>
+ * Some providers, like Hibernate, mask the user and password in the properties of their
+ * EntityManagerFactory, so they have to be given again with
+ * {@link SchedulerConfiguration#credentials(String, String)}.<br>
+ * <br>
+ * Note that the default job store of {@link SchedulerConfiguration} commits its own transactions,
+ * so it should be given a non-JTA data source.<br>
+ * <br>
+ * Quartz creates this provider from the properties built by
+ * {@link SchedulerConfiguration#jdbc(String)}, so there's no need to use it directly.
+ *
+ * @author Jendoliver
+ */
+public class PersistenceUnitConnectionProvider implements ConnectionProvider
+{
+	private static final String[] DATA_SOURCE_PROPERTIES = {
+			"javax.persistence.nonJtaDataSource", "javax.persistence.jtaDataSource", "hibernate.connection.datasource" };
+	private static final String[] URL_PROPERTIES = { "javax.persistence.jdbc.url", "hibernate.connection.url" };
+	private static final String[] USER_PROPERTIES = { "javax.persistence.jdbc.user", "hibernate.connection.username" };
+	private static final String[] PASSWORD_PROPERTIES = {
+			"javax.persistence.jdbc.password", "hibernate.connection.password" };
+	private static final String[] DRIVER_PROPERTIES = {
+			"javax.persistence.jdbc.driver", "hibernate.connection.driver_class" };
+	private static final String MASKED_CREDENTIAL = "****";
+
+	private String persistenceUnitName;
+	private int maxConnections = SchedulerConfiguration.DEFAULT_THREAD_COUNT + 3;
+	private String user;
+	private String password;
+
+	private DataSource dataSource;
+	private ConnectionProvider pool;
+
+	public PersistenceUnitConnectionProvider()
+	{
+		// Created by Quartz
+	}
+
+	public PersistenceUnitConnectionProvider(String persistenceUnitName, int maxConnections)
+	{
+		this.persistenceUnitName = persistenceUnitName;
+		this.maxConnections = maxConnections;
+	}
+
+	@Override
+	public void initialize() throws SQLException
+	{
+		if (persistenceUnitName == null)
+			throw new SQLException("No persistence unit given to " + getClass().getSimpleName());
+
+		EntityManagerFactory factory = EntityManagerFactoryRegistry.getEntityManagerFactory(persistenceUnitName);
+		Map<String, Object> properties = factory.getProperties();
+		Object dataSourceProperty = first(properties, DATA_SOURCE_PROPERTIES);
+		if (dataSourceProperty instanceof DataSource)
+			dataSource = (DataSource)dataSourceProperty;
+		else if (dataSourceProperty instanceof String && !((String)dataSourceProperty).isEmpty())
+			dataSource = lookup((String)dataSourceProperty);
+		else
+			pool = createPool(properties);
+	}
+
+	private static DataSource lookup(String jndiName) throws SQLException
+	{
+		try
+		{
+			return (DataSource)new InitialContext().lookup(jndiName);
+		}
+		catch (NamingException e)
+		{
+			throw new SQLException("Could not find the data source " + jndiName, e);
+		}
+	}
+
+	private ConnectionProvider createPool(Map<String, Object> properties) throws SQLException
+	{
+		Object url = first(properties, URL_PROPERTIES);
+		if (url == null)
+			throw new SQLException("The persistence unit " + persistenceUnitName + " has neither a data source nor "
+					+ "a JDBC URL");
+
+		// Quartz drops empty properties, so a user given without a password has an empty one
+		String poolUser = user != null ? user : credential(properties, USER_PROPERTIES);
+		String poolPassword = user != null ? (password != null ? password : "")
+				: credential(properties, PASSWORD_PROPERTIES);
+		try
+		{
+			return new C3p0PoolingConnectionProvider(stringOf(first(properties, DRIVER_PROPERTIES)), url.toString(),
+					poolUser, poolPassword, maxConnections, null);
+		}
+		catch (SchedulerException e)
+		{
+			throw new SQLException("Could not create the connection pool of " + persistenceUnitName, e);
+		}
+	}
+
+	/**
+	 * Returns the user or password of the persistence unit, failing if the provider has masked it
+	 * instead of connecting with the mask, which some databases punish with growing login delays
+	 */
+	private String credential(Map<String, Object> properties, String[] keys) throws SQLException
+	{
+		String credential = stringOf(first(properties, keys));
+		if (MASKED_CREDENTIAL.equals(credential))
+			throw new SQLException("The persistence unit " + persistenceUnitName + " hides its JDBC credentials, "
+					+ "give them with SchedulerConfiguration.credentials(user, password)");
+		return credential;
+	}
+
+	private static Object first(Map<String, Object> properties, String[] keys)
+	{
+		for (String key : keys)
+		{
+			Object value = properties.get(key);
+			if (value != null)
+				return value;
+		}
+		return null;
+	}
+
+	private static String stringOf(Object value)
+	{
+		return value == null ? null : value.toString();
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException
+	{
+		return pool != null ? pool.getConnection() : dataSource.getConnection();
+	}
+
+	@Override
+	public void shutdown() throws SQLException
+	{
+		// The data source belongs to the persistence unit, only our own pool is closed
+		if (pool != null)
+			pool.shutdown();
+	}
+
+	public String getPersistenceUnitName()
+	{
+		return persistenceUnitName;
+	}
+
+	public void setPersistenceUnitName(String persistenceUnitName)
+	{
+		this.persistenceUnitName = persistenceUnitName;
+	}
+
+	public int getMaxConnections()
+	{
+		return maxConnections;
+	}
+
+	public void setMaxConnections(int maxConnections)
+	{
+		this.maxConnections = maxConnections;
+	}
+
+	public String getUser()
+	{
+		return user;
+	}
+
+	public void setUser(String user)
+	{
+		this.user = user;
+	}
+
+	public String getPassword()
+	{
+		return password;
+	}
+
+	public void setPassword(String password)
+	{
+		this.password = password;
+	}
+}
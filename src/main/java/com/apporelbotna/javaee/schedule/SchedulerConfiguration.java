@@ -0,0 +1,318 @@
+package com.apporelbotna.javaee.schedule;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.impl.SchedulerRepository;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.impl.jdbcjobstore.DriverDelegate;
+import org.quartz.impl.jdbcjobstore.JobStoreTX;
+import org.quartz.impl.jdbcjobstore.StdJDBCDelegate;
+import org.quartz.simpl.RAMJobStore;
+import org.quartz.simpl.SimpleThreadPool;
+
+/**
+ * The configuration of the Quartz {@link Scheduler} of a {@link TaskManager}: which job store it
+ * uses, how many threads run its jobs, whether it is part of a cluster, etc. It builds the
+ * properties of a {@link StdSchedulerFactory}, so any Quartz setting not covered here can still be
+ * given with {@link #setProperty(String, String)}.<br>
+ * <br>
+ * By default, tasks are kept in memory and run by every node which schedules them. To share them
+ * across the nodes of a cluster, store them in the database of a persistence unit, so each firing
+ * runs on a single node and survives restarts:<br>
+ * <br>
+ * <code>
+ * new TaskManager(SchedulerConfiguration.jdbc("myPersistenceUnit").clustered(15, TimeUnit.SECONDS))
+ * </code><br>
+ * <br>
+ * The Quartz tables must exist in that database, see {@link JdbcJobStoreSchema}. Every node must
+ * use the same scheduler name, and each one gets its own instance id.
+ *
+ * @author Jendoliver
+ */
+public class SchedulerConfiguration
+{
+	public static final String DEFAULT_SCHEDULER_NAME = "JhenScheduler";
+	public static final int DEFAULT_THREAD_COUNT = 10;
+
+	private static final String DATA_SOURCE_NAME = "jhenDataSource";
+	private static final AtomicInteger DATA_SOURCES = new AtomicInteger();
+
+	private final Properties properties = new Properties();
+	/**
+	 * Quartz registers data sources by name in a process-wide manager, so each configuration names
+	 * its own one instead of replacing the data source of another scheduler
+	 */
+	private final Properties dataSource = new Properties();
+	private final String dataSourceName = DATA_SOURCE_NAME + DATA_SOURCES.incrementAndGet();
+	private final Map<String, Integer> groupLimits = new HashMap<>();
+	private boolean isolated;
+
+	private SchedulerConfiguration()
+	{
+		properties.setProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_NAME, DEFAULT_SCHEDULER_NAME);
+		properties.setProperty("org.quartz.scheduler.skipUpdateCheck", "true");
+		properties.setProperty(StdSchedulerFactory.PROP_THREAD_POOL_CLASS, SimpleThreadPool.class.getName());
+		properties.setProperty("org.quartz.threadPool.threadCount", String.valueOf(DEFAULT_THREAD_COUNT));
+	}
+
+	/**
+	 * Keeps the tasks in memory, like Quartz does by default
+	 */
+	public static SchedulerConfiguration inMemory()
+	{
+		SchedulerConfiguration configuration = new SchedulerConfiguration();
+		configuration.properties.setProperty(StdSchedulerFactory.PROP_JOB_STORE_CLASS, RAMJobStore.class.getName());
+		return configuration;
+	}
+
+	/**
+	 * Keeps the tasks in the database of the given persistence unit, through the same data source
+	 * or JDBC connection settings used by its EntityManagerFactory (see
+	 * {@link PersistenceUnitConnectionProvider})
+	 */
+	public static SchedulerConfiguration jdbc(String persistenceUnitName)
+	{
+		SchedulerConfiguration configuration = jdbc();
+		configuration.dataSource.setProperty(StdSchedulerFactory.PROP_CONNECTION_PROVIDER_CLASS,
+				PersistenceUnitConnectionProvider.class.getName());
+		configuration.dataSource.setProperty("persistenceUnitName", persistenceUnitName);
+		return configuration;
+	}
+
+	/**
+	 * Keeps the tasks in the database of the data source bound to the given JNDI name
+	 */
+	public static SchedulerConfiguration jdbcDataSource(String jndiName)
+	{
+		SchedulerConfiguration configuration = jdbc();
+		configuration.dataSource.setProperty(StdSchedulerFactory.PROP_DATASOURCE_JNDI_URL, jndiName);
+		return configuration;
+	}
+
+	private static SchedulerConfiguration jdbc()
+	{
+		SchedulerConfiguration configuration = new SchedulerConfiguration();
+		configuration.properties.setProperty(StdSchedulerFactory.PROP_JOB_STORE_CLASS, JobStoreTX.class.getName());
+		configuration.properties.setProperty("org.quartz.jobStore.driverDelegateClass",
+				StdJDBCDelegate.class.getName());
+		return configuration;
+	}
+
+	/**
+	 * The name of the scheduler, which must be the same on every node of a cluster
+	 */
+	public SchedulerConfiguration schedulerName(String schedulerName)
+	{
+		properties.setProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_NAME, schedulerName);
+		return this;
+	}
+
+	/**
+	 * The id of this node in the cluster. Generated from the host name and the current time if
+	 * it is not given.
+	 */
+	public SchedulerConfiguration instanceId(String instanceId)
+	{
+		properties.setProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_ID, instanceId);
+		return this;
+	}
+
+	/**
+	 * How many jobs can run at once on this node. The JDBC connection pool, if any, gets as many
+	 * connections plus the ones needed by the scheduler itself.
+	 */
+	public SchedulerConfiguration threadCount(int threadCount)
+	{
+		properties.setProperty("org.quartz.threadPool.threadCount", String.valueOf(threadCount));
+		return this;
+	}
+
+	/**
+	 * Runs each job in its own virtual thread, or in a work-stealing pool if the JVM doesn't
+	 * support them, with at most <code>maxConcurrentJobs</code> running at once (see
+	 * {@link ExecutorThreadPool}). Meant for jobs which spend most of their time waiting on I/O,
+	 * which would otherwise queue up behind each other in the fixed threads of Quartz.
+	 */
+	public SchedulerConfiguration virtualThreads(int maxConcurrentJobs)
+	{
+		properties.setProperty(StdSchedulerFactory.PROP_THREAD_POOL_CLASS, ExecutorThreadPool.class.getName());
+		properties.setProperty("org.quartz.threadPool.threadCount", String.valueOf(maxConcurrentJobs));
+		properties.setProperty("org.quartz.threadPool.virtualThreads", "true");
+		return this;
+	}
+
+	/**
+	 * Runs the jobs in a work-stealing pool of <code>parallelism</code> threads, with at most
+	 * <code>maxConcurrentJobs</code> running at once (see {@link ExecutorThreadPool})
+	 */
+	public SchedulerConfiguration workStealing(int parallelism, int maxConcurrentJobs)
+	{
+		properties.setProperty(StdSchedulerFactory.PROP_THREAD_POOL_CLASS, ExecutorThreadPool.class.getName());
+		properties.setProperty("org.quartz.threadPool.threadCount", String.valueOf(maxConcurrentJobs));
+		properties.setProperty("org.quartz.threadPool.virtualThreads", "false");
+		properties.setProperty("org.quartz.threadPool.parallelism", String.valueOf(parallelism));
+		return this;
+	}
+
+	/**
+	 * Runs at most <code>maxConcurrentJobs</code> jobs of the given group at once on this node. The
+	 * rest wait for their turn in the thread pool (see {@link JobThrottle}).
+	 */
+	public SchedulerConfiguration groupConcurrency(String group, int maxConcurrentJobs)
+	{
+		if (maxConcurrentJobs <= 0)
+			throw new IllegalArgumentException("The concurrency limit of " + group + " must be greater than 0");
+		groupLimits.put(group, maxConcurrentJobs);
+		return this;
+	}
+
+	/**
+	 * How late a trigger may fire before it is considered misfired, and its misfire instruction
+	 * applied instead
+	 */
+	public SchedulerConfiguration misfireThreshold(long misfireThreshold, TimeUnit unit)
+	{
+		properties.setProperty("org.quartz.jobStore.misfireThreshold",
+				String.valueOf(unit.toMillis(misfireThreshold)));
+		return this;
+	}
+
+	/**
+	 * Shares the tasks with every other node using the same database and scheduler name, each one
+	 * checking in every <code>checkinInterval</code> so the others can take over its jobs if it
+	 * dies. Only for JDBC job stores.
+	 */
+	public SchedulerConfiguration clustered(long checkinInterval, TimeUnit unit)
+	{
+		requireJdbc();
+		properties.setProperty("org.quartz.jobStore.isClustered", "true");
+		properties.setProperty("org.quartz.jobStore.clusterCheckinInterval",
+				String.valueOf(unit.toMillis(checkinInterval)));
+		properties.putIfAbsent(StdSchedulerFactory.PROP_SCHED_INSTANCE_ID,
+				StdSchedulerFactory.AUTO_GENERATE_INSTANCE_ID);
+		return this;
+	}
+
+	/**
+	 * The delegate which knows the SQL dialect of the database. {@link StdJDBCDelegate} by default,
+	 * which works with most of them.
+	 */
+	public SchedulerConfiguration driverDelegate(Class<? extends DriverDelegate> driverDelegateClass)
+	{
+		requireJdbc();
+		properties.setProperty("org.quartz.jobStore.driverDelegateClass", driverDelegateClass.getName());
+		return this;
+	}
+
+	/**
+	 * The user and password of the database of the persistence unit given to
+	 * {@link #jdbc(String)}, for providers which don't expose them in the properties of their
+	 * EntityManagerFactory (i.e Hibernate)
+	 */
+	public SchedulerConfiguration credentials(String user, String password)
+	{
+		requireJdbc();
+		dataSource.setProperty("user", user);
+		dataSource.setProperty("password", password);
+		return this;
+	}
+
+	public SchedulerConfiguration tablePrefix(String tablePrefix)
+	{
+		requireJdbc();
+		properties.setProperty("org.quartz.jobStore.tablePrefix", tablePrefix);
+		return this;
+	}
+
+	/**
+	 * Creates the scheduler without registering it in the process-wide {@link SchedulerRepository},
+	 * so several schedulers with the same name can run in the same JVM, i.e to test a cluster of
+	 * nodes against an embedded database. Such schedulers can't be looked up by name.
+	 */
+	public SchedulerConfiguration isolated()
+	{
+		isolated = true;
+		return this;
+	}
+
+	/**
+	 * Sets any other Quartz property
+	 */
+	public SchedulerConfiguration setProperty(String key, String value)
+	{
+		properties.setProperty(key, value);
+		return this;
+	}
+
+	public boolean isJdbc()
+	{
+		return JobStoreTX.class.getName().equals(properties.getProperty(StdSchedulerFactory.PROP_JOB_STORE_CLASS))
+				|| !dataSource.isEmpty();
+	}
+
+	public Map<String, Integer> getGroupLimits()
+	{
+		return Collections.unmodifiableMap(groupLimits);
+	}
+
+	public String getSchedulerName()
+	{
+		return properties.getProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_NAME);
+	}
+
+	/**
+	 * Returns the properties of the {@link StdSchedulerFactory}
+	 */
+	public Properties toProperties()
+	{
+		Properties result = new Properties();
+		result.putAll(properties);
+		if (!isJdbc() || result.containsKey("org.quartz.jobStore.dataSource"))
+			return result;
+
+		String prefix = StdSchedulerFactory.PROP_DATASOURCE_PREFIX + "." + dataSourceName + ".";
+		result.setProperty("org.quartz.jobStore.dataSource", dataSourceName);
+		for (String key : dataSource.stringPropertyNames())
+			result.setProperty(prefix + key, dataSource.getProperty(key));
+		if (!dataSource.containsKey(StdSchedulerFactory.PROP_DATASOURCE_JNDI_URL))
+		{
+			int threadCount = Integer.parseInt(result.getProperty("org.quartz.threadPool.threadCount"));
+			result.putIfAbsent(prefix + "maxConnections", String.valueOf(threadCount + 3));
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a new scheduler with this configuration. It is not started.
+	 */
+	public Scheduler createScheduler() throws SchedulerException
+	{
+		StdSchedulerFactory factory = new StdSchedulerFactory(toProperties());
+		if (!isolated)
+			return factory.getScheduler();
+
+		SchedulerRepository repository = SchedulerRepository.getInstance();
+		synchronized (repository)
+		{
+			if (repository.lookup(getSchedulerName()) != null)
+				throw new SchedulerException("A scheduler named " + getSchedulerName() + " is already registered, "
+						+ "so an isolated one with the same name can't be created");
+			Scheduler scheduler = factory.getScheduler();
+			repository.remove(getSchedulerName());
+			return scheduler;
+		}
+	}
+
+	private void requireJdbc()
+	{
+		if (!isJdbc())
+			throw new IllegalStateException("Only JDBC job stores support this setting");
+	}
+}
@@ -0,0 +1,77 @@
+package com.apporelbotna.javaee.schedule;
+
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+
+/**
+ * The partition of a sharded job which an execution has to process, so one logical job (i.e a
+ * sweep of a whole table) can run as several tasks in parallel, on different threads or nodes of a
+ * cluster, each one over a disjoint part of the data:<br>
+ * <br>
+ * <code>
+ * manager.addAll(new Task(new SweepJob(), trigger).shard(4));<br>
+ * <br>
+ * // In SweepJob.execute<br>
+ * Shard shard = Shard.of(context);<br>
+ * for (Entity entity : dao.getAll())<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;if (shard.contains(entity.getId()))<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;sweep(entity);<br>
+ * </code><br>
+ * Jobs which are not sharded get {@link #WHOLE}, which contains everything.
+ *
+ * @see Task#shard(int)
+ * @author Jendoliver
+ */
+public final class Shard
+{
+	public static final String INDEX_JOB_DATA_KEY = "jhen.shard.index";
+	public static final String COUNT_JOB_DATA_KEY = "jhen.shard.count";
+
+	public static final Shard WHOLE = new Shard(0, 1);
+
+	private final int index;
+	private final int count;
+
+	public Shard(int index, int count)
+	{
+		if (count <= 0 || index < 0 || index >= count)
+			throw new IllegalArgumentException("Invalid shard " + index + " of " + count);
+		this.index = index;
+		this.count = count;
+	}
+
+	/**
+	 * Returns the shard of the job being executed
+	 */
+	public static Shard of(JobExecutionContext context)
+	{
+		JobDataMap jobData = context.getMergedJobDataMap();
+		if (!jobData.containsKey(COUNT_JOB_DATA_KEY))
+			return WHOLE;
+		return new Shard(jobData.getIntValue(INDEX_JOB_DATA_KEY), jobData.getIntValue(COUNT_JOB_DATA_KEY));
+	}
+
+	public int getIndex()
+	{
+		return index;
+	}
+
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Whether the given id, or hash, belongs to this shard
+	 */
+	public boolean contains(long id)
+	{
+		return Math.floorMod(id, (long)count) == index;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Shard [" + index + " of " + count + "]";
+	}
+}
@@ -1,12 +1,53 @@
 package com.apporelbotna.javaee.schedule;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.quartz.CalendarIntervalTrigger;
+import org.quartz.CronTrigger;
+import org.quartz.DailyTimeIntervalTrigger;
+import org.quartz.JobBuilder;
 import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.SimpleTrigger;
 import org.quartz.Trigger;
+import org.quartz.TriggerKey;
 
+/**
+ * A job and the trigger which fires it.<br>
+ * <br>
+ * Unless the job overrides {@link BaseJob#getJobDetail()}, its key is the key of the trigger, so it
+ * is the same every time the application starts. Persistent job stores rely on it to recognize
+ * the jobs they already have instead of storing them again.<br>
+ * <br>
+ * Its {@link ExecutionPolicy} is the one it is given, or else the one declared with
+ * {@link JobPolicy} on the job class, and it can be split in several {@link Shard}s with
+ * {@link #shard(int)}.<br>
+ * <br>
+ * Its job data holds a {@link #getFingerprint() fingerprint} of its definition, so a TaskManager
+ * starting against a persistent job store can tell the tasks which haven't changed since the last
+ * run and leave them alone.
+ *
+ * @author Jendoliver
+ */
 public class Task
 {
+	public static final String FINGERPRINT_JOB_DATA_KEY = "jhen.fingerprint";
+	
 	private BaseJob job;
 	private Trigger trigger;
+	private ExecutionPolicy executionPolicy;
+	private Shard shard;
+	private JobDetail jobDetail;
 	
 	public Task(BaseJob job, Trigger trigger)
 	{
@@ -14,18 +55,214 @@ public class Task
 		this.trigger = trigger;
 	}
 	
+	/**
+	 * Creates a task which handles overlapping executions as the given policy says, instead of as
+	 * the job class declares
+	 */
+	public Task(BaseJob job, Trigger trigger, ExecutionPolicy executionPolicy)
+	{
+		this(job, trigger);
+		this.executionPolicy = executionPolicy;
+	}
+	
 	public BaseJob getBaseJob()
 	{
 		return job;
 	}
 	
+	/**
+	 * Built once and reused, since managers scheduling thousands of tasks ask for it several times
+	 */
 	public JobDetail getJobDetail()
 	{
-		return job.getJobDetail();
+		if(jobDetail == null)
+			jobDetail = createJobDetail();
+		return jobDetail;
+	}
+	
+	private JobDetail createJobDetail()
+	{
+		JobDetail jobDetail = job.getJobDetail();
+		JobBuilder builder = jobDetail.getJobBuilder();
+		if(!overridesJobDetail())
+		{
+			TriggerKey triggerKey = trigger.getKey();
+			builder.withIdentity(new JobKey(triggerKey.getName(), triggerKey.getGroup()));
+		}
+		else if(shard != null)
+		{
+			// Each shard needs a job of its own
+			JobKey jobKey = jobDetail.getKey();
+			builder.withIdentity(new JobKey(jobKey.getName() + "-" + shard.getIndex(), jobKey.getGroup()));
+		}
+		
+		// Stored as strings, so they fit job stores which only keep properties
+		ExecutionPolicy policy = getExecutionPolicy();
+		if(!policy.isUnlimited())
+			builder.usingJobData(ExecutionPolicy.JOB_DATA_KEY, policy.toString());
+		if(shard != null)
+			builder.usingJobData(Shard.INDEX_JOB_DATA_KEY, String.valueOf(shard.getIndex()))
+					.usingJobData(Shard.COUNT_JOB_DATA_KEY, String.valueOf(shard.getCount()));
+		builder.usingJobData(FINGERPRINT_JOB_DATA_KEY, fingerprint(builder.build(), trigger));
+		return builder.build();
+	}
+	
+	/**
+	 * Hashes everything about the job and the trigger which changes how the task runs. The start
+	 * time of the trigger is left out, since most triggers start now and it would change on every
+	 * run. Job data values are described by their toString, so values which don't override it make
+	 * the task look changed every time, which only costs replacing it.
+	 */
+	private static String fingerprint(JobDetail jobDetail, Trigger trigger)
+	{
+		StringBuilder definition = new StringBuilder()
+				.append(jobDetail.getKey()).append('|')
+				.append(jobDetail.getJobClass().getName()).append('|')
+				.append(jobDetail.isDurable()).append('|')
+				.append(jobDetail.requestsRecovery()).append('|')
+				.append(sorted(jobDetail.getJobDataMap().getWrappedMap())).append('|')
+				.append(trigger.getClass().getName()).append('|');
+		
+		if(trigger instanceof CronTrigger)
+		{
+			CronTrigger cron = (CronTrigger)trigger;
+			definition.append(cron.getCronExpression()).append('|')
+					.append(cron.getTimeZone().getID());
+		}
+		else if(trigger instanceof SimpleTrigger)
+		{
+			SimpleTrigger simple = (SimpleTrigger)trigger;
+			definition.append(simple.getRepeatInterval()).append('|')
+					.append(simple.getRepeatCount());
+		}
+		else if(trigger instanceof CalendarIntervalTrigger)
+		{
+			CalendarIntervalTrigger interval = (CalendarIntervalTrigger)trigger;
+			definition.append(interval.getRepeatInterval()).append('|')
+					.append(interval.getRepeatIntervalUnit()).append('|')
+					.append(interval.getTimeZone().getID()).append('|')
+					.append(interval.isPreserveHourOfDayAcrossDaylightSavings()).append('|')
+					.append(interval.isSkipDayIfHourDoesNotExist());
+		}
+		else if(trigger instanceof DailyTimeIntervalTrigger)
+		{
+			DailyTimeIntervalTrigger daily = (DailyTimeIntervalTrigger)trigger;
+			definition.append(daily.getRepeatInterval()).append('|')
+					.append(daily.getRepeatIntervalUnit()).append('|')
+					.append(new TreeSet<>(daily.getDaysOfWeek())).append('|')
+					.append(daily.getStartTimeOfDay()).append('|')
+					.append(daily.getEndTimeOfDay()).append('|')
+					.append(daily.getRepeatCount());
+		}
+		
+		definition.append('|').append(trigger.getEndTime())
+				.append('|').append(trigger.getCalendarName())
+				.append('|').append(trigger.getPriority())
+				.append('|').append(trigger.getMisfireInstruction())
+				.append('|').append(trigger.getDescription())
+				.append('|').append(sorted(trigger.getJobDataMap().getWrappedMap()));
+		
+		try
+		{
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(definition.toString().getBytes(StandardCharsets.UTF_8));
+			return Base64.getEncoder().encodeToString(hash);
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException("Every JVM has SHA-256", e);
+		}
+	}
+	
+	private static Map<String, Object> sorted(Map<String, Object> jobData)
+	{
+		Map<String, Object> sorted = new TreeMap<>(jobData);
+		sorted.remove(FINGERPRINT_JOB_DATA_KEY);
+		return sorted;
+	}
+	
+	private boolean overridesJobDetail()
+	{
+		try
+		{
+			return !job.getClass().getMethod("getJobDetail").isDefault();
+		}
+		catch (NoSuchMethodException e)
+		{
+			Logger.getGlobal().log(Level.WARNING, "Could not inspect " + job.getClass(), e);
+			return true;
+		}
 	}
 	
 	public Trigger getTrigger()
 	{
 		return trigger;
 	}
+	
+	/**
+	 * Returns a hash of the definition of the job and the trigger of this task, which is the same
+	 * across runs of the application as long as the task doesn't change
+	 */
+	public String getFingerprint()
+	{
+		return getJobDetail().getJobDataMap().getString(FINGERPRINT_JOB_DATA_KEY);
+	}
+	
+	public ExecutionPolicy getExecutionPolicy()
+	{
+		return executionPolicy != null ? executionPolicy : ExecutionPolicy.of(job.getClass());
+	}
+	
+	/**
+	 * Returns the shard of the job this task runs, or null if it isn't sharded
+	 */
+	public Shard getShard()
+	{
+		return shard;
+	}
+	
+	/**
+	 * Splits this task in <code>count</code> tasks, each one running the job over one
+	 * {@link Shard}. They fire at the same times as this one, and their triggers are named after its
+	 * trigger plus the index of their shard (<code>sweep-0</code>, <code>sweep-1</code>...). The
+	 * execution policy applies to each shard on its own.
+	 */
+	public List<Task> shard(int count)
+	{
+		List<Task> shards = new ArrayList<>(count);
+		TriggerKey key = trigger.getKey();
+		for(int i = 0; i < count; i++)
+		{
+			Task task = new Task(job, trigger.getTriggerBuilder()
+					.withIdentity(key.getName() + "-" + i, key.getGroup())
+					.build(), executionPolicy);
+			task.shard = new Shard(i, count);
+			shards.add(task);
+		}
+		return shards;
+	}
+	
+	public TriggerKey getKey()
+	{
+		return trigger.getKey();
+	}
+	
+	/**
+	 * Returns the same task fired by another trigger, which takes over the key of the current one
+	 * so the job keeps being found by it
+	 */
+	public Task withTrigger(Trigger newTrigger)
+	{
+		Task task = new Task(job, newTrigger.getTriggerBuilder()
+				.withIdentity(trigger.getKey())
+				.forJob(getJobDetail().getKey())
+				.build());
+		task.executionPolicy = executionPolicy;
+		task.shard = shard;
+		// The job keeps its key, but not its fingerprint
+		JobDetail jobDetail = getJobDetail();
+		task.jobDetail = jobDetail.getJobBuilder()
+				.usingJobData(FINGERPRINT_JOB_DATA_KEY, fingerprint(jobDetail, task.trigger))
+				.build();
+		return task;
+	}
 }
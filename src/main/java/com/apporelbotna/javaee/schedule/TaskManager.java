@@ -1,21 +1,78 @@
 package com.apporelbotna.javaee.schedule;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.quartz.Calendar;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.ObjectAlreadyExistsException;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
 import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.impl.matchers.GroupMatcher;
 
 import com.apporelbotna.javaee.message.ApplicationMessages;
+import com.apporelbotna.javaee.message.MessageBundle;
 
+/**
+ * Schedules a set of {@link Task}s in a Quartz {@link Scheduler}.<br>
+ * <br>
+ * Tasks can be added, removed, rescheduled and paused by group both before and after
+ * {@link #start()}: before, they only change what will be scheduled, and after, they change the
+ * running scheduler right away, without restarting it or interrupting the jobs which are running.
+ * {@link #addAll(Collection)} schedules many tasks in a single call to the scheduler, which for JDBC
+ * job stores is a single transaction.<br>
+ * <br>
+ * On start, the tasks are scheduled in bulk too, and the ones a persistent job store already has
+ * with the same {@link Task#getFingerprint() fingerprint} are not written again, so restarting an
+ * application with thousands of unchanged tasks only reads them. {@link #startAsync()} does it
+ * without blocking the caller, i.e while a deployment goes on.<br>
+ * <br>
+ * Every method is thread-safe. Tasks are known by the key of their trigger.
+ *
+ * @author Jendoliver
+ */
 public class TaskManager
 {
-	private Scheduler scheduler;
-	private List<Task> tasks;
+	private volatile Scheduler scheduler;
+	private volatile boolean started;
+	private final Map<TriggerKey, Task> tasks = new ConcurrentHashMap<>();
+	private final Set<String> pausedGroups = ConcurrentHashMap.newKeySet();
+	private final Map<String, Calendar> calendars = new ConcurrentHashMap<>();
+	private SchedulerConfiguration configuration;
+	private JobThrottle jobThrottle;
+	private TaskMetrics metrics;
+	private ObjectName metricsName;
+	
+	/**
+	 * Taken for writing by start, and for reading by the operations on tasks, so they
+	 * either run before the scheduler is created or against the running one, never in between
+	 */
+	private final ReadWriteLock lifecycleLock = new ReentrantReadWriteLock();
 	
+	@MessageBundle("exceptionMessages")
 	private static class ExceptionMessages extends ApplicationMessages
 	{		
 		@Override
@@ -34,52 +91,546 @@ public class TaskManager
 	
 	public TaskManager(List<Task> tasks)
 	{
-		this.tasks = tasks;
+		for(Task task : tasks)
+			this.tasks.put(task.getKey(), task);
 		exceptionMessages = new ExceptionMessages();
 	}
 	
+	/**
+	 * Creates a TaskManager whose scheduler is created with the given configuration instead of
+	 * being the default one of Quartz, i.e to persist tasks in a database shared by a cluster
+	 */
+	public TaskManager(SchedulerConfiguration configuration)
+	{
+		this(configuration, new ArrayList<>());
+	}
+	
+	public TaskManager(SchedulerConfiguration configuration, List<Task> tasks)
+	{
+		this(tasks);
+		this.configuration = configuration;
+	}
+	
 	public void start()
 	{
 		try
 		{
-			scheduler = StdSchedulerFactory.getDefaultScheduler();
-			for(Task task : tasks)
-				scheduler.scheduleJob(task.getJobDetail(), task.getTrigger());
+			boot();
+		}
+		catch (SchedulerException e)
+		{
+			Logger.getGlobal().log(Level.SEVERE, exceptionMessages.get(ExceptionMessagesKeys.SCHEDULER_COULD_NOT_START), e);
+		}
+	}
+	
+	/**
+	 * Starts the TaskManager in a thread of its own, returning a future which completes with it
+	 * once the scheduler has started, or exceptionally if it could not. Tasks added, removed or
+	 * paused in the meantime are applied as if they had been before or after the start.
+	 */
+	public CompletableFuture<TaskManager> startAsync()
+	{
+		CompletableFuture<TaskManager> future = new CompletableFuture<>();
+		Thread thread = new Thread(() ->
+		{
+			try
+			{
+				boot();
+				future.complete(this);
+			}
+			catch (SchedulerException | RuntimeException e)
+			{
+				Logger.getGlobal().log(Level.SEVERE, exceptionMessages.get(ExceptionMessagesKeys.SCHEDULER_COULD_NOT_START), e);
+				future.completeExceptionally(e);
+			}
+		}, "TaskManager-start");
+		thread.setDaemon(true);
+		thread.start();
+		return future;
+	}
+	
+	private void boot() throws SchedulerException
+	{
+		Lock lock = lifecycleLock.writeLock();
+		lock.lock();
+		try
+		{
+			scheduler = configuration == null ? StdSchedulerFactory.getDefaultScheduler()
+					: configuration.createScheduler();
+			
+			jobThrottle = new JobThrottle(configuration == null ? Collections.emptyMap()
+					: configuration.getGroupLimits());
+			scheduler.setJobFactory(jobThrottle);
+			scheduler.getListenerManager().addTriggerListener(jobThrottle);
+			
+			metrics = new TaskMetrics();
+			scheduler.getListenerManager().addJobListener(metrics);
+			scheduler.getListenerManager().addTriggerListener(metrics);
+			registerMetrics();
+			
+			for(Map.Entry<String, Calendar> calendar : calendars.entrySet())
+				storeCalendar(calendar.getKey(), calendar.getValue());
+			scheduleAll(tasks.values());
+			for(String group : pausedGroups)
+				scheduler.pauseTriggers(GroupMatcher.triggerGroupEquals(group));
 			
 			scheduler.start();
+			started = true;
 		}
-		catch (SchedulerException e)
+		catch (SchedulerException | RuntimeException e)
+		{
+			abortBoot(e);
+			throw e;
+		}
+		finally
 		{
-			Logger.getGlobal().log(Level.SEVERE, exceptionMessages.get("scheduler.couldNotStart"), e);
+			lock.unlock();
 		}
 	}
 	
-	public void add(Task task)
+	/**
+	 * Shuts down the scheduler of a failed start, which would otherwise keep its threads and
+	 * connection pool alive, and unregisters its metrics
+	 */
+	private void abortBoot(Exception cause)
 	{
-		tasks.add(task);
+		if(scheduler != null)
+		{
+			try
+			{
+				scheduler.shutdown(false);
+			}
+			catch (SchedulerException e)
+			{
+				cause.addSuppressed(e);
+			}
+		}
+		unregisterMetrics();
 	}
 	
-	public void shutdown()
+	/**
+	 * Publishes the metrics through JMX, which is only worth a warning if it fails, i.e because
+	 * another TaskManager uses the same scheduler
+	 */
+	private void registerMetrics() throws SchedulerException
+	{
+		try
+		{
+			metricsName = new ObjectName(TaskMetricsMXBean.class.getPackage().getName() + ":type=TaskManager,name="
+					+ ObjectName.quote(scheduler.getSchedulerName()) + ",instance="
+					+ ObjectName.quote(scheduler.getSchedulerInstanceId()));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, metricsName);
+		}
+		catch (JMException e)
+		{
+			Logger.getGlobal().log(Level.WARNING, "Could not register the metrics of " + scheduler.getSchedulerName(), e);
+			metricsName = null;
+		}
+	}
+	
+	/**
+	 * Schedules the tasks with a single call to the scheduler for the new ones and another one for
+	 * the changed ones, which for JDBC job stores are a transaction each, instead of one per task.
+	 * Tasks already stored with the same fingerprint, from a previous run or from another node of
+	 * the cluster, are left as they are: replacing a trigger which another node may be firing would
+	 * make both nodes fire it.
+	 */
+	private void scheduleAll(Collection<Task> tasks) throws SchedulerException
+	{
+		Set<TriggerKey> stored = scheduler.getTriggerKeys(GroupMatcher.anyTriggerGroup());
+		Map<JobDetail, Set<? extends Trigger>> added = new LinkedHashMap<>();
+		Map<JobDetail, Set<? extends Trigger>> changed = new LinkedHashMap<>();
+		List<Task> addedTasks = new ArrayList<>();
+		for(Task task : tasks)
+		{
+			if(!stored.contains(task.getKey()))
+			{
+				added.put(task.getJobDetail(), Collections.singleton(task.getTrigger()));
+				addedTasks.add(task);
+			}
+			else if(!isStored(task))
+				changed.put(task.getJobDetail(), Collections.singleton(task.getTrigger()));
+		}
+		
+		if(!changed.isEmpty())
+			scheduler.scheduleJobs(changed, true);
+		if(added.isEmpty())
+			return;
+		
+		try
+		{
+			scheduler.scheduleJobs(added, false);
+		}
+		catch (ObjectAlreadyExistsException e)
+		{
+			// Another node of the cluster scheduled some of them in the meantime
+			for(Task task : addedTasks)
+				schedule(task);
+		}
+	}
+	
+	/**
+	 * Schedules the task unless it is already stored with the same fingerprint, replacing it if it
+	 * has changed
+	 */
+	private void schedule(Task task) throws SchedulerException
+	{
+		if(scheduler.checkExists(task.getKey()))
+		{
+			if(!isStored(task))
+				scheduler.scheduleJob(task.getJobDetail(), Collections.singleton(task.getTrigger()), true);
+			return;
+		}
+		
+		try
+		{
+			scheduler.scheduleJob(task.getJobDetail(), Collections.singleton(task.getTrigger()), false);
+		}
+		catch (ObjectAlreadyExistsException e)
+		{
+			// Another node of the cluster scheduled it in the meantime
+			schedule(task);
+		}
+	}
+	
+	/**
+	 * Whether the job store has the job of the task with its current fingerprint. Jobs stored
+	 * before fingerprints existed don't have one, so they are replaced once.
+	 */
+	private boolean isStored(Task task) throws SchedulerException
+	{
+		JobDetail stored = scheduler.getJobDetail(task.getJobDetail().getKey());
+		return stored != null
+				&& task.getFingerprint().equals(stored.getJobDataMap().getString(Task.FINGERPRINT_JOB_DATA_KEY));
+	}
+	
+	/**
+	 * Persistent job stores may already have the calendar, which is only replaced if it isn't
+	 * equal to the stored one, since replacing it updates every trigger modified by it
+	 */
+	private void storeCalendar(String name, Calendar calendar) throws SchedulerException
+	{
+		if(!calendar.equals(scheduler.getCalendar(name)))
+			scheduler.addCalendar(name, calendar, true, true);
+	}
+	
+	public Scheduler getScheduler()
+	{
+		return scheduler;
+	}
+	
+	/**
+	 * Returns the statistics of the jobs run by this TaskManager. Null until it is started.
+	 */
+	public TaskMetrics getMetrics()
+	{
+		return metrics;
+	}
+	
+	/**
+	 * Returns the per-group limits of the running jobs, along with how many are waiting for them
+	 * and how many triggers have misfired. Null until the TaskManager is started.
+	 */
+	public JobThrottle getJobThrottle()
+	{
+		return jobThrottle;
+	}
+	
+	/**
+	 * Whether the scheduler has started, which for {@link #startAsync()} happens some time after
+	 * it returns
+	 */
+	public boolean isStarted()
+	{
+		return started;
+	}
+	
+	/**
+	 * Returns the tasks of this TaskManager, not including the ones other nodes of a cluster have
+	 * scheduled
+	 */
+	public Collection<Task> getTasks()
+	{
+		return Collections.unmodifiableCollection(tasks.values());
+	}
+	
+	public Task getTask(TriggerKey key)
+	{
+		return tasks.get(key);
+	}
+	
+	/**
+	 * Adds the task, scheduling it right away if the TaskManager has already started. A task with
+	 * the same trigger key is replaced.
+	 */
+	public void add(Task task)
 	{
+		Lock lock = lifecycleLock.readLock();
+		lock.lock();
 		try
 		{
-			scheduler.shutdown(true);
+			Task previous = tasks.put(task.getKey(), task);
+			if(!isStarted())
+				return;
+			
+			if(previous != null)
+				scheduler.scheduleJob(task.getJobDetail(), Collections.singleton(task.getTrigger()), true);
+			else
+				schedule(task);
 		}
 		catch (SchedulerException e)
 		{
-			Logger.getGlobal().log(Level.SEVERE, exceptionMessages.get("scheduler.couldNotStop"), e);
+			Logger.getGlobal().log(Level.SEVERE, exceptionMessages.get(ExceptionMessagesKeys.SCHEDULER_COULD_NOT_SCHEDULE, task.getKey()), e);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Adds all the tasks, scheduling them with a single call to the scheduler if the TaskManager
+	 * has already started. Tasks with the same trigger key as existing ones replace them.
+	 *
+	 * @throws SchedulerException if the tasks could not be scheduled, in which case none of them
+	 *             is, at least in JDBC job stores
+	 */
+	public void addAll(Collection<Task> newTasks) throws SchedulerException
+	{
+		Lock lock = lifecycleLock.readLock();
+		lock.lock();
+		try
+		{
+			Map<JobDetail, Set<? extends Trigger>> jobs = new LinkedHashMap<>();
+			boolean replace = false;
+			for(Task task : newTasks)
+			{
+				replace |= tasks.put(task.getKey(), task) != null;
+				jobs.put(task.getJobDetail(), Collections.singleton(task.getTrigger()));
+			}
+			if(!isStarted() || jobs.isEmpty())
+				return;
+			
+			try
+			{
+				scheduler.scheduleJobs(jobs, replace);
+			}
+			catch (ObjectAlreadyExistsException e)
+			{
+				// Some of them were already in a persistent job store, they are kept as stored
+				for(Task task : newTasks)
+					schedule(task);
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Adds a calendar which triggers can be modified by to exclude some times, i.e a
+	 * {@link DateIntervalCalendar} with blackout windows, storing it in the scheduler right away if
+	 * the TaskManager has already started. A calendar with the same name is replaced, and the
+	 * triggers modified by it are updated.
+	 *
+	 * @see TriggerFactory.Builder#excluding(String)
+	 */
+	public void addCalendar(String name, Calendar calendar) throws SchedulerException
+	{
+		Lock lock = lifecycleLock.readLock();
+		lock.lock();
+		try
+		{
+			calendars.put(name, calendar);
+			if(isStarted())
+				storeCalendar(name, calendar);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	public Map<String, Calendar> getCalendars()
+	{
+		return Collections.unmodifiableMap(calendars);
+	}
+	
+	/**
+	 * Removes the task with the given trigger key, and its job, from the TaskManager and from the
+	 * scheduler. If it is running, it is not interrupted.
+	 *
+	 * @return whether there was such task
+	 */
+	public boolean remove(TriggerKey key) throws SchedulerException
+	{
+		return removeAll(Collections.singleton(key)) > 0;
+	}
+	
+	/**
+	 * Removes the tasks with the given trigger keys, and their jobs, with a single call to the
+	 * scheduler
+	 *
+	 * @return how many of them there were
+	 */
+	public int removeAll(Collection<TriggerKey> keys) throws SchedulerException
+	{
+		Lock lock = lifecycleLock.readLock();
+		lock.lock();
+		try
+		{
+			List<TriggerKey> removed = new ArrayList<>();
+			for(TriggerKey key : keys)
+			{
+				Task task = tasks.remove(key);
+				if(task == null)
+					continue;
+				
+				removed.add(key);
+				if(metrics != null)
+					metrics.forget(key, task.getJobDetail().getKey());
+				if(jobThrottle != null)
+					jobThrottle.forget(task.getJobDetail().getKey());
+			}
+			if(removed.isEmpty() || !isStarted())
+				return removed.size();
+			
+			scheduler.unscheduleJobs(removed);
+			return removed.size();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Fires the task with the given trigger key with a new trigger from now on. The new trigger
+	 * takes over the key of the current one.
+	 *
+	 * @return whether there was such task
+	 */
+	public boolean reschedule(TriggerKey key, Trigger newTrigger) throws SchedulerException
+	{
+		return rescheduleAll(Collections.singletonMap(key, newTrigger)) > 0;
+	}
+	
+	/**
+	 * Fires each task with the trigger given for its key from now on
+	 *
+	 * @return how many of them there were
+	 */
+	public int rescheduleAll(Map<TriggerKey, ? extends Trigger> newTriggers) throws SchedulerException
+	{
+		Lock lock = lifecycleLock.readLock();
+		lock.lock();
+		try
+		{
+			Map<JobDetail, Set<? extends Trigger>> jobs = new HashMap<>();
+			for(Map.Entry<TriggerKey, ? extends Trigger> entry : newTriggers.entrySet())
+			{
+				Task task = tasks.computeIfPresent(entry.getKey(), (key, current) -> current.withTrigger(entry.getValue()));
+				if(task != null)
+					jobs.put(task.getJobDetail(), Collections.singleton(task.getTrigger()));
+			}
+			if(isStarted() && !jobs.isEmpty())
+				scheduler.scheduleJobs(jobs, true);
+			return jobs.size();
+		}
+		finally
+		{
+			lock.unlock();
 		}
 	}
 	
+	/**
+	 * Stops firing the tasks of the given trigger group until {@link #resumeGroup(String)} is
+	 * called. Running jobs are not interrupted.
+	 */
+	public void pauseGroup(String group) throws SchedulerException
+	{
+		Lock lock = lifecycleLock.readLock();
+		lock.lock();
+		try
+		{
+			pausedGroups.add(group);
+			if(isStarted())
+				scheduler.pauseTriggers(GroupMatcher.triggerGroupEquals(group));
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Fires the tasks of the given trigger group again, applying the misfire instruction of the
+	 * triggers which should have fired in the meantime
+	 */
+	public void resumeGroup(String group) throws SchedulerException
+	{
+		Lock lock = lifecycleLock.readLock();
+		lock.lock();
+		try
+		{
+			pausedGroups.remove(group);
+			if(isStarted())
+				scheduler.resumeTriggers(GroupMatcher.triggerGroupEquals(group));
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	public Set<String> getPausedGroups()
+	{
+		return Collections.unmodifiableSet(new HashSet<>(pausedGroups));
+	}
+	
+	public void shutdown()
+	{
+		shutdown(true);
+	}
+	
 	public void forceShutdown()
+	{
+		shutdown(false);
+	}
+	
+	private void unregisterMetrics()
+	{
+		if(metricsName == null)
+			return;
+		
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if(server.isRegistered(metricsName))
+				server.unregisterMBean(metricsName);
+		}
+		catch (JMException e)
+		{
+			Logger.getGlobal().log(Level.WARNING, "Could not unregister " + metricsName, e);
+		}
+		metricsName = null;
+	}
+	
+	/**
+	 * Not guarded by the lifecycle lock, since running jobs may be operating on tasks while the
+	 * scheduler waits for them to complete
+	 */
+	private void shutdown(boolean waitForJobsToComplete)
 	{
 		try
 		{
-			scheduler.shutdown();
+			scheduler.shutdown(waitForJobsToComplete);
+			unregisterMetrics();
 		}
 		catch (SchedulerException e)
 		{
-			Logger.getGlobal().log(Level.SEVERE, exceptionMessages.get("scheduler.couldNotStop"), e);
+			Logger.getGlobal().log(Level.SEVERE, exceptionMessages.get(ExceptionMessagesKeys.SCHEDULER_COULD_NOT_STOP), e);
 		}
 	}
 }
@@ -0,0 +1,324 @@
+package com.apporelbotna.javaee.schedule;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.JobListener;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerKey;
+import org.quartz.TriggerListener;
+
+/**
+ * Records how the jobs of a {@link TaskManager} run: per job, how many runs finished, failed,
+ * were vetoed or were skipped by its {@link ExecutionPolicy}, how many are running at once and how
+ * long they took; and per trigger, how many times it fired or misfired and how late its job
+ * started compared to its scheduled fire time.<br>
+ * <br>
+ * It is registered as a job and trigger listener of the scheduler, and recording only updates
+ * atomic counters and {@link LatencyHistogram}s, so it never blocks the jobs being measured. The
+ * statistics can be pulled with {@link #getJobStatistics()} and the like, or through JMX (see
+ * {@link TaskMetricsMXBean}).<br>
+ * <br>
+ * In a cluster, the statistics are the ones of the jobs run by this node only.
+ *
+ * @author Jendoliver
+ */
+public class TaskMetrics implements JobListener, TriggerListener, TaskMetricsMXBean
+{
+	public static final String LISTENER_NAME = "JhenTaskMetrics";
+
+	private static final String EXECUTION = TaskMetrics.class.getName() + ".execution";
+
+	/**
+	 * Kept in the context of a job about to run, so it is finished in the recorders it was started
+	 * in even if they are reset in the meantime. Throttled executions only start once they went
+	 * through their policy and group limit, so neither the wait nor the skipped ones are measured.
+	 */
+	private static final class Execution implements JobThrottle.ExecutionListener
+	{
+		private final JobRecorder total;
+		private final JobRecorder job;
+		private boolean started;
+		private boolean stopped;
+		private long startNanos;
+		private long nanos;
+
+		private Execution(JobRecorder total, JobRecorder job)
+		{
+			this.total = total;
+			this.job = job;
+		}
+
+		@Override
+		public void started()
+		{
+			started = true;
+			startNanos = System.nanoTime();
+			total.started();
+			job.started();
+		}
+
+		@Override
+		public void stopped()
+		{
+			stopped = true;
+			nanos = System.nanoTime() - startNanos;
+			total.stopped();
+			job.stopped();
+		}
+
+		private void skipped()
+		{
+			total.skips.increment();
+			job.skips.increment();
+		}
+
+		private void finished(boolean failed)
+		{
+			if (!started)
+			{
+				// Interrupted while waiting for its turn
+				total.abandoned();
+				job.abandoned();
+				return;
+			}
+
+			if (!stopped)
+				stopped();
+			total.finished(nanos, failed);
+			job.finished(nanos, failed);
+		}
+	}
+
+	private static final class JobRecorder
+	{
+		private final LongAdder runs = new LongAdder();
+		private final LongAdder failures = new LongAdder();
+		private final LongAdder vetoes = new LongAdder();
+		private final LongAdder skips = new LongAdder();
+		private final AtomicInteger running = new AtomicInteger();
+		private final AtomicInteger maxRunning = new AtomicInteger();
+		private final LatencyHistogram duration = new LatencyHistogram();
+
+		private void started()
+		{
+			int now = running.incrementAndGet();
+			int max = maxRunning.get();
+			while (now > max && !maxRunning.compareAndSet(max, now))
+				max = maxRunning.get();
+		}
+
+		private void abandoned()
+		{
+			runs.increment();
+			failures.increment();
+		}
+
+		private void stopped()
+		{
+			running.decrementAndGet();
+		}
+
+		private void finished(long nanos, boolean failed)
+		{
+			runs.increment();
+			if (failed)
+				failures.increment();
+			duration.record(nanos);
+		}
+
+		private JobStatistics statistics()
+		{
+			return new JobStatistics(runs.sum(), failures.sum(), vetoes.sum(), skips.sum(), running.get(), maxRunning.get(),
+					duration.snapshot());
+		}
+	}
+
+	private static final class TriggerRecorder
+	{
+		private final LongAdder fires = new LongAdder();
+		private final LongAdder misfires = new LongAdder();
+		private final LatencyHistogram lag = new LatencyHistogram();
+
+		private void fired(long lagMillis)
+		{
+			fires.increment();
+			lag.record(TimeUnit.MILLISECONDS.toNanos(lagMillis));
+		}
+
+		private TriggerStatistics statistics()
+		{
+			return new TriggerStatistics(fires.sum(), misfires.sum(), lag.snapshot());
+		}
+	}
+
+	private volatile JobRecorder jobTotals = new JobRecorder();
+	private volatile TriggerRecorder triggerTotals = new TriggerRecorder();
+	private final ConcurrentMap<JobKey, JobRecorder> jobs = new ConcurrentHashMap<>();
+	private final ConcurrentMap<TriggerKey, TriggerRecorder> triggers = new ConcurrentHashMap<>();
+
+	@Override
+	public String getName()
+	{
+		return LISTENER_NAME;
+	}
+
+	@Override
+	public void jobToBeExecuted(JobExecutionContext context)
+	{
+		Execution execution = new Execution(jobTotals, jobOf(context));
+		context.put(EXECUTION, execution);
+		if (JobThrottle.isThrottled(context))
+			context.put(JobThrottle.EXECUTION_LISTENER, execution);
+		else
+			execution.started();
+
+		long lagMillis = System.currentTimeMillis() - context.getScheduledFireTime().getTime();
+		triggerTotals.fired(lagMillis);
+		triggerOf(context.getTrigger().getKey()).fired(lagMillis);
+	}
+
+	@Override
+	public void jobWasExecuted(JobExecutionContext context, JobExecutionException jobException)
+	{
+		Object execution = context.get(EXECUTION);
+		if (!(execution instanceof Execution))
+			return;
+
+		if (Boolean.TRUE.equals(context.get(JobThrottle.SKIPPED)))
+			((Execution)execution).skipped();
+		else
+			((Execution)execution).finished(jobException != null);
+	}
+
+	@Override
+	public void jobExecutionVetoed(JobExecutionContext context)
+	{
+		jobTotals.vetoes.increment();
+		jobOf(context).vetoes.increment();
+	}
+
+	@Override
+	public void triggerMisfired(Trigger trigger)
+	{
+		triggerTotals.misfires.increment();
+		triggerOf(trigger.getKey()).misfires.increment();
+	}
+
+	@Override
+	public void triggerFired(Trigger trigger, JobExecutionContext context)
+	{
+		// Recorded once the job is about to run, so the lag includes the wait for a thread
+	}
+
+	@Override
+	public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context)
+	{
+		return false;
+	}
+
+	@Override
+	public void triggerComplete(Trigger trigger, JobExecutionContext context,
+			CompletedExecutionInstruction triggerInstructionCode)
+	{
+		// Recorded by jobWasExecuted
+	}
+
+	private JobRecorder jobOf(JobExecutionContext context)
+	{
+		JobKey key = context.getJobDetail().getKey();
+		JobRecorder recorder = jobs.get(key);
+		return recorder != null ? recorder : jobs.computeIfAbsent(key, k -> new JobRecorder());
+	}
+
+	private TriggerRecorder triggerOf(TriggerKey key)
+	{
+		TriggerRecorder recorder = triggers.get(key);
+		return recorder != null ? recorder : triggers.computeIfAbsent(key, k -> new TriggerRecorder());
+	}
+
+	@Override
+	public JobStatistics getJobTotals()
+	{
+		return jobTotals.statistics();
+	}
+
+	@Override
+	public TriggerStatistics getTriggerTotals()
+	{
+		return triggerTotals.statistics();
+	}
+
+	public JobStatistics getJobStatistics(JobKey key)
+	{
+		JobRecorder recorder = jobs.get(key);
+		return recorder == null ? null : recorder.statistics();
+	}
+
+	public TriggerStatistics getTriggerStatistics(TriggerKey key)
+	{
+		TriggerRecorder recorder = triggers.get(key);
+		return recorder == null ? null : recorder.statistics();
+	}
+
+	public Map<JobKey, JobStatistics> getJobStatistics()
+	{
+		Map<JobKey, JobStatistics> statistics = new HashMap<>();
+		jobs.forEach((key, recorder) -> statistics.put(key, recorder.statistics()));
+		return statistics;
+	}
+
+	public Map<TriggerKey, TriggerStatistics> getTriggerStatistics()
+	{
+		Map<TriggerKey, TriggerStatistics> statistics = new HashMap<>();
+		triggers.forEach((key, recorder) -> statistics.put(key, recorder.statistics()));
+		return statistics;
+	}
+
+	@Override
+	public Map<String, JobStatistics> getJobs()
+	{
+		Map<String, JobStatistics> statistics = new HashMap<>();
+		jobs.forEach((key, recorder) -> statistics.put(key.toString(), recorder.statistics()));
+		return statistics;
+	}
+
+	@Override
+	public Map<String, TriggerStatistics> getTriggers()
+	{
+		Map<String, TriggerStatistics> statistics = new HashMap<>();
+		triggers.forEach((key, recorder) -> statistics.put(key.toString(), recorder.statistics()));
+		return statistics;
+	}
+
+	/**
+	 * Forgets the statistics of a task which is not scheduled anymore
+	 */
+	public void forget(TriggerKey triggerKey, JobKey jobKey)
+	{
+		triggers.remove(triggerKey);
+		jobs.remove(jobKey);
+	}
+
+	/**
+	 * Starts counting from zero again. The jobs running right now are only counted in the
+	 * statistics they started in.
+	 */
+	@Override
+	public void reset()
+	{
+		jobTotals = new JobRecorder();
+		triggerTotals = new TriggerRecorder();
+		jobs.clear();
+		triggers.clear();
+	}
+}
@@ -0,0 +1,29 @@
+package com.apporelbotna.javaee.schedule;
+
+import java.util.Map;
+
+/**
+ * The {@link TaskMetrics} of a {@link TaskManager}, as registered in the platform MBean server
+ * under <code>com.apporelbotna.javaee.schedule:type=TaskManager,name=&lt;scheduler
+ * name&gt;,instance=&lt;instance id&gt;</code>
+ *
+ * @author Jendoliver
+ */
+public interface TaskMetricsMXBean
+{
+	JobStatistics getJobTotals();
+
+	TriggerStatistics getTriggerTotals();
+
+	/**
+	 * The statistics of every job, by job key
+	 */
+	Map<String, JobStatistics> getJobs();
+
+	/**
+	 * The statistics of every trigger, by trigger key
+	 */
+	Map<String, TriggerStatistics> getTriggers();
+
+	void reset();
+}
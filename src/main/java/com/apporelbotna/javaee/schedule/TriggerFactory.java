@@ -1,27 +1,369 @@
 package com.apporelbotna.javaee.schedule;
 
+import java.text.ParseException;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.quartz.CalendarIntervalScheduleBuilder;
+import org.quartz.CronExpression;
 import org.quartz.CronScheduleBuilder;
+import org.quartz.DateBuilder.IntervalUnit;
+import org.quartz.SimpleScheduleBuilder;
 import org.quartz.Trigger;
 import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
 
-import java.text.MessageFormat;
-
+/**
+ * Creates the triggers of {@link Task}s.<br>
+ * <br>
+ * Cron expressions are parsed once per expression and time zone and shared by every trigger
+ * using them, so creating thousands of triggers with the same expressions doesn't parse them
+ * thousands of times. The cached expressions must not be changed, i.e by setting the time zone of
+ * their triggers afterwards.<br>
+ * <br>
+ * The typed schedules ({@link #fixedRate(Duration)}, {@link #everyMinutes(int)},
+ * {@link #daily(int, int)}, {@link #weekly(DayOfWeek, int, int)} and
+ * {@link #monthly(int, int, int)}) don't go through cron expressions at all, and can be spread in
+ * time with {@link Builder#withJitter(Duration)} and kept out of blackout windows with
+ * {@link Builder#excluding(String)}:<br>
+ * <br>
+ * <code>
+ * manager.addCalendar("maintenance", new DateIntervalCalendar(maintenanceWindows, zone));<br>
+ * for (Tenant tenant : tenants)<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;manager.add(new Task(new ReportJob(), TriggerFactory.daily(3, 0)<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;.named("report-" + tenant.getId())<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;.withJitter(Duration.ofMinutes(15))<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;.excluding("maintenance")<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;.build()));<br>
+ * </code>
+ *
+ * @author Jendoliver
+ */
 public class TriggerFactory
 {
-	private static final String DAILY_CRON_EXP = "0 {0} {1} 1/1 * ? *";
+	/**
+	 * Past this many, new expressions are parsed without being cached, so expressions generated
+	 * on the fly can't make the cache grow forever
+	 */
+	private static final int MAX_CACHED_CRON_EXPRESSIONS = 1 << 14;
+	
+	private static final ConcurrentMap<String, CronExpression> CRON_EXPRESSIONS = new ConcurrentHashMap<>();
 	
 	public static Trigger createScheduledTrigger(String name, String cronExpression)
+	{
+		return createScheduledTrigger(name, cronExpression, TimeZone.getDefault());
+	}
+	
+	public static Trigger createScheduledTrigger(String name, String cronExpression, TimeZone timeZone)
 	{
 		return TriggerBuilder.newTrigger()
 				.withIdentity(name)
-				.withSchedule(CronScheduleBuilder.cronSchedule(cronExpression))
+				.withSchedule(CronScheduleBuilder.cronSchedule(getCronExpression(cronExpression, timeZone)))
 				.startNow()
 				.build();
 	}
 	
 	public static Trigger createDailyTrigger(String name, int atHour, int atMinute)
 	{
-		return createScheduledTrigger(name, MessageFormat.format(DAILY_CRON_EXP, atMinute, atHour));
+		return createScheduledTrigger(name, "0 " + atMinute + " " + atHour + " 1/1 * ? *");
+	}
+	
+	/**
+	 * Returns the parsed expression, from the cache if it has been parsed before for the same
+	 * time zone
+	 *
+	 * @throws IllegalArgumentException if the expression is not valid
+	 */
+	private static CronExpression getCronExpression(String cronExpression, TimeZone timeZone)
+	{
+		String key = timeZone.getID() + " " + cronExpression;
+		CronExpression cached = CRON_EXPRESSIONS.get(key);
+		if(cached != null)
+			return cached;
+		
+		CronExpression parsed = parse(cronExpression, timeZone);
+		if(CRON_EXPRESSIONS.size() >= MAX_CACHED_CRON_EXPRESSIONS)
+			return parsed;
+		cached = CRON_EXPRESSIONS.putIfAbsent(key, parsed);
+		return cached != null ? cached : parsed;
+	}
+	
+	private static CronExpression parse(String cronExpression, TimeZone timeZone)
+	{
+		try
+		{
+			CronExpression parsed = new CronExpression(cronExpression);
+			parsed.setTimeZone(timeZone);
+			return parsed;
+		}
+		catch (ParseException e)
+		{
+			throw new IllegalArgumentException("Invalid cron expression: " + cronExpression, e);
+		}
+	}
+	
+	/**
+	 * Fires at the given period from now on. Jitter delays the first fire, and so every other.
+	 */
+	public static Builder fixedRate(Duration period)
+	{
+		if(period.isZero() || period.isNegative())
+			throw new IllegalArgumentException("The period must be positive: " + period);
+		Builder builder = new Builder(Schedule.FIXED_RATE);
+		builder.period = period;
+		return builder;
+	}
+	
+	/**
+	 * Fires every given minutes, counting from the midnight of the day it is built on, which is the
+	 * same as the cron expression <code>0 0/minutes * * * ?</code> when the minutes divide a day.
+	 * Jitter moves every fire by the same amount, less than the given minutes.
+	 */
+	public static Builder everyMinutes(int minutes)
+	{
+		if(minutes <= 0 || minutes > 24 * 60)
+			throw new IllegalArgumentException("Invalid minutes: " + minutes);
+		Builder builder = new Builder(Schedule.EVERY_MINUTES);
+		builder.minutes = minutes;
+		return builder;
+	}
+	
+	public static Builder daily(int atHour, int atMinute)
+	{
+		return new Builder(Schedule.DAILY).at(atHour, atMinute);
+	}
+	
+	public static Builder weekly(DayOfWeek dayOfWeek, int atHour, int atMinute)
+	{
+		Builder builder = new Builder(Schedule.WEEKLY).at(atHour, atMinute);
+		builder.dayOfWeek = dayOfWeek;
+		return builder;
+	}
+	
+	/**
+	 * Fires on the given day of every month, which can't be past the 28th so it exists in every
+	 * month
+	 */
+	public static Builder monthly(int dayOfMonth, int atHour, int atMinute)
+	{
+		if(dayOfMonth < 1 || dayOfMonth > 28)
+			throw new IllegalArgumentException("The day of the month must be between 1 and 28: " + dayOfMonth);
+		Builder builder = new Builder(Schedule.MONTHLY).at(atHour, atMinute);
+		builder.dayOfMonth = dayOfMonth;
+		return builder;
+	}
+	
+	/**
+	 * Fires as the given cron expression says, parsed through the cache. Cron triggers can't have
+	 * jitter.
+	 */
+	public static Builder cron(String cronExpression)
+	{
+		Builder builder = new Builder(Schedule.CRON);
+		builder.cronExpression = cronExpression;
+		return builder;
+	}
+	
+	private enum Schedule
+	{
+		CRON, FIXED_RATE, EVERY_MINUTES, DAILY, WEEKLY, MONTHLY
+	}
+	
+	/**
+	 * Builds a trigger with one of the schedules of the TriggerFactory
+	 */
+	public static final class Builder
+	{
+		private final Schedule schedule;
+		private TriggerKey key;
+		private ZoneId zone = ZoneId.systemDefault();
+		private Duration maxJitter = Duration.ZERO;
+		private String calendarName;
+		
+		private String cronExpression;
+		private Duration period;
+		private int minutes;
+		private int secondOfDay;
+		private DayOfWeek dayOfWeek;
+		private int dayOfMonth;
+		
+		private Builder(Schedule schedule)
+		{
+			this.schedule = schedule;
+		}
+		
+		private Builder at(int hour, int minute)
+		{
+			if(hour < 0 || hour > 23 || minute < 0 || minute > 59)
+				throw new IllegalArgumentException("Invalid time of day: " + hour + ":" + minute);
+			secondOfDay = hour * 3600 + minute * 60;
+			return this;
+		}
+		
+		public Builder named(String name)
+		{
+			key = new TriggerKey(name);
+			return this;
+		}
+		
+		public Builder named(String name, String group)
+		{
+			key = new TriggerKey(name, group);
+			return this;
+		}
+		
+		/**
+		 * The time zone of the hours of the schedule, the one of the system by default
+		 */
+		public Builder inTimeZone(ZoneId zone)
+		{
+			this.zone = zone;
+			return this;
+		}
+		
+		/**
+		 * Moves every fire of the trigger by an amount of time between zero and the given one,
+		 * which depends on the key of the trigger only. Triggers with the same schedule but
+		 * different keys, i.e one per tenant, are spread over the given time instead of all firing
+		 * at once. The schedules anchored to the clock or the calendar keep firing at the same
+		 * times across restarts, but a {@link TriggerFactory#fixedRate(Duration) fixed rate} one
+		 * starts counting when it is built, so only its delay from that moment is kept.
+		 */
+		public Builder withJitter(Duration maxJitter)
+		{
+			if(maxJitter.isNegative())
+				throw new IllegalArgumentException("The jitter can't be negative: " + maxJitter);
+			this.maxJitter = maxJitter;
+			return this;
+		}
+		
+		/**
+		 * Keeps the trigger from firing at the times excluded by the calendar with the given name,
+		 * which has to be added to the TaskManager, i.e a {@link DateIntervalCalendar} with
+		 * blackout windows. Fires falling in them are skipped, not delayed.
+		 *
+		 * @see TaskManager#addCalendar(String, org.quartz.Calendar)
+		 */
+		public Builder excluding(String calendarName)
+		{
+			this.calendarName = calendarName;
+			return this;
+		}
+		
+		public Trigger build()
+		{
+			if(key == null)
+				throw new IllegalStateException("The trigger has no name");
+			
+			long jitter = jitterMillis();
+			TriggerBuilder<Trigger> builder = TriggerBuilder.newTrigger()
+					.withIdentity(key)
+					.modifiedByCalendar(calendarName);
+			TimeZone timeZone = TimeZone.getTimeZone(zone);
+			
+			switch(schedule)
+			{
+				case CRON:
+					if(jitter > 0)
+						throw new IllegalStateException("Cron triggers can't have jitter, use a typed schedule instead");
+					return builder.withSchedule(CronScheduleBuilder.cronSchedule(getCronExpression(cronExpression, timeZone)))
+							.startNow()
+							.build();
+				
+				case FIXED_RATE:
+					return builder.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+							.withIntervalInMilliseconds(period.toMillis())
+							.repeatForever())
+							.startAt(new Date(System.currentTimeMillis() + jitter))
+							.build();
+				
+				case EVERY_MINUTES:
+					long interval = TimeUnit.MINUTES.toMillis(minutes);
+					return builder.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+							.withIntervalInMilliseconds(interval)
+							.repeatForever())
+							.startAt(new Date(nextMultipleSinceMidnight(interval, jitter % interval)))
+							.build();
+				
+				default:
+					return builder.withSchedule(CalendarIntervalScheduleBuilder.calendarIntervalSchedule()
+							.withInterval(1, schedule == Schedule.DAILY ? IntervalUnit.DAY
+									: schedule == Schedule.WEEKLY ? IntervalUnit.WEEK : IntervalUnit.MONTH)
+							.inTimeZone(timeZone)
+							.preserveHourOfDayAcrossDaylightSavings(true))
+							.startAt(firstFire(jitter))
+							.build();
+			}
+		}
+		
+		/**
+		 * Spreads the hash of the key with the finalizer of MurmurHash3, so similar keys (i.e
+		 * tenant-1 and tenant-2) get unrelated jitters
+		 */
+		private long jitterMillis()
+		{
+			long max = maxJitter.toMillis();
+			if(max == 0)
+				return 0;
+			
+			long hash = key.hashCode();
+			hash ^= hash >>> 33;
+			hash *= 0xff51afd7ed558ccdL;
+			hash ^= hash >>> 33;
+			hash *= 0xc4ceb9fe1a85ec53L;
+			hash ^= hash >>> 33;
+			return Math.floorMod(hash, max);
+		}
+		
+		/**
+		 * The first time from now on which is a whole number of intervals, plus the offset, after
+		 * midnight
+		 */
+		private long nextMultipleSinceMidnight(long interval, long offset)
+		{
+			long now = System.currentTimeMillis();
+			long midnight = LocalDate.now(zone).atStartOfDay(zone).toInstant().toEpochMilli() + offset;
+			return midnight + Math.floorDiv(now - midnight + interval - 1, interval) * interval;
+		}
+		
+		/**
+		 * The first fire of a daily, weekly or monthly schedule from now on, which the following
+		 * ones are a whole number of days, weeks or months after, at the same time of the day
+		 */
+		private Date firstFire(long jitter)
+		{
+			ZonedDateTime now = ZonedDateTime.now(zone);
+			LocalDate day = now.toLocalDate();
+			if(schedule == Schedule.WEEKLY)
+				day = day.with(TemporalAdjusters.previousOrSame(dayOfWeek));
+			else if(schedule == Schedule.MONTHLY)
+				day = day.withDayOfMonth(dayOfMonth);
+			
+			ZonedDateTime fire = fireOn(day, jitter);
+			while(fire.isBefore(now))
+			{
+				day = schedule == Schedule.DAILY ? day.plusDays(1) : schedule == Schedule.WEEKLY ? day.plusWeeks(1)
+						: day.plusMonths(1);
+				fire = fireOn(day, jitter);
+			}
+			return Date.from(fire.toInstant());
+		}
+		
+		private ZonedDateTime fireOn(LocalDate day, long jitter)
+		{
+			return day.atTime(LocalTime.ofSecondOfDay(secondOfDay)).atZone(zone).plus(jitter, ChronoUnit.MILLIS);
+		}
 	}
 	
 	private TriggerFactory()
@@ -0,0 +1,51 @@
+package com.apporelbotna.javaee.schedule;
+
+/**
+ * Point-in-time statistics of the firings of a trigger, or of every trigger of a
+ * {@link TaskManager}
+ *
+ * @see TaskMetrics
+ * @author Jendoliver
+ */
+public final class TriggerStatistics
+{
+	private final long fires;
+	private final long misfires;
+	private final LatencyHistogram.Snapshot lag;
+
+	public TriggerStatistics(long fires, long misfires, LatencyHistogram.Snapshot lag)
+	{
+		this.fires = fires;
+		this.misfires = misfires;
+		this.lag = lag;
+	}
+
+	/**
+	 * How many times its job has started
+	 */
+	public long getFires()
+	{
+		return fires;
+	}
+
+	public long getMisfires()
+	{
+		return misfires;
+	}
+
+	/**
+	 * How late its job started compared to the time it was scheduled to, in nanoseconds (with
+	 * millisecond resolution). Includes the time it waited for a thread or for its group to have
+	 * room.
+	 */
+	public LatencyHistogram.Snapshot getLag()
+	{
+		return lag;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "TriggerStatistics [fires=" + fires + ", misfires=" + misfires + ", lag=" + lag + "]";
+	}
+}
@@ -0,0 +1,383 @@
+package com.apporelbotna.javaee.message.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * Generates the enum of keys of every class annotated with
+ * <code>com.apporelbotna.javaee.message.MessageBundle</code> from the .properties files of its
+ * bundle, and fails the compilation if those files are inconsistent. See the documentation of the
+ * annotation.<br>
+ * <br>
+ * The annotation is referred by name instead of by class, so this processor can be compiled before
+ * the library it processes.
+ *
+ * @author Jendoliver
+ */
+@SupportedAnnotationTypes(MessageBundleProcessor.MESSAGE_BUNDLE)
+@SupportedOptions(MessageBundleProcessor.MESSAGES_DIR_OPTION)
+public class MessageBundleProcessor extends AbstractProcessor
+{
+	static final String MESSAGE_BUNDLE = "com.apporelbotna.javaee.message.MessageBundle";
+	static final String MESSAGES_DIR_OPTION = "jhen.messages.dir";
+
+	private static final String MESSAGE_KEY = "com.apporelbotna.javaee.message.MessageKey";
+	private static final String BASE_LOCALE = "";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion()
+	{
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+	{
+		for (TypeElement annotation : annotations)
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation))
+				process((TypeElement)element, annotationMirror(element));
+		return true;
+	}
+
+	private void process(TypeElement element, AnnotationMirror annotation)
+	{
+		String bundleName = bundleName(annotation);
+		String directories = processingEnv.getOptions().get(MESSAGES_DIR_OPTION);
+		if (directories == null)
+		{
+			error(element, annotation, "Set the -A" + MESSAGES_DIR_OPTION + " compiler option to the directories "
+					+ "of the .properties files");
+			return;
+		}
+
+		Map<String, Properties> locales;
+		try
+		{
+			locales = readLocales(bundleName, directories);
+		}
+		catch (IOException e)
+		{
+			error(element, annotation, "Could not read the files of bundle " + bundleName + ": " + e);
+			return;
+		}
+
+		if (locales.isEmpty())
+		{
+			error(element, annotation, "No .properties files found for bundle " + bundleName + " in " + directories);
+			return;
+		}
+
+		Map<String, Integer> parameterCounts = validate(element, annotation, bundleName, locales);
+		if (parameterCounts == null)
+			return;
+
+		Properties reference = locales.containsKey(BASE_LOCALE) ? locales.get(BASE_LOCALE)
+				: locales.values().iterator().next();
+		Map<String, String> constants = constantNames(element, annotation, parameterCounts.keySet());
+		if (constants == null)
+			return;
+
+		try
+		{
+			generate(element, bundleName, constants, parameterCounts, reference);
+		}
+		catch (IOException e)
+		{
+			error(element, annotation, "Could not generate the keys of bundle " + bundleName + ": " + e);
+		}
+	}
+
+	private AnnotationMirror annotationMirror(Element element)
+	{
+		for (AnnotationMirror mirror : element.getAnnotationMirrors())
+			if (((TypeElement)mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(MESSAGE_BUNDLE))
+				return mirror;
+		throw new IllegalStateException(element + " is not annotated with " + MESSAGE_BUNDLE);
+	}
+
+	private static String bundleName(AnnotationMirror annotation)
+	{
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : annotation.getElementValues()
+				.entrySet())
+			if (value.getKey().getSimpleName().contentEquals("value"))
+				return (String)value.getValue().getValue();
+		throw new IllegalStateException("MessageBundle without value");
+	}
+
+	/**
+	 * Reads every <code>bundle[_locale].properties</code> file of the bundle, by locale suffix
+	 * (empty for the base bundle). The first directory having a file of a locale wins.
+	 */
+	private static Map<String, Properties> readLocales(String bundleName, String directories) throws IOException
+	{
+		String path = bundleName.replace('.', '/');
+		String fileName = path.substring(path.lastIndexOf('/') + 1);
+		Map<String, Properties> locales = new TreeMap<>();
+		for (String directory : directories.split(File.pathSeparator))
+		{
+			Path parent = Paths.get(directory, path).getParent();
+			if (!Files.isDirectory(parent))
+				continue;
+
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(parent, fileName + "*.properties"))
+			{
+				for (Path file : files)
+				{
+					String name = file.getFileName().toString();
+					String suffix = name.substring(fileName.length(), name.length() - ".properties".length());
+					if (!suffix.isEmpty() && !suffix.startsWith("_"))
+						continue;
+					if (!locales.containsKey(suffix))
+						locales.put(suffix, read(file));
+				}
+			}
+		}
+		return locales;
+	}
+
+	private static Properties read(Path file) throws IOException
+	{
+		// ISO-8859-1, same as PropertyResourceBundle on Java 8
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(file))
+		{
+			properties.load(in);
+		}
+		return properties;
+	}
+
+	/**
+	 * Checks that every locale has the same keys and the same number of parameters per key,
+	 * returning the number of parameters of every key, or null if there is any error
+	 */
+	private Map<String, Integer> validate(TypeElement element, AnnotationMirror annotation, String bundleName,
+			Map<String, Properties> locales)
+	{
+		boolean valid = true;
+		Set<String> reference = new TreeSet<>();
+		if (locales.containsKey(BASE_LOCALE))
+			reference.addAll(locales.get(BASE_LOCALE).stringPropertyNames());
+		else
+			for (Properties locale : locales.values())
+				reference.addAll(locale.stringPropertyNames());
+
+		Map<String, Integer> parameterCounts = new TreeMap<>();
+		Map<String, String> parameterCountLocales = new HashMap<>();
+		for (Map.Entry<String, Properties> locale : locales.entrySet())
+		{
+			String file = bundleName.replace('.', '/') + locale.getKey() + ".properties";
+			Set<String> codes = locale.getValue().stringPropertyNames();
+			for (String code : reference)
+				if (!codes.contains(code))
+				{
+					error(element, annotation, "Message " + code + " is missing in " + file);
+					valid = false;
+				}
+
+			for (String code : new TreeSet<>(codes))
+			{
+				if (!reference.contains(code))
+				{
+					error(element, annotation, "Message " + code + " of " + file + " is not in the base bundle, "
+							+ "so no other locale has it");
+					valid = false;
+					continue;
+				}
+
+				int parameterCount;
+				try
+				{
+					parameterCount = new MessageFormat(locale.getValue().getProperty(code))
+							.getFormatsByArgumentIndex().length;
+				}
+				catch (IllegalArgumentException e)
+				{
+					error(element, annotation, "Message " + code + " of " + file + " is not a valid pattern: "
+							+ e.getMessage());
+					valid = false;
+					continue;
+				}
+
+				Integer expected = parameterCounts.putIfAbsent(code, parameterCount);
+				if (expected == null)
+					parameterCountLocales.put(code, file);
+				else if (expected != parameterCount)
+				{
+					error(element, annotation, "Message " + code + " has " + parameterCount + " parameters in "
+							+ file + " but " + expected + " in " + parameterCountLocales.get(code));
+					valid = false;
+				}
+			}
+		}
+		return valid ? parameterCounts : null;
+	}
+
+	/**
+	 * Turns every code into a constant name, i.e <code>scheduler.couldNotStart</code> into
+	 * <code>SCHEDULER_COULD_NOT_START</code>, or returns null if two codes give the same name
+	 */
+	private Map<String, String> constantNames(TypeElement element, AnnotationMirror annotation, Set<String> codes)
+	{
+		Map<String, String> constants = new TreeMap<>();
+		Map<String, String> codesByConstant = new HashMap<>();
+		boolean valid = true;
+		for (String code : codes)
+		{
+			String constant = constantName(code);
+			String previous = codesByConstant.putIfAbsent(constant, code);
+			if (previous != null)
+			{
+				error(element, annotation, "Messages " + previous + " and " + code + " would both be " + constant);
+				valid = false;
+			}
+			constants.put(code, constant);
+		}
+		return valid ? constants : null;
+	}
+
+	static String constantName(String code)
+	{
+		StringBuilder name = new StringBuilder(code.length() + 8);
+		for (int i = 0; i < code.length(); i++)
+		{
+			char c = code.charAt(i);
+			boolean wordStart = Character.isUpperCase(c) && i > 0 && Character.isLowerCase(code.charAt(i - 1));
+			if (wordStart)
+				name.append('_');
+			if (Character.isJavaIdentifierPart(c) && !Character.isIdentifierIgnorable(c) && c != '$')
+				name.append(Character.toUpperCase(c));
+			else if (name.length() > 0 && name.charAt(name.length() - 1) != '_')
+				name.append('_');
+		}
+		if (name.length() == 0 || !Character.isJavaIdentifierStart(name.charAt(0)) || SourceVersion.isKeyword(name))
+			name.insert(0, '_');
+		return name.toString();
+	}
+
+	private void generate(TypeElement element, String bundleName, Map<String, String> constants,
+			Map<String, Integer> parameterCounts, Properties reference) throws IOException
+	{
+		PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(element);
+		String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+		String simpleName = element.getSimpleName() + "Keys";
+		String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+
+		try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedName, element)
+				.openWriter()))
+		{
+			if (!packageName.isEmpty())
+				out.println("package " + packageName + ";\n");
+			out.println("import " + MESSAGE_KEY + ";\n");
+			out.println("/**");
+			out.println(" * Keys of the " + javadoc(bundleName) + " bundle, generated by "
+					+ MessageBundleProcessor.class.getSimpleName() + " from its .properties files");
+			out.println(" */");
+			out.println("public enum " + simpleName + " implements MessageKey");
+			out.println("{");
+
+			Set<String> codes = new LinkedHashSet<>(constants.keySet());
+			int remaining = codes.size();
+			for (String code : codes)
+			{
+				out.println("\t/**");
+				out.println("\t * " + javadoc(reference.getProperty(code, code)));
+				out.println("\t */");
+				out.println("\t" + constants.get(code) + "(\"" + literal(code) + "\", " + parameterCounts.get(code) + ")"
+						+ (--remaining > 0 ? "," : ";"));
+				out.println();
+			}
+			if (codes.isEmpty())
+				out.println("\t;\n");
+
+			out.println("\tprivate final String code;");
+			out.println("\tprivate final int parameterCount;\n");
+			out.println("\tprivate " + simpleName + "(String code, int parameterCount)");
+			out.println("\t{");
+			out.println("\t\tthis.code = code;");
+			out.println("\t\tthis.parameterCount = parameterCount;");
+			out.println("\t}\n");
+			out.println("\t@Override");
+			out.println("\tpublic String getBundleName()");
+			out.println("\t{");
+			out.println("\t\treturn \"" + literal(bundleName) + "\";");
+			out.println("\t}\n");
+			out.println("\t@Override");
+			out.println("\tpublic String getCode()");
+			out.println("\t{");
+			out.println("\t\treturn code;");
+			out.println("\t}\n");
+			out.println("\t@Override");
+			out.println("\tpublic int getParameterCount()");
+			out.println("\t{");
+			out.println("\t\treturn parameterCount;");
+			out.println("\t}");
+			out.println("}");
+		}
+	}
+
+	/**
+	 * Control characters are written as escape sequences rather than unicode escapes, which javac
+	 * translates before parsing the source, so a line break would end up breaking the literal
+	 */
+	private static String literal(String text)
+	{
+		StringBuilder literal = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++)
+		{
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\')
+				literal.append('\\').append(c);
+			else if (c == '\n')
+				literal.append("\\n");
+			else if (c == '\r')
+				literal.append("\\r");
+			else if (c == '\t')
+				literal.append("\\t");
+			else if (c < ' ' || c == 0x7f)
+				literal.append(String.format("\\%03o", (int)c));
+			else if (c > '~')
+				literal.append(String.format("\\u%04x", (int)c));
+			else
+				literal.append(c);
+		}
+		return literal.toString();
+	}
+
+	private static String javadoc(String text)
+	{
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("*/", "*&#47;")
+				.replace("@", "&#64;").replace("\\", "&#92;").replaceAll("\\s+", " ");
+	}
+
+	private void error(Element element, AnnotationMirror annotation, String message)
+	{
+		processingEnv.getMessager().printMessage(Kind.ERROR, message, element, annotation);
+	}
+}
@@ -0,0 +1,91 @@
+package com.apporelbotna.javaee.date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+/**
+ * @author Jendoliver
+ */
+public class CoarseClockTest
+{
+	@Test
+	public void followsTheSystemClock() throws InterruptedException
+	{
+		try (CoarseClock clock = CoarseClock.start(Duration.ofMillis(1), ZoneOffset.UTC))
+		{
+			Instant first = clock.instant();
+			Thread.sleep(50);
+			Instant second = clock.instant();
+
+			assertTrue(second.isAfter(first));
+			assertTrue(Duration.between(second, Instant.now()).toMillis() < 1000);
+			assertEquals(clock.millis(), clock.instant().toEpochMilli(), 1000);
+		}
+	}
+
+	@Test
+	public void stopsTickingOnceClosed() throws InterruptedException
+	{
+		CoarseClock clock = CoarseClock.start(Duration.ofMillis(1), ZoneOffset.UTC);
+		clock.close();
+		Thread.sleep(10);
+		Instant stopped = clock.instant();
+		Thread.sleep(20);
+
+		assertEquals(stopped, clock.instant());
+	}
+
+	@Test
+	public void createsOneLocalDateTimePerTick() throws InterruptedException
+	{
+		CoarseClock clock = CoarseClock.start(Duration.ofMillis(1), ZoneOffset.ofHours(2));
+		clock.close();
+		Thread.sleep(10);
+		LocalDateTime now = clock.localDateTime();
+
+		assertSame(now, clock.localDateTime());
+		assertEquals(LocalDateTime.now(clock), now);
+	}
+
+	@Test
+	public void zonesShareTheTicks() throws InterruptedException
+	{
+		CoarseClock utc = CoarseClock.start(Duration.ofMillis(1), ZoneOffset.UTC);
+		utc.close();
+		Thread.sleep(10);
+		CoarseClock plusTwo = utc.withZone(ZoneOffset.ofHours(2));
+
+		assertSame(utc, utc.withZone(ZoneOffset.UTC));
+		assertEquals(ZoneOffset.ofHours(2), plusTwo.getZone());
+		assertEquals(utc.instant(), plusTwo.instant());
+		assertEquals(utc.localDateTime().plusHours(2), plusTwo.localDateTime());
+	}
+
+	@Test
+	public void closingTheSharedClockDoesNothing() throws InterruptedException
+	{
+		CoarseClock clock = CoarseClock.systemDefaultZone();
+		clock.close();
+		Instant first = clock.instant();
+		Thread.sleep(50);
+
+		assertSame(clock, CoarseClock.systemDefaultZone());
+		assertEquals(ZoneId.systemDefault(), clock.getZone());
+		assertTrue(clock.instant().isAfter(first));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsANonPositiveResolution()
+	{
+		CoarseClock.start(Duration.ZERO, ZoneOffset.UTC);
+	}
+}
@@ -0,0 +1,188 @@
+package com.apporelbotna.javaee.date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Jendoliver
+ */
+public class DateIntervalArrayTest
+{
+	private static DateIntervalArray array(long... startsAndEnds)
+	{
+		DateIntervalArray array = new DateIntervalArray(1);
+		for (int i = 0; i < startsAndEnds.length; i += 2)
+			array.add(startsAndEnds[i], startsAndEnds[i + 1]);
+		return array;
+	}
+
+	private static List<Integer> overlapping(DateIntervalArray array, long from, long to)
+	{
+		List<Integer> indexes = new ArrayList<>();
+		array.forEachOverlapping(from, to, indexes::add);
+		return indexes;
+	}
+
+	private static List<Integer> containing(DateIntervalArray array, long instant)
+	{
+		List<Integer> indexes = new ArrayList<>();
+		array.forEachContaining(instant, indexes::add);
+		return indexes;
+	}
+
+	@Test
+	public void sortsByStartThenByEnd()
+	{
+		DateIntervalArray array = array(5, 6, 1, 4, 1, 2, 3, 9);
+
+		assertFalse(array.isSorted());
+		array.sort();
+
+		assertTrue(array.isSorted());
+		assertEquals(Arrays.asList(EpochDateInterval.of(1, 2), EpochDateInterval.of(1, 4), EpochDateInterval.of(3, 9),
+				EpochDateInterval.of(5, 6)), Arrays.asList(array.get(0), array.get(1), array.get(2), array.get(3)));
+	}
+
+	@Test
+	public void addingInOrderKeepsItSorted()
+	{
+		DateIntervalArray array = array(1, 2, 1, 3, 2, 2);
+
+		assertTrue(array.isSorted());
+		array.add(1, 5);
+		assertFalse(array.isSorted());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void searchingAnUnsortedArrayFails()
+	{
+		array(5, 6, 1, 2).forEachOverlapping(0, 10, i -> {});
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsAnEndBeforeTheStart()
+	{
+		array(2, 1);
+	}
+
+	@Test
+	public void emptyArray()
+	{
+		DateIntervalArray array = new DateIntervalArray();
+
+		assertTrue(array.isEmpty());
+		assertEquals(0, array.firstStartingAfter(10));
+		assertTrue(overlapping(array, 0, 10).isEmpty());
+	}
+
+	@Test
+	public void findsTheFirstIntervalStartingAfter()
+	{
+		DateIntervalArray array = array(1, 2, 3, 4, 3, 8, 6, 7);
+
+		assertEquals(0, array.firstStartingAfter(0));
+		assertEquals(1, array.firstStartingAfter(2));
+		assertEquals(3, array.firstStartingAfter(3));
+		assertEquals(4, array.firstStartingAfter(6));
+	}
+
+	@Test
+	public void overlappingIncludesTouchingIntervalsInIndexOrder()
+	{
+		DateIntervalArray array = array(1, 3, 2, 20, 5, 7, 8, 9, 10, 11);
+
+		assertEquals(Arrays.asList(0, 1, 2), overlapping(array, 3, 5));
+		assertEquals(Arrays.asList(1, 4), overlapping(array, 10, 10));
+		assertTrue(overlapping(array, 21, 30).isEmpty());
+	}
+
+	@Test
+	public void containingExcludesTheBounds()
+	{
+		DateIntervalArray array = array(1, 3, 3, 5);
+
+		assertEquals(Arrays.asList(0), containing(array, 2));
+		assertTrue(containing(array, 3).isEmpty());
+	}
+
+	@Test
+	public void searchesAgainAfterAChange()
+	{
+		DateIntervalArray array = array(1, 2, 3, 4);
+		assertEquals(Arrays.asList(1), overlapping(array, 3, 3));
+
+		array.add(5, 6);
+		array.add(0, 100);
+		array.sort();
+
+		assertEquals(Arrays.asList(0, 2), overlapping(array, 3, 3));
+		array.clear();
+		assertTrue(overlapping(array, 3, 3).isEmpty());
+	}
+
+	/**
+	 * Sizes around the powers of two, where the implicit tree has nodes beyond the end of the
+	 * array, with many short intervals and a few long ones which must be found from far away
+	 */
+	@Test
+	public void agreesWithLinearScan()
+	{
+		Random random = new Random(42);
+		for (int size : new int[] { 1, 2, 15, 16, 17, 31, 32, 33, 1000, 1023, 1024, 1025, 5000 })
+		{
+			long span = size % 2 == 0 ? 10 : 100000;
+			DateIntervalArray array = new DateIntervalArray(1);
+			List<long[]> intervals = new ArrayList<>();
+			for (int i = 0; i < size; i++)
+			{
+				long start = (long)(random.nextDouble() * span);
+				long end = start + (random.nextInt(10) == 0 ? random.nextInt(50000) : random.nextInt(50));
+				array.add(start, end);
+				intervals.add(new long[] { start, end });
+			}
+			array.sort();
+			Collections.sort(intervals, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+			for (int query = 0; query < 200; query++)
+			{
+				long from = (long)(random.nextDouble() * span);
+				long to = from + random.nextInt(100);
+
+				List<Integer> expectedOverlapping = new ArrayList<>();
+				List<Integer> expectedContaining = new ArrayList<>();
+				for (int i = 0; i < size; i++)
+				{
+					if (EpochDateInterval.overlaps(intervals.get(i)[0], intervals.get(i)[1], from, to))
+						expectedOverlapping.add(i);
+					if (EpochDateInterval.contains(intervals.get(i)[0], intervals.get(i)[1], from))
+						expectedContaining.add(i);
+				}
+
+				assertEquals(expectedOverlapping, overlapping(array, from, to));
+				assertEquals(expectedContaining, containing(array, from));
+			}
+		}
+	}
+
+	@Test
+	public void convertsFromAndToDateIntervals()
+	{
+		LocalDateTime start = LocalDateTime.of(2020, 1, 1, 10, 0);
+		List<DateInterval> dateIntervals = Arrays.asList(DateInterval.of(start, start.plusHours(1)),
+				DateInterval.of(start.plusHours(2), start.plusDays(3)));
+		DateIntervalArray array = DateIntervalArray.of(dateIntervals);
+
+		assertEquals(dateIntervals, array.toDateIntervals());
+		assertEquals(EpochDateInterval.of(dateIntervals.get(1)), array.get(1));
+	}
+}
@@ -0,0 +1,115 @@
+package com.apporelbotna.javaee.date;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.Test;
+
+/**
+ * @author Jendoliver
+ */
+public class DateIntervalCodecTest
+{
+	private static final DateIntervalCodec ISO = DateIntervalCodec.ISO;
+
+	private static void assertRoundTrip(LocalDateTime start, LocalDateTime end)
+	{
+		DateInterval interval = DateInterval.of(start, end);
+		String text = start.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + DateInterval.START_END_SEPARATOR
+				+ end.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+
+		assertEquals(text, ISO.format(interval));
+		assertEquals(interval, ISO.parse(text));
+		assertEquals(interval, ISO.parse(text.getBytes(StandardCharsets.US_ASCII), 0, text.length()));
+	}
+
+	@Test
+	public void leapDays()
+	{
+		assertRoundTrip(LocalDateTime.of(2020, 2, 29, 0, 0), LocalDateTime.of(2020, 3, 1, 0, 0));
+		assertRoundTrip(LocalDateTime.of(2000, 2, 29, 23, 59, 59), LocalDateTime.of(2400, 2, 29, 12, 0));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void rejectsLeapDayOfCommonYear()
+	{
+		ISO.parse("2019-02-29T00:00~2019-03-01T00:00");
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void rejectsLeapDayOfCentury()
+	{
+		ISO.parse("1900-02-29T00:00~1900-03-01T00:00");
+	}
+
+	@Test
+	public void fractionalSeconds()
+	{
+		LocalDateTime start = LocalDateTime.of(2020, 1, 1, 10, 30, 15);
+		for (int nano : new int[] { 1, 500_000_000, 120_000_000, 123_456_000, 999_999_999 })
+			assertRoundTrip(start.withNano(nano), start.plusSeconds(1).withNano(nano));
+	}
+
+	@Test
+	public void parsesEveryFractionLength()
+	{
+		StringBuilder fraction = new StringBuilder();
+		int nano = 0;
+		for (int digits = 1; digits <= 9; digits++)
+		{
+			fraction.append(digits);
+			nano = nano * 10 + digits;
+			int expectedNano = nano;
+			for (int i = digits; i < 9; i++)
+				expectedNano *= 10;
+
+			DateInterval interval = ISO.parse("2020-01-01T00:00:00." + fraction + "~2020-01-01T00:00:01");
+			assertEquals(expectedNano, interval.getStartDate().getNano());
+		}
+	}
+
+	@Test
+	public void parsesShortTimes()
+	{
+		assertEquals(DateInterval.of(LocalDateTime.of(2020, 1, 1, 8, 0), LocalDateTime.of(2020, 1, 1, 9, 0, 30)),
+				ISO.parse("2020-01-01T08:00~2020-01-01T09:00:30"));
+	}
+
+	@Test
+	public void parsesIntoEpochMillis()
+	{
+		LocalDateTime start = LocalDateTime.of(2024, 2, 29, 23, 0, 0, 123_456_789);
+		LocalDateTime end = LocalDateTime.of(2024, 3, 1, 1, 0);
+		String text = ISO.format(DateInterval.of(start, end));
+		ZoneOffset offset = ZoneOffset.ofHours(2);
+		DateIntervalArray array = new DateIntervalArray();
+
+		ISO.parseInto(text, 0, text.length(), array, offset);
+
+		assertEquals(start.toInstant(offset).toEpochMilli(), array.getStart(0));
+		assertEquals(end.toInstant(offset).toEpochMilli(), array.getEnd(0));
+	}
+
+	@Test
+	public void formatsToBytes()
+	{
+		DateInterval interval = DateInterval.of(LocalDateTime.of(2020, 2, 29, 0, 0, 0, 500_000_000), LocalDateTime.of(2020, 3, 1, 0, 0));
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+
+		ISO.formatTo(interval, buffer);
+
+		assertEquals("2020-02-29T00:00:00.5~2020-03-01T00:00:00",
+				new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsTextWithoutSeparator()
+	{
+		ISO.parse("2020-01-01T00:00");
+	}
+}
@@ -0,0 +1,139 @@
+package com.apporelbotna.javaee.date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ * @author Jendoliver
+ */
+public class DateIntervalIndexTest
+{
+	private static final LocalDateTime BASE = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+	private static LocalDateTime at(int hour)
+	{
+		return BASE.plusHours(hour);
+	}
+
+	private static DateInterval interval(int fromHour, int toHour)
+	{
+		return DateInterval.of(at(fromHour), at(toHour));
+	}
+
+	@Test
+	public void emptyIndex()
+	{
+		DateIntervalIndex index = new DateIntervalIndex();
+
+		assertTrue(index.isEmpty());
+		assertTrue(index.containing(at(1)).isEmpty());
+		assertTrue(index.overlapping(interval(0, 10)).isEmpty());
+		assertFalse(index.overlapsAny(interval(0, 10)));
+		assertEquals(at(3), index.findFreeSlot(at(3), Duration.ofHours(1)));
+		assertFalse(index.remove(interval(0, 1)));
+	}
+
+	@Test
+	public void containingExcludesTheBounds()
+	{
+		DateIntervalIndex index = DateIntervalIndex.of(Arrays.asList(interval(1, 3), interval(3, 5)));
+
+		assertEquals(Arrays.asList(interval(1, 3)), index.containing(at(2)));
+		assertTrue(index.containing(at(3)).isEmpty());
+	}
+
+	@Test
+	public void overlappingIncludesTouchingIntervals()
+	{
+		DateIntervalIndex index = DateIntervalIndex.of(Arrays.asList(interval(1, 3), interval(5, 7), interval(8, 9)));
+
+		assertEquals(new HashSet<>(Arrays.asList(interval(1, 3), interval(5, 7))),
+				new HashSet<>(index.overlapping(interval(3, 5))));
+		assertTrue(index.overlapsAny(interval(7, 8)));
+		assertFalse(index.overlapsAny(interval(10, 11)));
+	}
+
+	@Test
+	public void removesOneOfTheEqualIntervals()
+	{
+		DateIntervalIndex index = new DateIntervalIndex();
+		index.add(interval(1, 2));
+		index.add(interval(1, 2));
+
+		assertTrue(index.remove(interval(1, 2)));
+		assertEquals(1, index.size());
+		assertEquals(Arrays.asList(interval(1, 2)), index.containing(at(1).plusMinutes(30)));
+	}
+
+	@Test
+	public void findsTheEarliestFreeSlot()
+	{
+		DateIntervalIndex index = DateIntervalIndex.of(Arrays.asList(interval(9, 10), interval(10, 11), interval(12, 14)));
+
+		assertEquals(at(11), index.findFreeSlot(at(9), Duration.ofHours(1)));
+		assertEquals(at(14), index.findFreeSlot(at(9), Duration.ofHours(2)));
+		assertEquals(at(8), index.findFreeSlot(at(8), Duration.ofHours(1)));
+	}
+
+	@Test
+	public void listsTheIntervalsInOrder()
+	{
+		DateIntervalIndex index = new DateIntervalIndex();
+		for (DateInterval interval : Arrays.asList(interval(5, 6), interval(1, 4), interval(1, 2), interval(3, 9)))
+			index.add(interval);
+
+		assertEquals(Arrays.asList(interval(1, 2), interval(1, 4), interval(3, 9), interval(5, 6)), index.toList());
+	}
+
+	@Test
+	public void agreesWithLinearScan()
+	{
+		Random random = new Random(42);
+		List<DateInterval> intervals = new ArrayList<>();
+		for (int i = 0; i < 2000; i++)
+		{
+			LocalDateTime start = BASE.plusMinutes(random.nextInt(100000));
+			intervals.add(DateInterval.of(start, start.plusMinutes(random.nextInt(500))));
+		}
+
+		DateIntervalIndex index = DateIntervalIndex.of(intervals.subList(0, 1000));
+		for (DateInterval interval : intervals.subList(1000, 2000))
+			index.add(interval);
+		List<DateInterval> live = new ArrayList<>(intervals);
+		for (int i = 0; i < 500; i++)
+			assertTrue(index.remove(live.remove(random.nextInt(live.size()))));
+		assertEquals(live.size(), index.size());
+
+		for (int i = 0; i < 500; i++)
+		{
+			LocalDateTime instant = BASE.plusMinutes(random.nextInt(100000)).plusSeconds(random.nextInt(60));
+			DateInterval query = DateInterval.of(instant, instant.plusMinutes(random.nextInt(300)));
+
+			assertEquals(sorted(live.stream().filter(interval -> interval.contains(instant)).collect(Collectors.toList())),
+					sorted(index.containing(instant)));
+			assertEquals(sorted(live.stream().filter(interval -> interval.overlaps(query)).collect(Collectors.toList())),
+					sorted(index.overlapping(query)));
+		}
+	}
+
+	private static List<DateInterval> sorted(List<DateInterval> intervals)
+	{
+		List<DateInterval> result = new ArrayList<>(intervals);
+		Collections.sort(result, (a, b) -> a.getStartDate().equals(b.getStartDate())
+				? a.getEndDate().compareTo(b.getEndDate()) : a.getStartDate().compareTo(b.getStartDate()));
+		return result;
+	}
+}
@@ -0,0 +1,149 @@
+package com.apporelbotna.javaee.date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * @author Jendoliver
+ */
+public class DateIntervalSetTest
+{
+	private static LocalDateTime at(int hour)
+	{
+		return LocalDateTime.of(2020, 1, 1, 0, 0).plusHours(hour);
+	}
+
+	private static DateInterval interval(int fromHour, int toHour)
+	{
+		return DateInterval.of(at(fromHour), at(toHour));
+	}
+
+	private static DateIntervalSet set(DateInterval... intervals)
+	{
+		return DateIntervalSet.of(intervals);
+	}
+
+	@Test
+	public void normalizesOverlappingAndTouchingIntervals()
+	{
+		DateIntervalSet set = set(interval(5, 7), interval(1, 3), interval(2, 4), interval(4, 5), interval(9, 9));
+
+		assertEquals(Arrays.asList(interval(1, 7)), set.toList());
+		assertEquals(Duration.ofHours(6), set.getTotalDuration());
+	}
+
+	@Test
+	public void includesTheStartAndExcludesTheEnd()
+	{
+		DateIntervalSet set = set(interval(1, 3));
+
+		assertTrue(set.contains(at(1)));
+		assertFalse(set.contains(at(3)));
+	}
+
+	@Test
+	public void unionMergesOverlappingAndAdjacentIntervals()
+	{
+		DateIntervalSet union = set(interval(1, 3), interval(8, 10)).union(set(interval(3, 5), interval(9, 12)));
+
+		assertEquals(set(interval(1, 5), interval(8, 12)), union);
+		assertEquals(2, union.size());
+	}
+
+	@Test
+	public void unionKeepsDisjointIntervalsApart()
+	{
+		assertEquals(Arrays.asList(interval(1, 2), interval(3, 4)),
+				set(interval(3, 4)).union(set(interval(1, 2))).toList());
+	}
+
+	@Test
+	public void unionWithEmptySet()
+	{
+		DateIntervalSet set = set(interval(1, 3));
+
+		assertSame(set, set.union(DateIntervalSet.empty()));
+		assertSame(set, DateIntervalSet.empty().union(set));
+		assertTrue(DateIntervalSet.empty().union(DateIntervalSet.empty()).isEmpty());
+	}
+
+	@Test
+	public void intersectionKeepsTheCommonParts()
+	{
+		DateIntervalSet intersection = set(interval(1, 5), interval(7, 10)).intersection(set(interval(4, 8), interval(9, 12)));
+
+		assertEquals(set(interval(4, 5), interval(7, 8), interval(9, 10)), intersection);
+	}
+
+	@Test
+	public void intersectionOfTouchingIntervalsIsEmpty()
+	{
+		assertTrue(set(interval(1, 3)).intersection(set(interval(3, 5))).isEmpty());
+		assertTrue(set(interval(3, 5)).intersection(set(interval(1, 3))).isEmpty());
+	}
+
+	@Test
+	public void intersectionWithEmptySet()
+	{
+		assertTrue(set(interval(1, 3)).intersection(DateIntervalSet.empty()).isEmpty());
+		assertTrue(DateIntervalSet.empty().intersection(set(interval(1, 3))).isEmpty());
+	}
+
+	@Test
+	public void differenceCutsHolesAndEnds()
+	{
+		DateIntervalSet difference = set(interval(0, 10), interval(12, 14)).difference(set(interval(2, 3), interval(5, 6), interval(9, 13)));
+
+		assertEquals(set(interval(0, 2), interval(3, 5), interval(6, 9), interval(13, 14)), difference);
+	}
+
+	@Test
+	public void differenceOfTouchingIntervalsLeavesThemUnchanged()
+	{
+		DateIntervalSet set = set(interval(3, 5));
+
+		assertEquals(set, set.difference(set(interval(1, 3), interval(5, 7))));
+	}
+
+	@Test
+	public void differenceOfCoveringSetIsEmpty()
+	{
+		assertTrue(set(interval(2, 4), interval(5, 6)).difference(set(interval(1, 7))).isEmpty());
+	}
+
+	@Test
+	public void differenceWithEmptySet()
+	{
+		DateIntervalSet set = set(interval(1, 3));
+
+		assertSame(set, set.difference(DateIntervalSet.empty()));
+		assertTrue(DateIntervalSet.empty().difference(set).isEmpty());
+	}
+
+	@Test
+	public void complementAndGaps()
+	{
+		DateIntervalSet bookings = set(interval(9, 10), interval(12, 13));
+
+		assertEquals(set(interval(8, 9), interval(10, 12), interval(13, 18)), bookings.complement(interval(8, 18)));
+		assertEquals(set(interval(10, 12)), bookings.gaps());
+	}
+
+	@Test
+	public void emptyInputs()
+	{
+		assertTrue(DateIntervalSet.of(Collections.<DateInterval>emptyList()).isEmpty());
+		assertTrue(DateIntervalSet.of().isEmpty());
+		assertEquals(Duration.ZERO, DateIntervalSet.empty().getTotalDuration());
+		assertTrue(DateIntervalSet.empty().gaps().isEmpty());
+	}
+}
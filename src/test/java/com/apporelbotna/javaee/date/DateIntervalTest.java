@@ -0,0 +1,79 @@
+package com.apporelbotna.javaee.date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Jendoliver
+ */
+public class DateIntervalTest
+{
+	private static LocalDateTime at(int hour)
+	{
+		return LocalDateTime.of(2020, 1, 1, 0, 0).plusHours(hour);
+	}
+
+	private static DateInterval interval(int fromHour, int toHour)
+	{
+		return DateInterval.of(at(fromHour), at(toHour));
+	}
+
+	private static Clock clockAt(int hour)
+	{
+		return Clock.fixed(at(hour).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+	}
+
+	@Test
+	public void checksAgainstTheGivenInstant()
+	{
+		DateInterval interval = interval(2, 4);
+
+		assertFalse(interval.hasStarted(at(2)));
+		assertTrue(interval.hasStarted(at(3)));
+		assertTrue(interval.isInProgress(at(3)));
+		assertFalse(interval.isInProgress(at(4)));
+		assertFalse(interval.hasFinished(at(4)));
+		assertTrue(interval.hasFinished(at(5)));
+	}
+
+	@Test
+	public void checksAgainstTheClock()
+	{
+		DateInterval interval = interval(2, 4);
+
+		assertFalse(interval.hasStarted(clockAt(1)));
+		assertTrue(interval.isInProgress(clockAt(3)));
+		assertTrue(interval.hasFinished(clockAt(5)));
+	}
+
+	@Test
+	public void checksAgainstACoarseClock()
+	{
+		DateInterval interval = DateInterval.of(LocalDateTime.now(ZoneOffset.UTC).minusHours(1),
+				LocalDateTime.now(ZoneOffset.UTC).plusHours(1));
+		try (CoarseClock clock = CoarseClock.start(Duration.ofMillis(1), ZoneOffset.UTC))
+		{
+			assertTrue(interval.isInProgress(clock));
+			assertFalse(interval.hasFinished(clock));
+		}
+	}
+
+	@Test
+	public void filtersAgainstASingleReadOfTheClock()
+	{
+		List<DateInterval> intervals = Arrays.asList(interval(1, 2), interval(2, 4), interval(2, 6), interval(5, 6));
+
+		assertEquals(Arrays.asList(interval(2, 4), interval(2, 6)), DateInterval.inProgress(intervals, clockAt(3)));
+		assertEquals(Arrays.asList(interval(1, 2)), DateInterval.filter(intervals, clockAt(3), DateInterval::hasFinished));
+	}
+}
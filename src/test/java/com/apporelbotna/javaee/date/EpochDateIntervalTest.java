@@ -0,0 +1,96 @@
+package com.apporelbotna.javaee.date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+/**
+ * @author Jendoliver
+ */
+public class EpochDateIntervalTest
+{
+	private static LocalDateTime at(int hour)
+	{
+		return LocalDateTime.of(2020, 1, 1, 0, 0).plusHours(hour);
+	}
+
+	private static DateInterval interval(int fromHour, int toHour)
+	{
+		return DateInterval.of(at(fromHour), at(toHour));
+	}
+
+	@Test
+	public void convertsToEpochMilliseconds()
+	{
+		EpochDateInterval interval = EpochDateInterval.of(DateInterval.of(LocalDateTime.of(1970, 1, 1, 0, 0),
+				LocalDateTime.of(1970, 1, 1, 0, 0, 1, 500_000_000)));
+
+		assertEquals(0, interval.getStart());
+		assertEquals(1500, interval.getEnd());
+		assertEquals(1500, interval.getDurationMillis());
+	}
+
+	@Test
+	public void roundTripsThroughTheSameOffset()
+	{
+		LocalDateTime start = LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_000_000);
+		DateInterval dateInterval = DateInterval.of(start, start.plusDays(3));
+		ZoneOffset offset = ZoneOffset.ofHours(2);
+
+		assertEquals(dateInterval, EpochDateInterval.of(dateInterval, offset).toDateInterval(offset));
+		assertEquals(start.toInstant(offset).toEpochMilli(), EpochDateInterval.toEpochMilli(start, offset));
+	}
+
+	@Test
+	public void truncatesToTheMillisecond()
+	{
+		LocalDateTime start = at(1).withNano(1_234_567);
+
+		assertEquals(at(1).withNano(1_000_000),
+				EpochDateInterval.of(DateInterval.of(start, at(2))).toDateInterval().getStartDate());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsAnEndBeforeTheStart()
+	{
+		EpochDateInterval.of(2, 1);
+	}
+
+	@Test
+	public void comparesLikeDateInterval()
+	{
+		DateInterval[] dateIntervals = { interval(1, 3), interval(3, 5), interval(2, 4), interval(6, 7), interval(1, 7),
+				interval(4, 4) };
+		for (DateInterval a : dateIntervals)
+		{
+			EpochDateInterval epochA = EpochDateInterval.of(a);
+			for (DateInterval b : dateIntervals)
+			{
+				EpochDateInterval epochB = EpochDateInterval.of(b);
+				String pair = a + " " + b;
+				assertEquals(pair, a.overlaps(b), epochA.overlaps(epochB));
+				assertEquals(pair, a.isBefore(b), epochA.isBefore(epochB));
+				assertEquals(pair, a.isAfter(b), epochA.isAfter(epochB));
+				assertEquals(pair, a.startsBefore(b), epochA.startsBefore(epochB));
+				assertEquals(pair, a.endsAfter(b), epochA.endsAfter(epochB));
+			}
+			for (int hour = 0; hour <= 8; hour++)
+				assertEquals(a + " " + hour, a.contains(at(hour)),
+						epochA.contains(EpochDateInterval.toEpochMilli(at(hour), ZoneOffset.UTC)));
+		}
+	}
+
+	@Test
+	public void equalsByValue()
+	{
+		assertEquals(EpochDateInterval.of(1, 2), EpochDateInterval.of(1, 2));
+		assertEquals(EpochDateInterval.of(1, 2).hashCode(), EpochDateInterval.of(1, 2).hashCode());
+		assertFalse(EpochDateInterval.of(1, 2).equals(EpochDateInterval.of(1, 3)));
+		assertTrue(EpochDateInterval.contains(1, 3, 2));
+	}
+}
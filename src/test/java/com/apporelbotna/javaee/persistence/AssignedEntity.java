@@ -0,0 +1,54 @@
+package com.apporelbotna.javaee.persistence;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Entity with an id assigned by the application and no version, so the database has to be asked
+ * whether it is persisted
+ *
+ * @author Jendoliver
+ */
+@Entity
+@Table(name = "assigned_entity")
+public class AssignedEntity implements Identifiable<String>
+{
+	@Id
+	private String id;
+
+	private String name;
+
+	public AssignedEntity()
+	{
+		// JPA Constructor
+	}
+
+	public AssignedEntity(String id, String name)
+	{
+		this.id = id;
+		this.name = name;
+	}
+
+	@Override
+	public String getId()
+	{
+		return id;
+	}
+
+	@Override
+	public void setId(String id)
+	{
+		this.id = id;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public void setName(String name)
+	{
+		this.name = name;
+	}
+}
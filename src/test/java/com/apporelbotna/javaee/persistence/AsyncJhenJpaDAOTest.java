@@ -0,0 +1,206 @@
+package com.apporelbotna.javaee.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jendoliver
+ */
+public class AsyncJhenJpaDAOTest
+{
+	private final TestDAO dao = new TestDAO(EntityManagerScope.THREAD);
+	private AsyncJhenJpaDAO<TestDAO> async;
+
+	@Before
+	public void deleteAll()
+	{
+		dao.delete(TestEntity.class, null);
+	}
+
+	@After
+	public void close() throws InterruptedException
+	{
+		if (async != null)
+		{
+			async.close();
+			async.awaitTermination(10, TimeUnit.SECONDS);
+		}
+		EntityManagerContext.releaseAll();
+	}
+
+	@AfterClass
+	public static void closePersistenceUnit()
+	{
+		EntityManagerFactoryRegistry.closeAll();
+	}
+
+	private static void await(CountDownLatch latch)
+	{
+		try
+		{
+			latch.await(10, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static Throwable failureOf(CompletableFuture<?> future) throws InterruptedException
+	{
+		try
+		{
+			future.get(10, TimeUnit.SECONDS);
+			fail("The operation should have failed");
+			return null;
+		}
+		catch (ExecutionException e)
+		{
+			return e.getCause();
+		}
+		catch (TimeoutException e)
+		{
+			throw new AssertionError("The operation never completed", e);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void requiresTheThreadScope()
+	{
+		TestDAO daoScoped = new TestDAO();
+		try
+		{
+			new AsyncJhenJpaDAO<>(daoScoped, 1, 1);
+		}
+		finally
+		{
+			daoScoped.close();
+		}
+	}
+
+	@Test
+	public void getAllByKeysKeepsTheOrderOfTheKeys() throws Exception
+	{
+		async = new AsyncJhenJpaDAO<>(dao, 3, 10);
+		List<TestEntity> entities = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+			entities.add(new TestEntity("entity" + i));
+		async.storeAll(entities).get(10, TimeUnit.SECONDS);
+
+		List<Long> keys = new ArrayList<>();
+		for (int i = entities.size() - 1; i >= 0; i--)
+			keys.add(entities.get(i).getId());
+		keys.add(4, Long.MAX_VALUE);
+		keys.add(entities.get(9).getId());
+		Map<Long, TestEntity> found = async.getAllByKeys(TestEntity.class, keys).get(10, TimeUnit.SECONDS);
+
+		keys.remove(Long.MAX_VALUE);
+		keys.remove(keys.size() - 1);
+		assertEquals(keys, new ArrayList<>(found.keySet()));
+		for (TestEntity entity : entities)
+			assertEquals(entity.getName(), found.get(entity.getId()).getName());
+		assertEquals(new LinkedHashMap<>(), async.getAllByKeys(TestEntity.class, Arrays.asList()).get());
+	}
+
+	@Test
+	public void rejectsWhatDoesNotFitInTheQueue() throws Exception
+	{
+		async = new AsyncJhenJpaDAO<>(dao, 1, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Object> running = async.supply(blocked ->
+		{
+			await(release);
+			return null;
+		});
+		CompletableFuture<Long> queued = async.count(TestEntity.class);
+
+		assertTrue(failureOf(async.count(TestEntity.class)) instanceof RejectedExecutionException);
+		release.countDown();
+		running.get(10, TimeUnit.SECONDS);
+		assertEquals(Long.valueOf(0), queued.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void timedOutOperationsAreNotRunOnceTheirTurnComes() throws Exception
+	{
+		async = new AsyncJhenJpaDAO<>(dao, 1, 10);
+		async.setTimeout(100, TimeUnit.MILLISECONDS);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Object> running = async.supply(blocked ->
+		{
+			await(release);
+			return null;
+		});
+		AtomicBoolean ran = new AtomicBoolean();
+		CompletableFuture<Object> queued = async.supply(late ->
+		{
+			ran.set(true);
+			return null;
+		});
+
+		assertTrue(failureOf(running) instanceof TimeoutException);
+		assertTrue(failureOf(queued) instanceof TimeoutException);
+		release.countDown();
+		async.close();
+		assertTrue(async.awaitTermination(10, TimeUnit.SECONDS));
+		assertFalse(ran.get());
+	}
+
+	@Test
+	public void cancelledOperationsAreNotRun() throws Exception
+	{
+		async = new AsyncJhenJpaDAO<>(dao, 1, 10);
+		CountDownLatch release = new CountDownLatch(1);
+		async.supply(blocked ->
+		{
+			await(release);
+			return null;
+		});
+		AtomicBoolean ran = new AtomicBoolean();
+		async.supply(late ->
+		{
+			ran.set(true);
+			return null;
+		}).cancel(false);
+
+		release.countDown();
+		async.close();
+		assertTrue(async.awaitTermination(10, TimeUnit.SECONDS));
+		assertFalse(ran.get());
+	}
+
+	@Test
+	public void failedTransactionsAreRolledBack() throws Exception
+	{
+		async = new AsyncJhenJpaDAO<>(dao, 2, 10);
+		Throwable failure = failureOf(async.inTransaction(transactional ->
+		{
+			transactional.store(new TestEntity("rolled back"));
+			throw new IllegalStateException("failed");
+		}));
+
+		assertEquals("failed", failure.getMessage());
+		assertEquals(Long.valueOf(0), async.count(TestEntity.class).get(10, TimeUnit.SECONDS));
+		assertFalse(EntityManagerContext.isBound(TestDAO.PERSISTENCE_UNIT));
+	}
+}
@@ -0,0 +1,98 @@
+package com.apporelbotna.javaee.persistence;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+
+import javax.persistence.EntityManager;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * @author Jendoliver
+ */
+public class EntityManagerContextTest
+{
+	private static final String PERSISTENCE_UNIT = TestDAO.PERSISTENCE_UNIT;
+
+	@After
+	public void releaseAll()
+	{
+		EntityManagerContext.releaseAll();
+	}
+
+	@AfterClass
+	public static void closePersistenceUnit()
+	{
+		EntityManagerFactoryRegistry.closeAll();
+	}
+
+	@Test
+	public void opensOneEntityManagerPerThread() throws Exception
+	{
+		EntityManager current = EntityManagerContext.current(PERSISTENCE_UNIT);
+
+		assertTrue(EntityManagerContext.isBound(PERSISTENCE_UNIT));
+		assertSame(current, EntityManagerContext.current(PERSISTENCE_UNIT));
+		EntityManager other = CompletableFuture.supplyAsync(() ->
+		{
+			EntityManager entityManager = EntityManagerContext.current(PERSISTENCE_UNIT);
+			EntityManagerContext.release(PERSISTENCE_UNIT);
+			return entityManager;
+		}).get();
+		assertNotSame(current, other);
+		assertFalse(other.isOpen());
+	}
+
+	@Test
+	public void releaseClosesTheEntityManager()
+	{
+		EntityManager current = EntityManagerContext.current(PERSISTENCE_UNIT);
+		EntityManagerContext.release(PERSISTENCE_UNIT);
+
+		assertFalse(EntityManagerContext.isBound(PERSISTENCE_UNIT));
+		assertFalse(current.isOpen());
+		assertNotSame(current, EntityManagerContext.current(PERSISTENCE_UNIT));
+	}
+
+	@Test
+	public void releaseOnlyClearsALentEntityManager() throws JhenPersistenceException
+	{
+		EntityManager lent = EntityManagerFactoryRegistry.getEntityManagerFactory(PERSISTENCE_UNIT).createEntityManager();
+		try
+		{
+			EntityManagerContext.bind(PERSISTENCE_UNIT, lent);
+			TestDAO dao = new TestDAO(EntityManagerScope.THREAD);
+			dao.beginTransaction();
+			TestEntity entity = new TestEntity("lent");
+			dao.store(entity);
+			dao.commit();
+
+			assertTrue(lent.isOpen());
+			assertFalse(lent.contains(entity));
+			assertSame(lent, EntityManagerContext.current(PERSISTENCE_UNIT));
+			assertSame(lent, EntityManagerContext.unbind(PERSISTENCE_UNIT));
+			assertFalse(EntityManagerContext.isBound(PERSISTENCE_UNIT));
+			assertNull(EntityManagerContext.unbind(PERSISTENCE_UNIT));
+			dao.delete(TestEntity.class, null);
+		}
+		finally
+		{
+			lent.close();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void bindingTwiceFails()
+	{
+		EntityManagerContext.current(PERSISTENCE_UNIT);
+		EntityManagerContext.bind(PERSISTENCE_UNIT,
+				EntityManagerFactoryRegistry.getEntityManagerFactory(PERSISTENCE_UNIT).createEntityManager());
+	}
+}
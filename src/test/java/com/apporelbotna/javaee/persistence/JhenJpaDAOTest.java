@@ -0,0 +1,418 @@
+package com.apporelbotna.javaee.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jendoliver
+ */
+public class JhenJpaDAOTest
+{
+	private static final String PERSISTENCE_UNIT = TestDAO.PERSISTENCE_UNIT;
+
+	private final TestDAO dao = new TestDAO(EntityManagerScope.THREAD);
+
+	@Before
+	public void deleteAll()
+	{
+		dao.delete(TestEntity.class, null);
+		dao.delete(VersionedEntity.class, null);
+		dao.delete(AssignedEntity.class, null);
+	}
+
+	@After
+	public void releaseAll()
+	{
+		dao.disableCache(TestEntity.class);
+		EntityManagerContext.releaseAll();
+	}
+
+	@AfterClass
+	public static void closePersistenceUnit()
+	{
+		EntityManagerFactoryRegistry.closeAll();
+	}
+
+	private static List<TestEntity> entities(int count)
+	{
+		List<TestEntity> entities = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			entities.add(new TestEntity("entity" + i));
+		return entities;
+	}
+
+	/**
+	 * Counts the statements sent to the database from now on
+	 */
+	private Statistics statistics()
+	{
+		Statistics statistics = dao.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		statistics.setStatisticsEnabled(true);
+		statistics.clear();
+		return statistics;
+	}
+
+	private void rename(Long id, String name) throws JhenPersistenceException
+	{
+		dao.beginTransaction();
+		TestEntity entity = dao.getByKey(TestEntity.class, id);
+		entity.setName(name);
+		dao.store(entity);
+		dao.commit();
+	}
+
+	@Test
+	public void getByKeyIsCachedUntilTheEntityIsWritten() throws JhenPersistenceException
+	{
+		dao.enableCache(TestEntity.class, 100, 1, TimeUnit.HOURS);
+		TestEntity entity = new TestEntity("cached");
+		dao.store(entity);
+
+		TestEntity cached = dao.getByKey(TestEntity.class, entity.getId());
+		assertSame(cached, dao.getByKey(TestEntity.class, entity.getId()));
+		assertEquals(1, dao.getCacheStatistics(TestEntity.class).getHits());
+		assertEquals(1, dao.getCacheStatistics(TestEntity.class).getMisses());
+
+		rename(entity.getId(), "renamed");
+		assertEquals("cached", cached.getName());
+		assertEquals("renamed", dao.getByKey(TestEntity.class, entity.getId()).getName());
+	}
+
+	@Test
+	public void transactionsBypassTheCache() throws JhenPersistenceException
+	{
+		dao.enableCache(TestEntity.class, 100, 1, TimeUnit.HOURS);
+		TestEntity entity = new TestEntity("cached");
+		dao.store(entity);
+		TestEntity cached = dao.getByKey(TestEntity.class, entity.getId());
+
+		dao.beginTransaction();
+		TestEntity managed = dao.getByKey(TestEntity.class, entity.getId());
+		assertNotSame(cached, managed);
+		assertTrue(dao.findAll(TestEntity.class).contains(managed));
+		dao.rollback();
+
+		assertSame(cached, dao.getByKey(TestEntity.class, entity.getId()));
+	}
+
+	@Test
+	public void findAllIsCachedUntilAnEntityIsDeleted() throws JhenPersistenceException
+	{
+		dao.enableCache(TestEntity.class, 100, 1, TimeUnit.HOURS);
+		dao.storeAll(entities(3));
+
+		assertEquals(3, dao.findAll(TestEntity.class).size());
+		assertEquals(3, dao.findAll(TestEntity.class).size());
+		assertEquals(1, dao.getCacheStatistics(TestEntity.class).getHits());
+
+		assertEquals(1, dao.delete(TestEntity.class, (cb, root) -> cb.equal(root.get("name"), "entity0")));
+		assertEquals(2, dao.findAll(TestEntity.class).size());
+	}
+
+	@Test
+	public void rowsReadDuringATransactionAreEvictedOnCommit() throws Exception
+	{
+		dao.enableCache(TestEntity.class, 100, 1, TimeUnit.HOURS);
+		TestEntity entity = new TestEntity("before");
+		dao.store(entity);
+
+		dao.beginTransaction();
+		TestEntity managed = dao.getByKey(TestEntity.class, entity.getId());
+		managed.setName("after");
+		dao.store(managed);
+		// Another thread caches the committed row while the transaction is still in progress
+		TestDAO other = new TestDAO(EntityManagerScope.THREAD);
+		assertEquals("before", CompletableFuture.supplyAsync(() -> other.getByKey(TestEntity.class, entity.getId()).getName())
+				.get());
+		dao.commit();
+
+		assertEquals("after", dao.getByKey(TestEntity.class, entity.getId()).getName());
+	}
+
+	@Test
+	public void rollbackLeavesTheCachedRowsValid() throws JhenPersistenceException
+	{
+		dao.enableCache(TestEntity.class, 100, 1, TimeUnit.HOURS);
+		TestEntity entity = new TestEntity("kept");
+		dao.store(entity);
+
+		dao.beginTransaction();
+		TestEntity managed = dao.getByKey(TestEntity.class, entity.getId());
+		managed.setName("discarded");
+		dao.store(managed);
+		dao.rollback();
+
+		assertEquals("kept", dao.getByKey(TestEntity.class, entity.getId()).getName());
+	}
+
+	@Test
+	public void cachedWritesLeaveNoEntityManagerBound() throws JhenPersistenceException
+	{
+		dao.enableCache(TestEntity.class, 100, 1, TimeUnit.HOURS);
+		TestEntity entity = new TestEntity("cached");
+
+		dao.store(entity);
+		assertFalse(EntityManagerContext.isBound(PERSISTENCE_UNIT));
+
+		entity.setName("renamed");
+		dao.store(entity);
+		assertFalse(EntityManagerContext.isBound(PERSISTENCE_UNIT));
+
+		assertEquals(1, dao.delete(TestEntity.class, null));
+		assertFalse(EntityManagerContext.isBound(PERSISTENCE_UNIT));
+	}
+
+	@Test
+	public void readsLeaveNoEntityManagerBound() throws JhenPersistenceException
+	{
+		TestEntity entity = new TestEntity("read");
+		dao.store(entity);
+		assertFalse(EntityManagerContext.isBound(PERSISTENCE_UNIT));
+
+		assertEquals("read", dao.getByKey(TestEntity.class, entity.getId()).getName());
+		assertEquals(1, dao.findAll(TestEntity.class).size());
+		assertEquals(1, dao.count(TestEntity.class));
+		assertTrue(dao.isPersisted(entity));
+		assertFalse(EntityManagerContext.isBound(PERSISTENCE_UNIT));
+	}
+
+	@Test
+	public void transactionKeepsItsEntityManagerUntilCommit() throws JhenPersistenceException
+	{
+		dao.beginTransaction();
+		EntityManager entityManager = EntityManagerContext.current(PERSISTENCE_UNIT);
+		TestEntity entity = new TestEntity("transaction");
+		dao.store(entity);
+
+		assertSame(entity, dao.getByKey(TestEntity.class, entity.getId()));
+		assertSame(entityManager, EntityManagerContext.current(PERSISTENCE_UNIT));
+		dao.commit();
+
+		assertFalse(EntityManagerContext.isBound(PERSISTENCE_UNIT));
+		assertFalse(entityManager.isOpen());
+		assertNotNull(dao.getByKey(TestEntity.class, entity.getId()));
+	}
+
+	@Test
+	public void rollbackReleasesTheEntityManager() throws JhenPersistenceException
+	{
+		dao.beginTransaction();
+		TestEntity entity = new TestEntity("rolled back");
+		dao.store(entity);
+		dao.rollback();
+
+		assertFalse(EntityManagerContext.isBound(PERSISTENCE_UNIT));
+		assertNull(dao.getByKey(TestEntity.class, entity.getId()));
+	}
+
+	@Test
+	public void daosOfTheSameThreadShareItsTransaction() throws JhenPersistenceException
+	{
+		TestDAO other = new TestDAO(EntityManagerScope.THREAD);
+		dao.beginTransaction();
+		other.store(new TestEntity("shared"));
+		dao.rollback();
+
+		assertEquals(0, other.count(TestEntity.class));
+	}
+
+	@Test
+	public void storeAllReportsEveryChunk() throws JhenPersistenceException
+	{
+		List<Integer> chunks = new ArrayList<>();
+		dao.setBatchSize(10);
+		dao.setBatchProgressListener((chunk, entities, elapsedNanos) -> chunks.add(entities));
+		dao.storeAll(entities(25));
+
+		assertEquals(Arrays.asList(10, 10, 5), chunks);
+		assertEquals(25, dao.count(TestEntity.class));
+		assertFalse(EntityManagerContext.isBound(PERSISTENCE_UNIT));
+	}
+
+	@Test
+	public void failedBatchRollsBackEverything() throws JhenPersistenceException
+	{
+		List<TestEntity> entities = entities(25);
+		entities.get(24).setName("entity0");
+		dao.setBatchSize(10);
+		try
+		{
+			dao.storeAll(entities);
+			fail("The duplicated name should have been rejected");
+		}
+		catch (JhenPersistenceException e)
+		{
+			assertEquals(JhenPersistenceException.Reason.BATCH_ERROR.getMsg(), e.getMessage());
+		}
+
+		assertEquals(0, dao.count(TestEntity.class));
+		assertFalse(EntityManagerContext.isBound(PERSISTENCE_UNIT));
+	}
+
+	@Test
+	public void failedBatchKeepsTheCommittedChunks() throws JhenPersistenceException
+	{
+		List<TestEntity> entities = entities(25);
+		entities.get(24).setName("entity0");
+		dao.setBatchSize(10);
+		dao.setCommitInterval(10);
+		try
+		{
+			dao.storeAll(entities);
+			fail("The duplicated name should have been rejected");
+		}
+		catch (JhenPersistenceException e)
+		{
+			// The last chunk is rolled back
+		}
+
+		assertEquals(20, dao.count(TestEntity.class));
+	}
+
+	@Test
+	public void batchInAnOuterTransactionIsNotCommitted() throws JhenPersistenceException
+	{
+		dao.beginTransaction();
+		dao.storeAll(entities(5));
+		assertTrue(EntityManagerContext.isBound(PERSISTENCE_UNIT));
+		dao.rollback();
+
+		assertEquals(0, dao.count(TestEntity.class));
+	}
+
+	@Test
+	public void updatesAndDeletesInBatches() throws JhenPersistenceException
+	{
+		List<TestEntity> entities = entities(12);
+		dao.setBatchSize(5);
+		dao.storeAll(entities);
+
+		entities.forEach(entity -> entity.setName(entity.getName() + "'"));
+		dao.updateAll(entities);
+		assertTrue(dao.findAll(TestEntity.class).stream().allMatch(entity -> entity.getName().endsWith("'")));
+
+		dao.deleteAll(entities.subList(0, 7));
+		assertEquals(entities.subList(7, 12).stream().map(TestEntity::getId).collect(Collectors.toSet()),
+				dao.findAll(TestEntity.class).stream().map(TestEntity::getId).collect(Collectors.toSet()));
+	}
+
+	@Test
+	public void deletesByCriteria() throws JhenPersistenceException
+	{
+		dao.storeAll(entities(12));
+
+		assertEquals(3, dao.delete(TestEntity.class, (cb, root) -> cb.like(root.get("name"), "entity1%")));
+		assertEquals(9, dao.count(TestEntity.class));
+	}
+
+	@Test
+	public void entitiesWithoutIdAreNew()
+	{
+		Statistics statistics = statistics();
+
+		assertFalse(dao.isPersisted(new TestEntity("new")));
+		assertFalse(dao.isPersisted(new VersionedEntity(null, "new")));
+		assertEquals(0, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	public void generatedIdsAreTrustedWithoutQuery()
+	{
+		TestEntity detached = new TestEntity("detached");
+		detached.setId(Long.MAX_VALUE);
+		Statistics statistics = statistics();
+
+		assertTrue(dao.isPersisted(detached));
+		assertEquals(0, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	public void versionTellsVersionedEntitiesApart() throws JhenPersistenceException
+	{
+		VersionedEntity entity = new VersionedEntity("versioned", "first");
+		Statistics statistics = statistics();
+		assertFalse(dao.isPersisted(entity));
+		assertEquals(0, statistics.getPrepareStatementCount());
+
+		dao.store(entity);
+		assertNotNull(entity.getVersion());
+		statistics.clear();
+		assertTrue(dao.isPersisted(entity));
+		assertEquals(0, statistics.getPrepareStatementCount());
+
+		entity.setName("second");
+		dao.store(entity);
+		assertEquals("second", dao.getByKey(VersionedEntity.class, "versioned").getName());
+		assertEquals(1, dao.count(VersionedEntity.class));
+	}
+
+	@Test
+	public void assignedIdsWithoutVersionAskTheDatabase() throws JhenPersistenceException
+	{
+		AssignedEntity entity = new AssignedEntity("assigned", "first");
+		Statistics statistics = statistics();
+		assertFalse(dao.isPersisted(entity));
+		assertEquals(1, statistics.getQueryExecutionCount());
+
+		dao.store(entity);
+		statistics.clear();
+		assertTrue(dao.isPersisted(entity));
+		assertEquals(1, statistics.getQueryExecutionCount());
+	}
+
+	@Test
+	public void detachedEntitiesAreMergedInsteadOfInsertedAgain() throws JhenPersistenceException
+	{
+		TestEntity generated = new TestEntity("generated");
+		AssignedEntity assigned = new AssignedEntity("assigned", "first");
+		dao.store(generated);
+		dao.store(assigned);
+
+		generated.setName("generated again");
+		assigned.setName("second");
+		dao.store(generated);
+		dao.store(assigned);
+
+		assertEquals(1, dao.count(TestEntity.class));
+		assertEquals(1, dao.count(AssignedEntity.class));
+		assertEquals("generated again", dao.getByKey(TestEntity.class, generated.getId()).getName());
+		assertEquals("second", dao.getByKey(AssignedEntity.class, "assigned").getName());
+	}
+
+	@Test
+	public void storeAllChecksExistenceInOneQuery() throws JhenPersistenceException
+	{
+		dao.storeAll(Arrays.asList(new AssignedEntity("a", "a"), new AssignedEntity("b", "b")));
+		List<AssignedEntity> mixed = Arrays.asList(new AssignedEntity("a", "a'"), new AssignedEntity("c", "c"),
+				new AssignedEntity("b", "b'"), new AssignedEntity("d", "d"));
+		Statistics statistics = statistics();
+		dao.storeAll(mixed);
+
+		assertEquals(1, statistics.getQueryExecutionCount());
+		assertEquals(4, dao.count(AssignedEntity.class));
+		assertEquals("b'", dao.getByKey(AssignedEntity.class, "b").getName());
+	}
+}
@@ -0,0 +1,27 @@
+package com.apporelbotna.javaee.persistence;
+
+/**
+ * DAO of the test persistence unit, which keeps its tables in an embedded H2 database
+ *
+ * @author Jendoliver
+ */
+public class TestDAO extends JhenJpaDAO
+{
+	public static final String PERSISTENCE_UNIT = "com.apporelbotna.javaee.test";
+
+	public TestDAO()
+	{
+		super();
+	}
+
+	public TestDAO(EntityManagerScope scope)
+	{
+		super(scope);
+	}
+
+	@Override
+	protected String getPersistenceUnitName()
+	{
+		return PERSISTENCE_UNIT;
+	}
+}
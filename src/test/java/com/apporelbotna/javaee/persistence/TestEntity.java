@@ -0,0 +1,39 @@
+package com.apporelbotna.javaee.persistence;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+/**
+ * Entity with a generated id, stored by most of the persistence tests. Its name is unique, so
+ * storing the same one twice makes a write fail.
+ *
+ * @author Jendoliver
+ */
+@Entity
+@Table(name = "test_entity")
+public class TestEntity extends IdentifiableSequence
+{
+	private String name;
+
+	public TestEntity()
+	{
+		// JPA Constructor
+	}
+
+	public TestEntity(String name)
+	{
+		this.name = name;
+	}
+
+	@Column(unique = true)
+	public String getName()
+	{
+		return name;
+	}
+
+	public void setName(String name)
+	{
+		this.name = name;
+	}
+}
@@ -0,0 +1,63 @@
+package com.apporelbotna.javaee.persistence;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+/**
+ * Entity with an id assigned by the application and a version, so whether it is persisted can be
+ * told from its version
+ *
+ * @author Jendoliver
+ */
+@Entity
+@Table(name = "versioned_entity")
+public class VersionedEntity implements Identifiable<String>
+{
+	@Id
+	private String id;
+
+	@Version
+	private Long version;
+
+	private String name;
+
+	public VersionedEntity()
+	{
+		// JPA Constructor
+	}
+
+	public VersionedEntity(String id, String name)
+	{
+		this.id = id;
+		this.name = name;
+	}
+
+	@Override
+	public String getId()
+	{
+		return id;
+	}
+
+	@Override
+	public void setId(String id)
+	{
+		this.id = id;
+	}
+
+	public Long getVersion()
+	{
+		return version;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public void setName(String name)
+	{
+		this.name = name;
+	}
+}
@@ -0,0 +1,118 @@
+package com.apporelbotna.javaee.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.TriggerBuilder;
+
+import com.apporelbotna.javaee.persistence.EntityManagerFactoryRegistry;
+
+/**
+ * Runs two clustered nodes in the same JVM, sharing an embedded H2 job store, and checks that
+ * every firing of a task scheduled by both of them runs on one single node
+ *
+ * @author Jendoliver
+ */
+public class ClusteredSchedulerTest
+{
+	private static final String PERSISTENCE_UNIT = "com.apporelbotna.javaee.test";
+	private static final String URL = "jdbc:h2:mem:test;DB_CLOSE_DELAY=-1";
+
+	/**
+	 * Instance ids of the nodes which ran each firing, by its scheduled fire time
+	 */
+	private static final Map<Long, List<String>> FIRINGS = new ConcurrentHashMap<>();
+
+	public static class RecordingJob implements BaseJob
+	{
+		@Override
+		public JobDetail getJobDetail()
+		{
+			return JobBuilder.newJob(getClass()).withIdentity("recordingJob").build();
+		}
+
+		@Override
+		public void execute(JobExecutionContext context) throws JobExecutionException
+		{
+			try
+			{
+				FIRINGS.computeIfAbsent(context.getScheduledFireTime().getTime(), time -> new CopyOnWriteArrayList<>())
+						.add(context.getScheduler().getSchedulerInstanceId());
+			}
+			catch (SchedulerException e)
+			{
+				throw new JobExecutionException(e);
+			}
+		}
+	}
+
+	@BeforeClass
+	public static void createJobStore() throws SQLException
+	{
+		try (Connection connection = DriverManager.getConnection(URL, "sa", ""))
+		{
+			JdbcJobStoreSchema.create(connection, "h2");
+		}
+	}
+
+	@AfterClass
+	public static void closePersistenceUnit()
+	{
+		EntityManagerFactoryRegistry.closeAll();
+	}
+
+	@Test
+	public void eachFiringRunsOnOneNode() throws InterruptedException
+	{
+		List<TaskManager> nodes = new ArrayList<>();
+		for (String instanceId : new String[] { "node1", "node2" })
+		{
+			TaskManager node = new TaskManager(SchedulerConfiguration.jdbc(PERSISTENCE_UNIT)
+					.credentials("sa", "")
+					.clustered(1, TimeUnit.SECONDS)
+					.instanceId(instanceId)
+					.threadCount(2)
+					.isolated());
+			node.add(new Task(new RecordingJob(), TriggerBuilder.newTrigger()
+					.withIdentity("everySecond")
+					.withSchedule(SimpleScheduleBuilder.repeatSecondlyForever())
+					.startNow()
+					.build()));
+			node.start();
+			nodes.add(node);
+		}
+
+		try
+		{
+			Thread.sleep(5000);
+		}
+		finally
+		{
+			for (TaskManager node : nodes)
+				node.shutdown();
+		}
+
+		assertTrue("The task fired only " + FIRINGS.size() + " times", FIRINGS.size() >= 3);
+		for (Map.Entry<Long, List<String>> firing : FIRINGS.entrySet())
+			assertEquals("Nodes which ran the firing of " + firing.getKey(), 1, firing.getValue().size());
+	}
+}
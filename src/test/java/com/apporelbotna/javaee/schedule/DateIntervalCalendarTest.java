@@ -0,0 +1,116 @@
+package com.apporelbotna.javaee.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerUtils;
+import org.quartz.spi.OperableTrigger;
+
+import com.apporelbotna.javaee.date.DateInterval;
+import com.apporelbotna.javaee.date.DateIntervalSet;
+
+/**
+ * @author Jendoliver
+ */
+public class DateIntervalCalendarTest
+{
+	private static final ZoneId UTC = ZoneOffset.UTC;
+
+	private static LocalDateTime at(int hour)
+	{
+		return LocalDateTime.of(2030, 1, 1, 0, 0).plusHours(hour);
+	}
+
+	private static long millisAt(int hour)
+	{
+		return at(hour).toInstant(ZoneOffset.UTC).toEpochMilli();
+	}
+
+	private static DateInterval interval(int fromHour, int toHour)
+	{
+		return DateInterval.of(at(fromHour), at(toHour));
+	}
+
+	private static DateIntervalCalendar calendar(DateInterval... blackouts)
+	{
+		return new DateIntervalCalendar(Arrays.asList(blackouts), UTC);
+	}
+
+	@Test
+	public void excludesTheStartAndIncludesTheEnd()
+	{
+		DateIntervalCalendar calendar = calendar(interval(2, 4));
+
+		assertTrue(calendar.isTimeIncluded(millisAt(2) - 1));
+		assertFalse(calendar.isTimeIncluded(millisAt(2)));
+		assertFalse(calendar.isTimeIncluded(millisAt(4) - 1));
+		assertTrue(calendar.isTimeIncluded(millisAt(4)));
+	}
+
+	@Test
+	public void nextIncludedTimeSkipsTheBlackouts()
+	{
+		DateIntervalCalendar calendar = calendar(interval(2, 4), interval(3, 6), interval(8, 9));
+
+		assertEquals(2, calendar.size());
+		assertEquals(millisAt(1) + 1, calendar.getNextIncludedTime(millisAt(1)));
+		assertEquals(millisAt(6), calendar.getNextIncludedTime(millisAt(2) - 1));
+		assertEquals(millisAt(6), calendar.getNextIncludedTime(millisAt(3)));
+		assertEquals(millisAt(9), calendar.getNextIncludedTime(millisAt(8)));
+	}
+
+	@Test
+	public void nextIncludedTimeSkipsTheBlackoutsOfTheBaseCalendar()
+	{
+		DateIntervalCalendar calendar = new DateIntervalCalendar(DateIntervalSet.of(interval(2, 4)), UTC,
+				calendar(interval(4, 5)));
+
+		assertFalse(calendar.isTimeIncluded(millisAt(4)));
+		assertEquals(millisAt(5), calendar.getNextIncludedTime(millisAt(3)));
+	}
+
+	@Test
+	public void datesAreTakenInTheTimeZoneOfTheCalendar()
+	{
+		DateIntervalCalendar calendar = new DateIntervalCalendar(Arrays.asList(interval(2, 4)), ZoneOffset.ofHours(1));
+
+		assertTrue(calendar.isTimeIncluded(millisAt(3)));
+		assertFalse(calendar.isTimeIncluded(millisAt(1)));
+	}
+
+	@Test
+	public void triggersDontFireDuringTheBlackouts()
+	{
+		OperableTrigger hourly = (OperableTrigger)TriggerBuilder.newTrigger()
+				.withIdentity("hourly")
+				.withSchedule(SimpleScheduleBuilder.repeatHourlyForever())
+				.startAt(new Date(millisAt(0)))
+				.build();
+
+		List<Date> expected = new ArrayList<>();
+		for (int hour : new int[] { 0, 1, 4, 5 })
+			expected.add(new Date(millisAt(hour)));
+		assertEquals(expected, TriggerUtils.computeFireTimes(hourly, calendar(interval(2, 4)), 4));
+	}
+
+	@Test
+	public void equalsComparesTheExcludedTimes()
+	{
+		assertEquals(calendar(interval(2, 4), interval(3, 6)), calendar(interval(2, 6)));
+		assertEquals(calendar(interval(2, 6)).hashCode(), calendar(interval(2, 6)).hashCode());
+		assertNotEquals(calendar(interval(2, 6)), calendar(interval(2, 5)));
+	}
+}
@@ -0,0 +1,132 @@
+package com.apporelbotna.javaee.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.quartz.JobExecutionContext;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+
+/**
+ * Runs bursts of slow one-shot tasks on the thread pools of {@link SchedulerConfiguration}, and
+ * checks how many of them run at once
+ *
+ * @author Jendoliver
+ */
+public class ExecutorThreadPoolTest
+{
+	private static final int TASKS = 6;
+	private static final long DURATION_MILLIS = 300;
+
+	private static final ConcurrentMap<String, AtomicInteger> RUNS = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, AtomicInteger> RUNNING = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, AtomicInteger> MAX_RUNNING = new ConcurrentHashMap<>();
+
+	/**
+	 * Counts its executions by the group of its job
+	 */
+	public static class SlowJob implements BaseJob
+	{
+		@Override
+		public void execute(JobExecutionContext context)
+		{
+			String group = context.getJobDetail().getKey().getGroup();
+			int running = counter(RUNNING, group).incrementAndGet();
+			counter(MAX_RUNNING, group).accumulateAndGet(running, Math::max);
+			try
+			{
+				Thread.sleep(DURATION_MILLIS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			finally
+			{
+				counter(RUNNING, group).decrementAndGet();
+				counter(RUNS, group).incrementAndGet();
+			}
+		}
+	}
+
+	private TaskManager manager;
+
+	@After
+	public void shutdown()
+	{
+		if (manager != null)
+			manager.forceShutdown();
+	}
+
+	private static AtomicInteger counter(ConcurrentMap<String, AtomicInteger> counters, String group)
+	{
+		return counters.computeIfAbsent(group, key -> new AtomicInteger());
+	}
+
+	private static Trigger oneShot(String name, String group)
+	{
+		return TriggerBuilder.newTrigger().withIdentity(name, group).startNow().build();
+	}
+
+	private void start(SchedulerConfiguration configuration, String group)
+	{
+		manager = new TaskManager(configuration.schedulerName(group).isolated());
+		for (int i = 0; i < TASKS; i++)
+			manager.add(new Task(new SlowJob(), oneShot(group + i, group)));
+		manager.start();
+	}
+
+	private static void awaitRuns(String group) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + 10000;
+		while (counter(RUNS, group).get() < TASKS)
+		{
+			assertTrue("Only " + counter(RUNS, group) + " tasks of " + group + " have run",
+					System.currentTimeMillis() < deadline);
+			Thread.sleep(20);
+		}
+	}
+
+	@Test
+	public void virtualThreadsRunEveryTask() throws InterruptedException
+	{
+		start(SchedulerConfiguration.inMemory().virtualThreads(TASKS), "virtual");
+
+		awaitRuns("virtual");
+		assertEquals(TASKS, MAX_RUNNING.get("virtual").get());
+	}
+
+	@Test
+	public void workStealingRunsAtMostTheThreadCount() throws InterruptedException
+	{
+		start(SchedulerConfiguration.inMemory().workStealing(4, 3), "stealing");
+
+		awaitRuns("stealing");
+		assertEquals(3, MAX_RUNNING.get("stealing").get());
+	}
+
+	@Test
+	public void groupConcurrencyQueuesTheRest() throws InterruptedException
+	{
+		start(SchedulerConfiguration.inMemory().threadCount(TASKS).groupConcurrency("limited", 2), "limited");
+
+		int maxQueueDepth = 0;
+		long deadline = System.currentTimeMillis() + 10000;
+		while (counter(RUNS, "limited").get() < TASKS)
+		{
+			assertTrue(System.currentTimeMillis() < deadline);
+			maxQueueDepth = Math.max(maxQueueDepth, manager.getJobThrottle().getQueueDepth("limited"));
+			Thread.sleep(20);
+		}
+
+		assertEquals(2, MAX_RUNNING.get("limited").get());
+		assertTrue(maxQueueDepth > 0);
+		assertEquals(0, manager.getJobThrottle().getQueueDepth("limited"));
+	}
+}
@@ -0,0 +1,160 @@
+package com.apporelbotna.javaee.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+
+/**
+ * Fires every job 5 times in a row, much faster than it runs, so each {@link ExecutionPolicy}
+ * decides how many of the fires run and how many are skipped
+ *
+ * @author Jendoliver
+ */
+public class JobThrottleTest
+{
+	private static final int FIRES = 5;
+	private static final long DURATION_MILLIS = 400;
+
+	private static final ConcurrentMap<String, AtomicInteger> RUNNING = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, AtomicInteger> MAX_RUNNING = new ConcurrentHashMap<>();
+
+	public static class SlowJob implements BaseJob
+	{
+		@Override
+		public void execute(JobExecutionContext context)
+		{
+			String name = context.getJobDetail().getKey().getName();
+			int running = RUNNING.computeIfAbsent(name, key -> new AtomicInteger()).incrementAndGet();
+			MAX_RUNNING.computeIfAbsent(name, key -> new AtomicInteger()).accumulateAndGet(running, Math::max);
+			try
+			{
+				Thread.sleep(DURATION_MILLIS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			finally
+			{
+				RUNNING.get(name).decrementAndGet();
+			}
+		}
+	}
+
+	@JobPolicy(ExecutionPolicy.Overlap.COALESCE)
+	public static class CoalescingJob extends SlowJob
+	{
+	}
+
+	private TaskManager manager;
+
+	@After
+	public void shutdown()
+	{
+		if (manager != null)
+			manager.forceShutdown();
+	}
+
+	private static Trigger burst(String name)
+	{
+		return TriggerBuilder.newTrigger()
+				.withIdentity(name)
+				.withSchedule(SimpleScheduleBuilder.simpleSchedule().withIntervalInMilliseconds(20).withRepeatCount(FIRES - 1))
+				.startNow()
+				.build();
+	}
+
+	private JobStatistics run(Task task) throws InterruptedException
+	{
+		manager = new TaskManager(SchedulerConfiguration.inMemory().schedulerName("throttle").threadCount(10).isolated());
+		manager.add(task);
+		manager.start();
+
+		JobKey key = task.getJobDetail().getKey();
+		long deadline = System.currentTimeMillis() + 10000;
+		JobStatistics statistics = manager.getMetrics().getJobStatistics(key);
+		while (statistics == null || statistics.getRuns() + statistics.getSkips() < FIRES || statistics.getRunning() > 0)
+		{
+			assertTrue("The fires of " + key + " never finished: " + statistics, System.currentTimeMillis() < deadline);
+			Thread.sleep(20);
+			statistics = manager.getMetrics().getJobStatistics(key);
+		}
+		return statistics;
+	}
+
+	private static void assertRuns(String name, int runs, int maxRunning, JobStatistics statistics)
+	{
+		assertEquals(statistics.toString(), runs, statistics.getRuns());
+		assertEquals(statistics.toString(), FIRES - runs, statistics.getSkips());
+		assertEquals(statistics.toString(), maxRunning, statistics.getMaxRunning());
+		assertEquals(maxRunning, MAX_RUNNING.get(name).get());
+	}
+
+	@Test
+	public void parallelRunsEveryFireAtOnce() throws InterruptedException
+	{
+		assertRuns("parallel", FIRES, FIRES, run(new Task(new SlowJob(), burst("parallel"))));
+	}
+
+	@Test
+	public void parallelWithALimitSkipsTheRest() throws InterruptedException
+	{
+		JobStatistics statistics = run(new Task(new SlowJob(), burst("parallel2"), ExecutionPolicy.parallel(2)));
+
+		assertRuns("parallel2", 2, 2, statistics);
+		assertEquals(FIRES - 2, manager.getJobThrottle().getSkippedCount(new JobKey("parallel2")));
+	}
+
+	@Test
+	public void skipIfRunningOnlyRunsTheFirst() throws InterruptedException
+	{
+		assertRuns("skip", 1, 1, run(new Task(new SlowJob(), burst("skip"), ExecutionPolicy.skipIfRunning())));
+	}
+
+	@Test
+	public void coalesceRunsOnceMoreAfterTheOverrun() throws InterruptedException
+	{
+		assertRuns("coalesce", 2, 1, run(new Task(new CoalescingJob(), burst("coalesce"))));
+	}
+
+	@Test
+	public void queueRunsTheWaitingOnesOneAfterAnother() throws InterruptedException
+	{
+		assertRuns("queue", 3, 1, run(new Task(new SlowJob(), burst("queue"), ExecutionPolicy.queue(2))));
+	}
+
+	/**
+	 * The queued executions are only measured once they get their turn
+	 */
+	@Test
+	public void durationLeavesTheWaitOut() throws InterruptedException
+	{
+		JobStatistics statistics = run(new Task(new SlowJob(), burst("measured"), ExecutionPolicy.queue(2)));
+
+		assertTrue(statistics.toString(),
+				statistics.getDuration().getMax() < TimeUnit.MILLISECONDS.toNanos(DURATION_MILLIS * 3 / 2));
+		assertEquals(0, statistics.getRunning());
+	}
+
+	@Test
+	public void policiesAreWrittenAndParsedBack()
+	{
+		for (ExecutionPolicy policy : new ExecutionPolicy[] { ExecutionPolicy.parallel(), ExecutionPolicy.parallel(3),
+				ExecutionPolicy.skipIfRunning(), ExecutionPolicy.coalesce(), ExecutionPolicy.queue(5) })
+			assertEquals(policy, ExecutionPolicy.parse(policy.toString()));
+		assertEquals(ExecutionPolicy.coalesce(), ExecutionPolicy.of(CoalescingJob.class));
+		assertEquals(ExecutionPolicy.parallel(), ExecutionPolicy.of(SlowJob.class));
+	}
+}
@@ -0,0 +1,167 @@
+package com.apporelbotna.javaee.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.quartz.JobExecutionContext;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+
+import com.apporelbotna.javaee.persistence.EntityManagerFactoryRegistry;
+
+/**
+ * Starts TaskManagers over an embedded H2 job store which keeps the tasks of the previous ones, as
+ * an application being deployed again would
+ *
+ * @author Jendoliver
+ */
+public class TaskManagerRestartTest
+{
+	private static final String PERSISTENCE_UNIT = "com.apporelbotna.javaee.test";
+	private static final String URL = "jdbc:h2:mem:test;DB_CLOSE_DELAY=-1";
+	/**
+	 * Tables of their own, so they don't mix with the ones of {@link ClusteredSchedulerTest}
+	 */
+	private static final String TABLE_PREFIX = "RESTART_";
+
+	public static class IdleJob implements BaseJob
+	{
+		@Override
+		public void execute(JobExecutionContext context)
+		{
+		}
+	}
+
+	@BeforeClass
+	public static void createJobStore() throws SQLException
+	{
+		try (Connection connection = DriverManager.getConnection(URL, "sa", ""))
+		{
+			JdbcJobStoreSchema.create(connection, "h2", TABLE_PREFIX);
+		}
+	}
+
+	@AfterClass
+	public static void closePersistenceUnit()
+	{
+		EntityManagerFactoryRegistry.closeAll();
+	}
+
+	private static TaskManager manager(String schedulerName, Task... tasks)
+	{
+		TaskManager manager = new TaskManager(SchedulerConfiguration.jdbc(PERSISTENCE_UNIT)
+				.credentials("sa", "")
+				.tablePrefix(TABLE_PREFIX)
+				.schedulerName(schedulerName)
+				.threadCount(1)
+				.isolated());
+		for (Task task : tasks)
+			manager.add(task);
+		return manager;
+	}
+
+	/**
+	 * A task which fires every given hours, starting after as many hours as the delay given
+	 */
+	private static Task hourly(String name, int hours, int delay)
+	{
+		return new Task(new IdleJob(), TriggerBuilder.newTrigger()
+				.withIdentity(name)
+				.withSchedule(SimpleScheduleBuilder.repeatHourlyForever(hours))
+				.startAt(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(delay)))
+				.build());
+	}
+
+	private static Trigger stored(TaskManager manager, Task task) throws SchedulerException
+	{
+		return manager.getScheduler().getTrigger(task.getKey());
+	}
+
+	@Test
+	public void unchangedTasksKeepTheirStoredTrigger() throws SchedulerException
+	{
+		Task kept = hourly("kept", 1, 1);
+		Task changed = hourly("changed", 1, 1);
+		TaskManager first = manager("restart", kept, changed);
+		first.start();
+		Date keptFireTime = stored(first, kept).getNextFireTime();
+		Date changedFireTime = stored(first, changed).getNextFireTime();
+		first.shutdown();
+
+		// Only the start time of the kept one differs, which isn't part of its definition
+		Task keptAgain = hourly("kept", 1, 2);
+		Task changedAgain = hourly("changed", 2, 2);
+		assertEquals(kept.getFingerprint(), keptAgain.getFingerprint());
+		assertNotEquals(changed.getFingerprint(), changedAgain.getFingerprint());
+
+		TaskManager second = manager("restart", keptAgain, changedAgain);
+		second.start();
+		try
+		{
+			assertEquals(keptFireTime, stored(second, keptAgain).getNextFireTime());
+			assertNotEquals(changedFireTime, stored(second, changedAgain).getNextFireTime());
+			assertEquals(TimeUnit.HOURS.toMillis(2), ((SimpleTrigger)stored(second, changedAgain)).getRepeatInterval());
+		}
+		finally
+		{
+			second.shutdown();
+		}
+	}
+
+	@Test
+	public void startAsyncCompletesOnceStarted() throws Exception
+	{
+		TaskManager manager = manager("async", hourly("async", 1, 1));
+		CompletableFuture<TaskManager> started = manager.startAsync();
+		try
+		{
+			assertSame(manager, started.get(10, TimeUnit.SECONDS));
+			assertTrue(manager.isStarted());
+			assertTrue(manager.getScheduler().checkExists(manager.getTasks().iterator().next().getKey()));
+		}
+		finally
+		{
+			manager.shutdown();
+		}
+	}
+
+	@Test
+	public void failedStartsShutTheSchedulerDown() throws Exception
+	{
+		TaskManager manager = manager("failed", new Task(new IdleJob(), TriggerBuilder.newTrigger()
+				.withIdentity("withoutCalendar")
+				.modifiedByCalendar("missing")
+				.startNow()
+				.build()));
+		try
+		{
+			manager.startAsync().get(10, TimeUnit.SECONDS);
+			fail("The calendar of the trigger doesn't exist");
+		}
+		catch (ExecutionException e)
+		{
+			assertTrue(e.getCause().toString(), e.getCause() instanceof SchedulerException);
+		}
+
+		assertFalse(manager.isStarted());
+		assertTrue(manager.getScheduler().isShutdown());
+	}
+}
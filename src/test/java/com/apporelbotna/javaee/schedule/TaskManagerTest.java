@@ -0,0 +1,207 @@
+package com.apporelbotna.javaee.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.quartz.JobExecutionContext;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+
+/**
+ * Adds, removes, reschedules and pauses tasks of a TaskManager which has already started
+ *
+ * @author Jendoliver
+ */
+public class TaskManagerTest
+{
+	private static volatile CountDownLatch fired;
+
+	public static class LatchJob implements BaseJob
+	{
+		@Override
+		public void execute(JobExecutionContext context)
+		{
+			fired.countDown();
+		}
+	}
+
+	private TaskManager manager;
+
+	@Before
+	public void start()
+	{
+		fired = new CountDownLatch(1);
+		manager = new TaskManager(SchedulerConfiguration.inMemory().schedulerName("live").isolated());
+		manager.start();
+		assertTrue(manager.isStarted());
+	}
+
+	@After
+	public void shutdown()
+	{
+		manager.forceShutdown();
+	}
+
+	/**
+	 * A task which fires every hour, starting in an hour, so it stays scheduled during the test
+	 */
+	private static Task hourly(String name, String group)
+	{
+		return new Task(new LatchJob(), TriggerBuilder.newTrigger()
+				.withIdentity(name, group)
+				.withSchedule(SimpleScheduleBuilder.repeatHourlyForever())
+				.startAt(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+				.build());
+	}
+
+	private TriggerState stateOf(TriggerKey key) throws SchedulerException
+	{
+		return manager.getScheduler().getTriggerState(key);
+	}
+
+	private int scheduledCount(String group) throws SchedulerException
+	{
+		return manager.getScheduler().getTriggerKeys(GroupMatcher.triggerGroupEquals(group)).size();
+	}
+
+	@Test
+	public void tasksAddedAfterTheStartAreScheduled() throws InterruptedException
+	{
+		manager.add(new Task(new LatchJob(), TriggerBuilder.newTrigger().withIdentity("now").startNow().build()));
+
+		assertTrue(fired.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void removedTasksAreUnscheduled() throws SchedulerException
+	{
+		Task task = hourly("removed", "tenants");
+		manager.add(task);
+		assertTrue(manager.getScheduler().checkExists(task.getKey()));
+
+		assertTrue(manager.remove(task.getKey()));
+
+		assertFalse(manager.getScheduler().checkExists(task.getKey()));
+		assertFalse(manager.getScheduler().checkExists(task.getJobDetail().getKey()));
+		assertNull(manager.getTask(task.getKey()));
+		assertFalse(manager.remove(task.getKey()));
+	}
+
+	@Test
+	public void rescheduledTasksFireWithTheNewTrigger() throws SchedulerException, InterruptedException
+	{
+		Task task = hourly("rescheduled", "tenants");
+		manager.add(task);
+
+		Trigger now = TriggerBuilder.newTrigger().withIdentity("other").startNow().build();
+		assertTrue(manager.reschedule(task.getKey(), now));
+
+		assertTrue(fired.await(5, TimeUnit.SECONDS));
+		// The new trigger takes over the key of the current one
+		assertEquals(task.getKey(), manager.getTask(task.getKey()).getTrigger().getKey());
+		assertFalse(manager.reschedule(TriggerKey.triggerKey("missing"), now));
+	}
+
+	@Test
+	public void pausedGroupsStopFiringUntilResumed() throws SchedulerException, InterruptedException
+	{
+		Task task = hourly("paused", "tenants");
+		manager.add(task);
+
+		manager.pauseGroup("tenants");
+		assertEquals(TriggerState.PAUSED, stateOf(task.getKey()));
+		assertEquals(Collections.singleton("tenants"), manager.getPausedGroups());
+
+		// Tasks added to a paused group don't fire either
+		Task added = new Task(new LatchJob(), TriggerBuilder.newTrigger().withIdentity("added", "tenants").startNow().build());
+		manager.add(added);
+		assertEquals(TriggerState.PAUSED, stateOf(added.getKey()));
+		assertFalse(fired.await(300, TimeUnit.MILLISECONDS));
+
+		manager.resumeGroup("tenants");
+		assertEquals(TriggerState.NORMAL, stateOf(task.getKey()));
+		assertTrue(manager.getPausedGroups().isEmpty());
+		assertTrue(fired.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void bulkOperationsApplyToEveryTask() throws SchedulerException
+	{
+		List<Task> tasks = new ArrayList<>();
+		List<TriggerKey> keys = new ArrayList<>();
+		for (int i = 0; i < 500; i++)
+		{
+			Task task = hourly("tenant" + i, "bulk");
+			tasks.add(task);
+			keys.add(task.getKey());
+		}
+
+		manager.addAll(tasks);
+		assertEquals(500, scheduledCount("bulk"));
+
+		SimpleTrigger daily = TriggerBuilder.newTrigger()
+				.withSchedule(SimpleScheduleBuilder.repeatHourlyForever(24))
+				.startAt(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+				.build();
+		Map<TriggerKey, Trigger> newTriggers = new HashMap<>();
+		newTriggers.put(keys.get(0), daily);
+		newTriggers.put(keys.get(1), daily);
+		assertEquals(2, manager.rescheduleAll(newTriggers));
+		assertEquals(TimeUnit.DAYS.toMillis(1),
+				((SimpleTrigger)manager.getScheduler().getTrigger(keys.get(0))).getRepeatInterval());
+
+		assertEquals(500, manager.removeAll(keys));
+		assertEquals(0, scheduledCount("bulk"));
+	}
+
+	@Test
+	public void concurrentAddsAreAllScheduled() throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try
+		{
+			List<Future<?>> futures = new ArrayList<>();
+			for (int thread = 0; thread < 8; thread++)
+			{
+				int offset = thread * 50;
+				futures.add(executor.submit(() ->
+				{
+					for (int i = offset; i < offset + 50; i++)
+						manager.add(hourly("tenant" + i, "concurrent"));
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get(10, TimeUnit.SECONDS);
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+
+		assertEquals(400, scheduledCount("concurrent"));
+		assertEquals(400, manager.getTasks().size());
+	}
+}
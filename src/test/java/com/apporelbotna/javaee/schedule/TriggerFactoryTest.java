@@ -0,0 +1,108 @@
+package com.apporelbotna.javaee.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.quartz.CalendarIntervalTrigger;
+import org.quartz.CronTrigger;
+import org.quartz.DateBuilder.IntervalUnit;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+
+/**
+ * @author Jendoliver
+ */
+public class TriggerFactoryTest
+{
+	private static Trigger daily(String name)
+	{
+		return TriggerFactory.daily(3, 0).named(name).inTimeZone(ZoneOffset.UTC).withJitter(Duration.ofHours(1)).build();
+	}
+
+	private static LocalTime timeOfStart(Trigger trigger)
+	{
+		return trigger.getStartTime().toInstant().atOffset(ZoneOffset.UTC).toLocalTime();
+	}
+
+	@Test
+	public void jitterIsTheSameForTheSameKey()
+	{
+		assertEquals(daily("tenant-1").getStartTime(), daily("tenant-1").getStartTime());
+
+		long interval = TimeUnit.MINUTES.toMillis(15);
+		Trigger first = TriggerFactory.everyMinutes(15).named("tenant-1").withJitter(Duration.ofMinutes(15)).build();
+		Trigger second = TriggerFactory.everyMinutes(15).named("tenant-1").withJitter(Duration.ofMinutes(15)).build();
+		assertEquals(first.getStartTime().getTime() % interval, second.getStartTime().getTime() % interval);
+	}
+
+	@Test
+	public void jitterSpreadsTheKeysWithinTheMaximum()
+	{
+		Set<LocalTime> starts = new HashSet<>();
+		for (int i = 0; i < 20; i++)
+		{
+			LocalTime start = timeOfStart(daily("tenant-" + i));
+			assertTrue(start.toString(), !start.isBefore(LocalTime.of(3, 0)) && start.isBefore(LocalTime.of(4, 0)));
+			starts.add(start);
+		}
+		assertTrue("Only " + starts.size() + " different start times", starts.size() > 10);
+	}
+
+	@Test
+	public void noJitterFiresAtTheGivenTime()
+	{
+		Trigger trigger = TriggerFactory.weekly(DayOfWeek.MONDAY, 3, 30).named("weekly").inTimeZone(ZoneOffset.UTC).build();
+
+		assertEquals(LocalTime.of(3, 30), timeOfStart(trigger));
+		assertEquals(DayOfWeek.MONDAY, trigger.getStartTime().toInstant().atOffset(ZoneOffset.UTC).getDayOfWeek());
+		assertEquals(IntervalUnit.WEEK, ((CalendarIntervalTrigger)trigger).getRepeatIntervalUnit());
+	}
+
+	@Test
+	public void typedSchedulesRepeatAtTheirInterval()
+	{
+		assertEquals(TimeUnit.SECONDS.toMillis(90),
+				((SimpleTrigger)TriggerFactory.fixedRate(Duration.ofSeconds(90)).named("rate").build()).getRepeatInterval());
+		assertEquals(TimeUnit.MINUTES.toMillis(5),
+				((SimpleTrigger)TriggerFactory.everyMinutes(5).named("minutes").build()).getRepeatInterval());
+		assertEquals(IntervalUnit.MONTH,
+				((CalendarIntervalTrigger)TriggerFactory.monthly(1, 0, 0).named("monthly").build()).getRepeatIntervalUnit());
+	}
+
+	@Test
+	public void excludingSetsTheCalendar()
+	{
+		assertEquals("holidays", TriggerFactory.daily(3, 0).named("excluding").excluding("holidays").build().getCalendarName());
+	}
+
+	@Test
+	public void legacyTriggersUseCronExpressions()
+	{
+		CronTrigger trigger = (CronTrigger)TriggerFactory.createDailyTrigger("legacy", 6, 45);
+
+		assertEquals("0 45 6 1/1 * ? *", trigger.getCronExpression());
+		assertEquals("0 0/5 * * * ?",
+				((CronTrigger)TriggerFactory.cron("0 0/5 * * * ?").named("cron").build()).getCronExpression());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void cronTriggersCantHaveJitter()
+	{
+		TriggerFactory.cron("0 0/5 * * * ?").named("cron").withJitter(Duration.ofMinutes(1)).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void monthlyDaysMustExistInEveryMonth()
+	{
+		TriggerFactory.monthly(31, 0, 0);
+	}
+}